@@ -0,0 +1,107 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared (fixture) helpers for the benchmarks - the approximated data and
+ * populated computations.
+ *
+ * @author kares
+ */
+final class BenchmarkSupport {
+
+    private static final Map models = new HashMap();
+    static {
+        models.put("GA", GAModelGenetix.class);
+        models.put("GP", GPModelGenetix.class);
+        models.put("GY", GYModelGenetix.class);
+    }
+
+    private BenchmarkSupport() { /* static helpers */ }
+
+    /**
+     * @param size
+     * @return The x values - evenly distributed on [-2, 2).
+     */
+    static double[] dataX(final int size) {
+        final double[] x = new double[size];
+        for (int i=0; i<size; i++) x[i] = -2 + 4.0 * i / size;
+        return x;
+    }
+
+    /**
+     * @param x
+     * @return The approximated function's values - x^2 * sin(x) + x.
+     */
+    static double[] dataY(final double[] x) {
+        final double[] y = new double[x.length];
+        for (int i=0; i<x.length; i++) y[i] = x[i] * x[i] * Math.sin(x[i]) + x[i];
+        return y;
+    }
+
+    /**
+     * @param model The model name (GA, GP or GY).
+     * @param generationSize
+     * @param dataSize
+     * @return A new computation with the approximated data set.
+     */
+    static Genetix newGenetix(final String model, final int generationSize, final int dataSize) {
+        final Class genetixModel = (Class) models.get(model);
+        if ( genetixModel == null ) {
+            throw new IllegalArgumentException("unknown model: " + model);
+        }
+        final Genetix genetix;
+        try {
+            genetix = (Genetix) genetixModel.newInstance();
+        }
+        catch (InstantiationException e) {
+            throw new RuntimeException(e);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        final double[] x = dataX(dataSize);
+        genetix.setApproximatingData(x, dataY(x));
+        genetix.setGenerationSize(generationSize);
+        return genetix;
+    }
+
+    /**
+     * Sets a (random) current generation of valid functions, the model's
+     * own initialization is skipped as it's (much) more expensive and
+     * differs between models.
+     * @param genetix
+     */
+    static void populate(final Genetix genetix) {
+        final int generationSize = genetix.getGenerationSize();
+        final GenetixFunction.Tuple generation = new GenetixFunction.Tuple();
+        while ( generation.size() < generationSize ) {
+            final GenetixFunction[] fxs = genetix.generateFunctions(generationSize);
+            genetix.computeFitness(fxs);
+            for (int i=0; i<fxs.length; i++) {
+                if ( genetix.isFitnessValid(fxs[i]) ) generation.add(fxs[i]);
+            }
+        }
+        genetix.setCurrentGeneration(generation);
+        genetix.selectBest(generationSize);
+    }
+
+}
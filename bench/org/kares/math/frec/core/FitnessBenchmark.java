@@ -0,0 +1,75 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link Genetix#computeFitness(GenetixFunction[])} - the
+ * (exhaustive) fitness of a whole generation of functions of a given
+ * length.
+ *
+ * @author kares
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FitnessBenchmark {
+
+    @Param({ "8", "32" })
+    public int treeLength;
+
+    @Param({ "100", "500" })
+    public int generationSize;
+
+    @Param({ "100", "1000", "10000" })
+    public int dataSize;
+
+    private Genetix genetix;
+    private GenetixFunction[] functions;
+
+    @Setup
+    public void setup() {
+        genetix = BenchmarkSupport.newGenetix("GP", generationSize, dataSize);
+        final GenetixConfig config = genetix.getConfig();
+        config.setFunctionLengthLimits(2, 2 * treeLength);
+        functions = GenetixFunction.generate(config, generationSize, treeLength);
+    }
+
+    @Benchmark
+    public GenetixFunction[] computeFitness() {
+        genetix.computeFitness(functions);
+        return functions;
+    }
+
+}
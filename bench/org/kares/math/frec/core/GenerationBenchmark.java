@@ -0,0 +1,80 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a whole generation step ({@link Genetix#computeNext()}) of
+ * every model.
+ * <p>
+ * Every (measurement) iteration starts with a fresh random generation, the
+ * invocations within an iteration evolve it further (as a real computation
+ * would).
+ *
+ * @author kares
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GenerationBenchmark {
+
+    @Param({ "GA", "GP", "GY" })
+    public String model;
+
+    @Param({ "100", "500" })
+    public int generationSize;
+
+    @Param({ "100", "1000", "10000" })
+    public int dataSize;
+
+    private Genetix genetix;
+
+    @Setup
+    public void setup() {
+        genetix = BenchmarkSupport.newGenetix(model, generationSize, dataSize);
+    }
+
+    @Setup(Level.Iteration)
+    public void populate() {
+        BenchmarkSupport.populate(genetix);
+    }
+
+    @Benchmark
+    public GenetixFunction[] computeNext() {
+        genetix.computeNext();
+        return genetix.getCurrentGeneration();
+    }
+
+}
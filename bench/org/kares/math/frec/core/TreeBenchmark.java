@@ -0,0 +1,174 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.kares.math.frec.util.RandomHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tree level benchmarks - evaluation, sub-code lengths, random code
+ * generation, mutation and crossing of trees of a given length.
+ * <p>
+ * Operations cycle through a pool of (random) trees so that the results
+ * are not biased by a single tree's shape.
+ * The (bulk) random tree generation is reported as a throughput - trees
+ * generated per second.
+ *
+ * @author kares
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TreeBenchmark {
+
+    private static final int POOL_SIZE = 64; // power of 2
+
+    @Param({ "8", "32", "128" })
+    public int treeLength;
+
+    private GenetixConfig config;
+    private FunctionTree[] trees;
+    private int[] positions;
+    private byte[] codeBuffer;
+    private Function[] functionBuffer;
+    private int index;
+
+    @Setup
+    public void setup() {
+        config = GenetixConfig.getDefault().copy();
+        config.setFunctionLengthLimits(2, 2 * treeLength);
+        trees = new FunctionTree[POOL_SIZE];
+        positions = new int[POOL_SIZE];
+        for (int i=0; i<POOL_SIZE; i++) {
+            trees[i] = FunctionTree.getRandomInstance(config, treeLength);
+            positions[i] = 1 + RandomHelper.randomInt(treeLength - 1);
+        }
+        codeBuffer = new byte[POOL_SIZE * treeLength];
+        functionBuffer = new Function[POOL_SIZE * treeLength];
+    }
+
+    private int next() {
+        return index = (index + 1) & (POOL_SIZE - 1);
+    }
+
+    @Benchmark
+    public double value() {
+        final int i = next();
+        return trees[i].value(i / (double) POOL_SIZE);
+    }
+
+    @Benchmark
+    public int subcodeLength() {
+        final int i = next();
+        return trees[i].subcodeLength(positions[i]);
+    }
+
+    @Benchmark
+    public String generateRandomCode() {
+        return ReadsTree.generateRandomCode(treeLength);
+    }
+
+    @Benchmark
+    public String generateRandomLimitedCode() {
+        return LimitedTree.generateRandomCode(config, treeLength);
+    }
+
+    /**
+     * Generates codes (of a generation) into a reused buffer.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(POOL_SIZE)
+    public byte[] generateRandomCodes() {
+        final Random random = RandomHelper.currentStream();
+        for (int i=0; i<POOL_SIZE; i++) {
+            LimitedTree.generateRandomCode(config, codeBuffer, i * treeLength, treeLength, random);
+        }
+        return codeBuffer;
+    }
+
+    /**
+     * Generates codes and functions (of a generation) into reused buffers.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(POOL_SIZE)
+    public Function[] generateRandomTrees() {
+        final Random random = RandomHelper.currentStream();
+        final int len = POOL_SIZE * treeLength;
+        for (int off=0; off<len; off += treeLength) {
+            LimitedTree.generateRandomCode(config, codeBuffer, off, treeLength, random);
+        }
+        FunctionTree.generateRandomFunctions(config, codeBuffer, functionBuffer, 0, len, random);
+        return functionBuffer;
+    }
+
+    /**
+     * Generates (a generation of) random tree instances.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(POOL_SIZE)
+    public FunctionTree randomInstances() {
+        FunctionTree tree = null;
+        for (int i=0; i<POOL_SIZE; i++) {
+            tree = FunctionTree.getRandomInstance(config, treeLength);
+        }
+        return tree;
+    }
+
+    /**
+     * NOTE: includes cloning the (mutated) tree.
+     */
+    @Benchmark
+    public FunctionTree mutateCode() {
+        final int i = next();
+        final FunctionTree tree = (FunctionTree) trees[i].clone();
+        final int pos = positions[i];
+        final int length = tree.subcodeLength(pos);
+        tree.mutateCode(new ReadsTree.MutationContext(tree, pos, length, config));
+        return tree;
+    }
+
+    @Benchmark
+    public FunctionTree[] crossCode() {
+        final int i = next();
+        return trees[i].crossCode(trees[(i + 1) & (POOL_SIZE - 1)]);
+    }
+
+}
@@ -141,8 +141,17 @@ public class Main extends JApplet implements Runnable {
         genetix.setCrossingProbability( settings.getGenCrossingProbability() );
         genetix.setArbitraryMutations( settings.isArbitraryMutations() );
         genetix.setArbitraryCrossings( settings.isArbitraryCrossings() );
-        Genetix.setMinFunctionLength( settings.getMinFunctionLength() );
-        Genetix.setMaxFunctionLength( settings.getMaxFunctionLength() );
+        if ( settings.isAdaptiveProbabilities() ) {
+            genetix.setAdaptation( new AdaptiveProbabilities() );
+        }
+        genetix.setFitnessMetric( settings.getSelectedFitnessMetric() );
+        genetix.setFitnessTarget( settings.getFitnessTarget() );
+        genetix.setStallLimit( settings.getStallLimit() );
+        genetix.setMinImprovement( settings.getMinImprovement() );
+        genetix.setTimeLimit( settings.getTimeLimit() );
+        genetix.getConfig().setFunctionLengthLimits(
+            settings.getMinFunctionLength(), settings.getMaxFunctionLength() );
+        genetix.getConfig().setCodeSampling( settings.getCodeSampling() );
         inputPanel.setDataSize( settings.getDataSize() );
 
         //appFrame.pack();
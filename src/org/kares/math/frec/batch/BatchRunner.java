@@ -0,0 +1,189 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.kares.math.frec.core.Genetix;
+import org.kares.math.frec.core.GenetixFunction;
+import org.kares.math.frec.util.DataFile;
+import org.kares.math.frec.util.DelimitedDataReader;
+
+/**
+ * The headless (command line) entry point - runs the computation on data
+ * set files without any GUI (no AWT classes are needed), e.g. :
+ * <pre>
+ *   java -jar F-ReC-core.jar -model GY -genSize 200 -genMax 500 data1.csv data2.csv
+ * </pre>
+ * The options correspond to the (GUI) settings, all the data sets are
+ * computed one after another in the same JVM (a new {@link Genetix} is
+ * created for every data set). Delimited text files are read using
+ * {@link DelimitedDataReader}, <code>.frds</code> files are opened as
+ * (memory-mapped) {@link DataFile}s.
+ * <p>
+ * The results are written as tab separated lines - for every data set and
+ * every one of the best functions : the file, the number of data points,
+ * the read and compute time (in ms), the generations computed, the fitness
+ * point evaluations, the function's rank, fitness and the function itself.
+ *
+ * @author kares
+ */
+public class BatchRunner {
+
+    private final RunSettings settings = new RunSettings();
+    private final List files = new ArrayList();
+    private PrintWriter out;
+    private PrintStream log = System.err;
+
+    /**
+     * Command line entry point.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final BatchRunner runner = new BatchRunner();
+        try {
+            runner.parseArguments(args);
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage(System.err);
+            System.exit(2);
+        }
+        if ( runner.files.isEmpty() ) {
+            printUsage(System.err);
+            System.exit(2);
+        }
+        final int failed = runner.run();
+        runner.out.flush();
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    private static void printUsage(final PrintStream out) {
+        out.println("usage: java -jar F-ReC-core.jar [options] data-file ...");
+        RunSettings.printOptions(out, "-");
+        out.println("  -list file             read data file names from a file (one per line)");
+        out.println("  -out file              write the results to a file (stdout)");
+    }
+
+    /**
+     * Parses the command line arguments.
+     * @param args
+     * @throws IllegalArgumentException if an argument is not valid
+     */
+    void parseArguments(final String[] args) {
+        String outFile = null;
+        for (int i=0; i<args.length; i++) {
+            final String arg = args[i];
+            if ( ! arg.startsWith("-") || arg.length() == 1 ) {
+                files.add(arg);
+                continue;
+            }
+            final String name = arg.substring(1);
+            if ( RunSettings.isFlag(name) ) { settings.set(name, null); continue; }
+            if ( i + 1 >= args.length ) throw new IllegalArgumentException("missing value for " + arg);
+            final String value = args[++i];
+            if ( arg.equals("-list") ) readList(value);
+            else if ( arg.equals("-out") ) outFile = value;
+            else if ( ! settings.set(name, value) ) {
+                throw new IllegalArgumentException("unknown option: " + arg);
+            }
+        }
+        settings.validate();
+        try {
+            final OutputStreamWriter writer = outFile == null ?
+                new OutputStreamWriter(System.out) :
+                new OutputStreamWriter(new FileOutputStream(outFile), "UTF-8");
+            out = new PrintWriter(writer);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("can not write " + outFile + ": " + e);
+        }
+    }
+
+    private void readList(final String listFile) {
+        try {
+            final BufferedReader reader = new BufferedReader(new FileReader(listFile));
+            try {
+                String line;
+                while ( ( line = reader.readLine() ) != null ) {
+                    line = line.trim();
+                    if ( line.length() > 0 && ! line.startsWith("#") ) files.add(line);
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("can not read " + listFile + ": " + e);
+        }
+    }
+
+    /**
+     * Computes all the data sets.
+     * @return The number of data sets that failed.
+     */
+    int run() {
+        out.println("# file\tpoints\tseed\tread[ms]\tcompute[ms]\tgenerations\tevaluations\trank\tfitness\tfunction");
+        int failed = 0;
+        final long start = System.currentTimeMillis();
+        for (Iterator i = files.iterator(); i.hasNext(); ) {
+            final String file = (String) i.next();
+            try {
+                run(new File(file));
+            }
+            catch (RuntimeException e) {
+                failed++;
+                log.println("# " + file + " failed: " + e);
+            }
+            out.flush();
+        }
+        log.println("# " + (files.size() - failed) + " of " + files.size() +
+                " data set(s) computed in " + (System.currentTimeMillis() - start) + "ms");
+        return failed;
+    }
+
+    private void run(final File file) {
+        final long readStart = System.currentTimeMillis();
+        final Genetix genetix = settings.newGenetix();
+        final int points = settings.setApproximatingData(genetix, file, log);
+        if ( points == 0 ) throw new IllegalStateException("no data");
+        final long computeStart = System.currentTimeMillis();
+        genetix.compute();
+        final GenetixFunction[] best = genetix.getBestFunctions(settings.getBestCount());
+        final long end = System.currentTimeMillis();
+
+        final String stats = file.getPath() + '\t' + points + '\t' + genetix.getSeed() + '\t' +
+            (computeStart - readStart) + '\t' + (end - computeStart) + '\t' +
+            genetix.getGenerationCounter() + '\t' + genetix.getFitnessPointEvaluations();
+        for (int i=0; i<best.length; i++) {
+            out.println(stats + '\t' + (i + 1) + '\t' + best[i].getFitness() + '\t' +
+                    best[i].formatFunction());
+        }
+    }
+
+}
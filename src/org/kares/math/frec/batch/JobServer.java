@@ -0,0 +1,510 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.batch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.kares.math.frec.core.GenerationListener;
+import org.kares.math.frec.core.GenerationSnapshot;
+import org.kares.math.frec.core.Genetix;
+import org.kares.math.frec.core.GenetixFunction;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP service computing (queued) jobs - a job is a data set
+ * (the request body, delimited text) with the computation settings (the
+ * request parameters, named as the {@link BatchRunner} options) :
+ * <pre>
+ *   POST   /jobs?model=GY&amp;genSize=200&amp;genMax=500  submits a job (202)
+ *   GET    /jobs                                  lists the jobs
+ *   GET    /jobs/{id}                             the job's state and progress
+ *   GET    /jobs/{id}/result                      the best functions (409 if not done)
+ *   DELETE /jobs/{id}                             cancels a job
+ * </pre>
+ * Responses are JSON objects. Jobs are computed by a fixed pool of worker
+ * threads, the number of waiting jobs is bounded - when the queue is full
+ * submitting is refused (503). Requests are handled by a separate (small)
+ * thread pool thus they are served while all the workers compute.
+ * Finished jobs are kept (for their results to be fetched) until there are
+ * too many of them - the oldest ones are forgotten first.
+ * Every job has it's own {@link org.kares.math.frec.core.GenetixConfig}
+ * thus jobs are computed concurrently (a worker per processor by default).
+ *
+ * @author kares
+ */
+public class JobServer {
+
+    static final int QUEUED = 0;
+    static final int RUNNING = 1;
+    static final int DONE = 2;
+    static final int FAILED = 3;
+    static final int CANCELLED = 4;
+
+    /** runs tasks on the calling thread */
+    private static final Executor inline = new Executor() {
+
+        public void execute(final Runnable task) {
+            task.run();
+        }
+
+    };
+
+    private static final String[] STATES = {
+        "QUEUED", "RUNNING", "DONE", "FAILED", "CANCELLED"
+    };
+
+    /** Indexed by the <code>Genetix.STOP_</code> constants. */
+    private static final String[] STOP_REASONS = {
+        "generationLimit", "fitnessTarget", "stalled", "timeLimit", "cancelled"
+    };
+
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ThreadPoolExecutor workers;
+
+    private final Map jobs = new LinkedHashMap();
+    private final int retained;
+    private long jobCounter = 0;
+
+    /**
+     * @param port
+     * @param workerCount The number of jobs computed at the same time.
+     * @param queueSize The maximum number of (queued) jobs waiting.
+     * @param retained The number of finished jobs kept.
+     * @throws IOException if the server can not be bound
+     */
+    public JobServer(int port, int workerCount, int queueSize, int retained)
+        throws IOException {
+        this.retained = retained;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue(queueSize));
+        this.requestExecutor = Executors.newFixedThreadPool(4);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(requestExecutor);
+        this.server.createContext("/jobs", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    JobServer.this.handle(exchange);
+                }
+                catch (RuntimeException e) {
+                    respond(exchange, 500, error(e.toString()));
+                }
+                finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Command line entry point.
+     * @param args
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 8080, queueSize = 16, retained = 100;
+        int workerCount = Runtime.getRuntime().availableProcessors();
+        for (int i=0; i<args.length; i++) {
+            if ( i + 1 >= args.length ) usage("missing value for " + args[i]);
+            final String arg = args[i], value = args[++i];
+            try {
+                if ( arg.equals("-port") ) port = Integer.parseInt(value);
+                else if ( arg.equals("-workers") ) workerCount = Integer.parseInt(value);
+                else if ( arg.equals("-queue") ) queueSize = Integer.parseInt(value);
+                else if ( arg.equals("-retain") ) retained = Integer.parseInt(value);
+                else usage("unknown option: " + arg);
+            }
+            catch (NumberFormatException e) {
+                usage("invalid " + arg + ": " + value);
+            }
+        }
+        if ( workerCount < 1 || queueSize < 1 || retained < 0 ) usage("invalid settings");
+        final JobServer server = new JobServer(port, workerCount, queueSize, retained);
+        server.start();
+        System.err.println("# listening on port " + port + " (" + workerCount +
+                " worker(s), queue size " + queueSize + ")");
+    }
+
+    private static void usage(final String message) {
+        System.err.println(message);
+        System.err.println("usage: java -cp F-ReC-core.jar " + JobServer.class.getName() + " [options]");
+        System.err.println("  -port n                the HTTP port (8080)");
+        System.err.println("  -workers n             jobs computed at the same time (processors)");
+        System.err.println("  -queue n               maximum number of waiting jobs (16)");
+        System.err.println("  -retain n              finished jobs kept for their results (100)");
+        System.err.println("job (POST /jobs) parameters :");
+        RunSettings.printOptions(System.err, "");
+        System.exit(2);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, running jobs are stopped.
+     */
+    public void stop() {
+        server.stop(0);
+        requestExecutor.shutdown();
+        workers.shutdown();
+        synchronized (jobs) {
+            for (Iterator i = jobs.values().iterator(); i.hasNext(); ) {
+                ((Job) i.next()).cancel();
+            }
+        }
+    }
+
+    /**
+     * @return The local port the server is listening on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String method = exchange.getRequestMethod();
+        final String path = exchange.getRequestURI().getPath();
+        final String[] parts = path.substring(1).split("/");
+        if ( ! parts[0].equals("jobs") ) {
+            respond(exchange, 404, error("not found: " + path));
+            return;
+        }
+        if ( parts.length == 1 ) { // /jobs
+            if ( method.equals("POST") ) submit(exchange);
+            else if ( method.equals("GET") ) list(exchange);
+            else respond(exchange, 405, error("method not allowed"));
+            return;
+        }
+        final Job job;
+        synchronized (jobs) {
+            job = parts.length <= 3 ? (Job) jobs.get(parts[1]) : null;
+        }
+        if ( job == null ) {
+            respond(exchange, 404, error("no such job: " + path));
+            return;
+        }
+        if ( parts.length == 3 ) {
+            if ( ! parts[2].equals("result") ) respond(exchange, 404, error("not found: " + path));
+            else if ( ! method.equals("GET") ) respond(exchange, 405, error("method not allowed"));
+            else result(exchange, job);
+        }
+        else if ( method.equals("GET") ) respond(exchange, 200, job.toJSON(false));
+        else if ( method.equals("DELETE") ) {
+            job.cancel();
+            respond(exchange, 200, job.toJSON(false));
+        }
+        else respond(exchange, 405, error("method not allowed"));
+    }
+
+    private void submit(final HttpExchange exchange) throws IOException {
+        final RunSettings settings = new RunSettings();
+        try {
+            final String query = exchange.getRequestURI().getRawQuery();
+            if ( query != null && query.length() > 0 ) {
+                final String[] params = query.split("&");
+                for (int i=0; i<params.length; i++) {
+                    final int eq = params[i].indexOf('=');
+                    final String name = decode(eq < 0 ? params[i] : params[i].substring(0, eq));
+                    final String value = eq < 0 ? null : decode(params[i].substring(eq + 1));
+                    if ( ! settings.set(name, value) ) {
+                        throw new IllegalArgumentException("unknown parameter: " + name);
+                    }
+                }
+            }
+            settings.validate();
+        }
+        catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+            return;
+        }
+        final File dataFile = File.createTempFile("frec-job", ".txt");
+        try {
+            copy(exchange.getRequestBody(), dataFile);
+        }
+        catch (IOException e) {
+            dataFile.delete();
+            throw e;
+        }
+        final Job job;
+        synchronized (jobs) {
+            job = new Job(Long.toString(++jobCounter), settings, dataFile);
+            try {
+                job.future = workers.submit(job);
+            }
+            catch (RejectedExecutionException e) {
+                dataFile.delete();
+                respond(exchange, 503, error("too many jobs queued"));
+                return;
+            }
+            jobs.put(job.id, job);
+        }
+        exchange.getResponseHeaders().set("Location", "/jobs/" + job.id);
+        respond(exchange, 202, job.toJSON(false));
+    }
+
+    private void list(final HttpExchange exchange) throws IOException {
+        final StringBuffer json = new StringBuffer("{\"jobs\":[");
+        synchronized (jobs) {
+            for (Iterator i = jobs.values().iterator(); i.hasNext(); ) {
+                json.append( ((Job) i.next()).toJSON(false) );
+                if ( i.hasNext() ) json.append(',');
+            }
+        }
+        respond(exchange, 200, json.append("]}").toString());
+    }
+
+    private void result(final HttpExchange exchange, final Job job) throws IOException {
+        if ( job.getState() != DONE ) {
+            respond(exchange, 409, error("job " + job.id + " is " + STATES[job.getState()]));
+        }
+        else respond(exchange, 200, job.toJSON(true));
+    }
+
+    /**
+     * Forgets the oldest finished jobs (if there are too many).
+     */
+    private void evictFinished() {
+        synchronized (jobs) {
+            int finished = 0;
+            for (Iterator i = jobs.values().iterator(); i.hasNext(); ) {
+                if ( ((Job) i.next()).getState() >= DONE ) finished++;
+            }
+            for (Iterator i = jobs.values().iterator(); i.hasNext() && finished > retained; ) {
+                if ( ((Job) i.next()).getState() >= DONE ) {
+                    i.remove(); finished--;
+                }
+            }
+        }
+    }
+
+    /**
+     * A submitted computation.
+     */
+    private class Job implements Runnable {
+
+        final String id;
+        final RunSettings settings;
+        private File dataFile;
+
+        Future future;
+        private Genetix genetix;
+        private int state = QUEUED;
+        private String error;
+        private int points = -1;
+        private final long submitted = System.currentTimeMillis();
+        private long started, finished;
+        private GenerationSnapshot snapshot;
+        private GenetixFunction[] best;
+
+        Job(final String id, final RunSettings settings, final File dataFile) {
+            this.id = id;
+            this.settings = settings;
+            this.dataFile = dataFile;
+        }
+
+        synchronized int getState() {
+            return state;
+        }
+
+        public void run() {
+            final Genetix genetix;
+            synchronized (this) {
+                if ( state != QUEUED ) return;
+                state = RUNNING;
+                started = System.currentTimeMillis();
+                this.genetix = genetix = settings.newGenetix();
+            }
+            // keeps the last snapshot (notified on the computing thread) :
+            genetix.addGenerationListener(new GenerationListener() {
+
+                public void onGeneration(GenerationSnapshot snapshot) {
+                    synchronized (Job.this) {
+                        Job.this.snapshot = snapshot;
+                        // cancelled right before compute() started :
+                        if ( state == CANCELLED ) genetix.stopCompute();
+                    }
+                }
+
+            }, inline);
+            try {
+                final int points = settings.setApproximatingData(genetix, dataFile, null);
+                synchronized (this) { this.points = points; }
+                deleteData();
+                if ( points == 0 ) throw new IllegalStateException("no data");
+                synchronized (this) {
+                    if ( state != RUNNING ) return; // cancelled while loading
+                }
+                genetix.compute();
+                synchronized (this) {
+                    if ( state == RUNNING ) {
+                        best = genetix.getBestFunctions(settings.getBestCount());
+                        state = DONE;
+                    }
+                }
+            }
+            catch (RuntimeException e) {
+                synchronized (this) {
+                    if ( state == RUNNING ) {
+                        error = e.toString();
+                        state = FAILED;
+                    }
+                }
+            }
+            finally {
+                synchronized (this) { finished = System.currentTimeMillis(); }
+                deleteData();
+                evictFinished();
+            }
+        }
+
+        /**
+         * Cancels a queued job or stops a running one.
+         */
+        void cancel() {
+            synchronized (this) {
+                if ( state == QUEUED ) {
+                    state = CANCELLED;
+                    finished = System.currentTimeMillis();
+                    if ( future != null ) future.cancel(false);
+                    deleteData();
+                }
+                else if ( state == RUNNING ) {
+                    state = CANCELLED;
+                    genetix.stopCompute();
+                }
+            }
+            workers.purge(); // drop the cancelled (queued) task
+        }
+
+        private synchronized void deleteData() {
+            if ( dataFile != null ) {
+                dataFile.delete();
+                dataFile = null;
+            }
+        }
+
+        synchronized String toJSON(final boolean result) {
+            final StringBuffer json = new StringBuffer(128);
+            json.append("{\"id\":\"").append(id).append('"');
+            json.append(",\"state\":\"").append(STATES[state]).append('"');
+            if ( points >= 0 ) json.append(",\"points\":").append(points);
+            if ( snapshot != null ) {
+                json.append(",\"seed\":").append(snapshot.getSeed());
+                json.append(",\"generation\":").append(snapshot.getGeneration());
+                json.append(",\"generationLimit\":").append(snapshot.getGenerationLimit());
+                json.append(",\"evaluations\":").append(snapshot.getPointEvaluations());
+                final double bestFitness = snapshot.getBestFitness();
+                if ( ! Double.isNaN(bestFitness) ) json.append(",\"bestFitness\":").append(number(bestFitness));
+                final int stopReason = snapshot.getStopReason();
+                if ( stopReason >= 0 ) json.append(",\"stopped\":\"").append(STOP_REASONS[stopReason]).append('"');
+            }
+            json.append(",\"submitted\":").append(submitted);
+            if ( started > 0 ) json.append(",\"started\":").append(started);
+            if ( finished > 0 ) json.append(",\"finished\":").append(finished);
+            if ( error != null ) json.append(",\"error\":").append(string(error));
+            if ( result && best != null ) {
+                json.append(",\"best\":[");
+                for (int i=0; i<best.length; i++) {
+                    if ( i > 0 ) json.append(',');
+                    json.append("{\"fitness\":").append(number(best[i].getFitness()));
+                    json.append(",\"function\":").append(string(best[i].formatFunction()));
+                    json.append('}');
+                }
+                json.append(']');
+            }
+            return json.append('}').toString();
+        }
+
+    }
+
+    private static void respond(final HttpExchange exchange, final int status,
+        final String json) throws IOException {
+        final byte[] body = json.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        final OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private static void copy(final InputStream in, final File file) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ( ( read = in.read(buffer) ) != -1 ) out.write(buffer, 0, read);
+        }
+        finally {
+            out.close();
+            in.close();
+        }
+    }
+
+    private static String decode(final String str) {
+        try {
+            return URLDecoder.decode(str, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String error(final String message) {
+        return "{\"error\":" + string(message) + "}";
+    }
+
+    private static String number(final double value) {
+        if ( Double.isNaN(value) || Double.isInfinite(value) ) return "null";
+        return Double.toString(value);
+    }
+
+    private static String string(final String str) {
+        final StringBuffer json = new StringBuffer(str.length() + 2).append('"');
+        for (int i=0; i<str.length(); i++) {
+            final char c = str.charAt(i);
+            if ( c == '"' || c == '\\' ) json.append('\\').append(c);
+            else if ( c < 0x20 ) {
+                final String hex = Integer.toHexString(c);
+                json.append("\\u00").append(hex.length() == 1 ? "0" : "").append(hex);
+            }
+            else json.append(c);
+        }
+        return json.append('"').toString();
+    }
+
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.batch;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.kares.math.frec.core.Genetix;
+import org.kares.math.frec.core.GenetixFunction;
+import org.kares.math.frec.util.RandomHelper;
+
+/**
+ * A suite of (standard) symbolic regression problems - the single variable
+ * Koza, Nguyen and Keijzer targets. Every problem is computed (repeatedly)
+ * with every model, e.g. :
+ * <pre>
+ *   java -cp F-ReC-core.jar org.kares.math.frec.batch.ProblemSuite -runs 30 -genMax 200 -out suite.csv
+ * </pre>
+ * A run succeeds if the best fitness reaches the fitness target (the
+ * <code>-target</code> setting, 0.01 by default) - the computation stops
+ * as soon as it does, thus the compute time is the time to solution.
+ * <p>
+ * Runs are seeded (the <code>-seed</code> option + the run number) so the
+ * same runs are repeatable and every model gets the same seeds, the
+ * (randomly sampled) problem data only depends on the base seed.
+ * Every run draws from it's own random stream (seeded with the run seed),
+ * runs are computed one at a time so that the compute times are comparable.
+ * <p>
+ * Every run is written as a CSV line : the problem, model, run, seed, the
+ * number of data points, the compute time (in ms), the generations computed,
+ * the fitness point evaluations, the best fitness, whether the run succeeded
+ * and the best function. A summary (per problem and model) is reported at
+ * the end - the success rate, the mean compute time and evaluations and the
+ * mean time and evaluations of the successful runs.
+ *
+ * @see RunSettings
+ * @author kares
+ */
+public class ProblemSuite {
+
+    /**
+     * A (single variable) symbolic regression problem - the target function
+     * and how it's sampled.
+     */
+    public static abstract class Problem {
+
+        private final String name;
+        private final String target;
+        private final double min;
+        private final double max;
+        private final int points;
+        private final boolean uniform;
+
+        /**
+         * @param name
+         * @param target The target function (description).
+         * @param min
+         * @param max
+         * @param points The number of data points.
+         * @param uniform True for uniformly random points from [min, max],
+         * false for evenly spaced points (including min and max).
+         */
+        protected Problem(final String name, final String target,
+            final double min, final double max, final int points, final boolean uniform) {
+            this.name = name;
+            this.target = target;
+            this.min = min;
+            this.max = max;
+            this.points = points;
+            this.uniform = uniform;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * @param x
+         * @return The target function value.
+         */
+        public abstract double value(double x);
+
+        /**
+         * @param seed Used for (uniformly) random points.
+         * @return The (sorted) x values.
+         */
+        public double[] sampleX(final long seed) {
+            final double[] x = new double[points];
+            if ( uniform ) {
+                final Random random = RandomHelper.newRandom(seed);
+                for (int i=0; i<points; i++) {
+                    x[i] = min + (max - min) * random.nextDouble();
+                }
+                Arrays.sort(x);
+            }
+            else {
+                final double step = (max - min) / (points - 1);
+                for (int i=0; i<points; i++) x[i] = min + i * step;
+            }
+            return x;
+        }
+
+        /**
+         * @param x
+         * @return The target function values.
+         */
+        public double[] sampleY(final double[] x) {
+            final double[] y = new double[x.length];
+            for (int i=0; i<x.length; i++) y[i] = value(x[i]);
+            return y;
+        }
+
+        public String toString() {
+            return name + ": " + target + " on " + (uniform ? "U" : "E") +
+                "[" + min + ", " + max + "] " + points + " points";
+        }
+
+    }
+
+    /**
+     * Get the available problems.
+     * @return Map of problem names to {@link Problem} instances.
+     */
+    public static Map getProblems() {
+        final Map problems = new LinkedHashMap();
+        addProblem(problems, new Problem("koza-1", "x^4 + x^3 + x^2 + x", -1, 1, 20, true) {
+            public double value(double x) { return x*x*x*x + x*x*x + x*x + x; }
+        });
+        addProblem(problems, new Problem("koza-2", "x^5 - 2x^3 + x", -1, 1, 20, true) {
+            public double value(double x) { return x*x*x*x*x - 2*x*x*x + x; }
+        });
+        addProblem(problems, new Problem("koza-3", "x^6 - 2x^4 + x^2", -1, 1, 20, true) {
+            public double value(double x) { return x*x*x*x*x*x - 2*x*x*x*x + x*x; }
+        });
+        addProblem(problems, new Problem("nguyen-1", "x^3 + x^2 + x", -1, 1, 20, true) {
+            public double value(double x) { return x*x*x + x*x + x; }
+        });
+        addProblem(problems, new Problem("nguyen-3", "x^5 + x^4 + x^3 + x^2 + x", -1, 1, 20, true) {
+            public double value(double x) { return x*x*x*x*x + x*x*x*x + x*x*x + x*x + x; }
+        });
+        addProblem(problems, new Problem("nguyen-4", "x^6 + x^5 + x^4 + x^3 + x^2 + x", -1, 1, 20, true) {
+            public double value(double x) { return x*x*x*x*x*x + x*x*x*x*x + x*x*x*x + x*x*x + x*x + x; }
+        });
+        addProblem(problems, new Problem("nguyen-5", "sin(x^2) cos(x) - 1", -1, 1, 20, true) {
+            public double value(double x) { return Math.sin(x*x) * Math.cos(x) - 1; }
+        });
+        addProblem(problems, new Problem("nguyen-6", "sin(x) + sin(x + x^2)", -1, 1, 20, true) {
+            public double value(double x) { return Math.sin(x) + Math.sin(x + x*x); }
+        });
+        addProblem(problems, new Problem("nguyen-7", "ln(x + 1) + ln(x^2 + 1)", 0, 2, 20, true) {
+            public double value(double x) { return Math.log(x + 1) + Math.log(x*x + 1); }
+        });
+        addProblem(problems, new Problem("nguyen-8", "sqrt(x)", 0, 4, 20, true) {
+            public double value(double x) { return Math.sqrt(x); }
+        });
+        addProblem(problems, new Problem("keijzer-1", "0.3 x sin(2 pi x)", -1, 1, 21, false) {
+            public double value(double x) { return 0.3 * x * Math.sin(2 * Math.PI * x); }
+        });
+        addProblem(problems, new Problem("keijzer-4", "x^3 e^-x cos(x) sin(x) (sin(x)^2 cos(x) - 1)", 0, 10, 201, false) {
+            public double value(double x) {
+                final double sin = Math.sin(x), cos = Math.cos(x);
+                return x*x*x * Math.exp(-x) * cos * sin * (sin*sin*cos - 1);
+            }
+        });
+        addProblem(problems, new Problem("keijzer-6", "sum(1/i, i = 1..x)", 1, 50, 50, false) {
+            public double value(double x) {
+                double sum = 0;
+                for (int i=1; i<=(int) x; i++) sum += 1.0 / i;
+                return sum;
+            }
+        });
+        addProblem(problems, new Problem("keijzer-7", "ln(x)", 1, 100, 100, false) {
+            public double value(double x) { return Math.log(x); }
+        });
+        addProblem(problems, new Problem("keijzer-9", "ln(x + sqrt(x^2 + 1))", 0, 100, 101, false) {
+            public double value(double x) { return Math.log(x + Math.sqrt(x*x + 1)); }
+        });
+        return problems;
+    }
+
+    private static void addProblem(final Map problems, final Problem problem) {
+        problems.put(problem.getName(), problem);
+    }
+
+    private final RunSettings settings = new RunSettings();
+    private final List problems = new ArrayList();
+    private final List models = new ArrayList();
+    private int runs = 10;
+    private long seed = 1;
+    private PrintWriter out;
+    private PrintStream log = System.err;
+
+    ProblemSuite() {
+        settings.set("target", "0.01");
+    }
+
+    /**
+     * Command line entry point.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final ProblemSuite suite = new ProblemSuite();
+        try {
+            suite.parseArguments(args);
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage(System.err);
+            System.exit(2);
+        }
+        if ( suite.out == null ) System.exit(0); // -list
+        final int failed = suite.run();
+        suite.out.flush();
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    private static void printUsage(final PrintStream out) {
+        out.println("usage: java -cp F-ReC-core.jar " + ProblemSuite.class.getName() + " [options] [problem ...]");
+        RunSettings.printOptions(out, "-");
+        out.println("  -models m1,m2,...      the computed models (all)");
+        out.println("  -runs n                runs per problem and model (10)");
+        out.println("  -seed n                the base (random) seed (1)");
+        out.println("  -out file              write the results to a file (stdout)");
+        out.println("  -list                  list the problems");
+        out.println("(the fitness target defaults to 0.01)");
+    }
+
+    /**
+     * Parses the command line arguments.
+     * @param args
+     * @throws IllegalArgumentException if an argument is not valid
+     */
+    void parseArguments(final String[] args) {
+        final Map allProblems = getProblems();
+        String outFile = null;
+        for (int i=0; i<args.length; i++) {
+            final String arg = args[i];
+            if ( ! arg.startsWith("-") || arg.length() == 1 ) {
+                final Problem problem = (Problem) allProblems.get(arg);
+                if ( problem == null ) throw new IllegalArgumentException("unknown problem: " + arg);
+                problems.add(problem);
+                continue;
+            }
+            if ( arg.equals("-list") ) {
+                for (Iterator j = allProblems.values().iterator(); j.hasNext(); ) {
+                    System.out.println(j.next());
+                }
+                return;
+            }
+            final String name = arg.substring(1);
+            if ( RunSettings.isFlag(name) ) { settings.set(name, null); continue; }
+            if ( i + 1 >= args.length ) throw new IllegalArgumentException("missing value for " + arg);
+            final String value = args[++i];
+            if ( arg.equals("-models") ) {
+                final String[] names = value.split(",");
+                for (int j=0; j<names.length; j++) {
+                    settings.set("model", names[j]); // validates the name
+                    models.add(names[j]);
+                }
+            }
+            else if ( arg.equals("-runs") ) runs = parseRuns(value);
+            else if ( arg.equals("-seed") ) seed = parseSeed(value);
+            else if ( arg.equals("-out") ) outFile = value;
+            else if ( arg.equals("-model") ) {
+                throw new IllegalArgumentException("use -models instead of -model");
+            }
+            else if ( ! settings.set(name, value) ) {
+                throw new IllegalArgumentException("unknown option: " + arg);
+            }
+        }
+        settings.validate();
+        if ( settings.getFitnessTarget() < 0 ) {
+            throw new IllegalArgumentException("a (non-negative) target is required");
+        }
+        if ( problems.isEmpty() ) problems.addAll(allProblems.values());
+        if ( models.isEmpty() ) {
+            for (Iterator i = Genetix.getGenetixModels().iterator(); i.hasNext(); ) {
+                final String model = ((Class) i.next()).getName();
+                models.add(model.substring(model.lastIndexOf('.') + 1));
+            }
+        }
+        try {
+            final OutputStreamWriter writer = outFile == null ?
+                new OutputStreamWriter(System.out) :
+                new OutputStreamWriter(new FileOutputStream(outFile), "UTF-8");
+            out = new PrintWriter(writer);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("can not write " + outFile + ": " + e);
+        }
+    }
+
+    private static int parseRuns(final String value) {
+        try {
+            final int runs = Integer.parseInt(value);
+            if ( runs > 0 ) return runs;
+        }
+        catch (NumberFormatException e) { /* invalid */ }
+        throw new IllegalArgumentException("invalid runs: " + value);
+    }
+
+    private static long parseSeed(final String value) {
+        try {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid seed: " + value);
+        }
+    }
+
+    /**
+     * Computes all the problems with all the models.
+     * @return The number of runs that failed (with an error).
+     */
+    int run() {
+        out.println("problem,model,run,seed,points,compute_ms,generations,evaluations,fitness,success,function");
+        final List summary = new ArrayList();
+        int failed = 0;
+        for (Iterator i = problems.iterator(); i.hasNext(); ) {
+            final Problem problem = (Problem) i.next();
+            final double[] x = problem.sampleX(seed);
+            final double[] y = problem.sampleY(x);
+            for (Iterator j = models.iterator(); j.hasNext(); ) {
+                final String model = (String) j.next();
+                settings.set("model", model);
+                final Stats stats = new Stats(problem.getName() + ',' + model);
+                for (int run=0; run<runs; run++) {
+                    try {
+                        run(problem, model, run, x, y, stats);
+                    }
+                    catch (RuntimeException e) {
+                        failed++; stats.failed++;
+                        log.println("# " + problem.getName() + " " + model + " run " + run + " failed: " + e);
+                    }
+                    out.flush();
+                }
+                log.println("# " + stats);
+                summary.add(stats);
+            }
+        }
+        log.println("# problem,model,runs,failed,success_rate,mean_ms,mean_evaluations,mean_success_ms,mean_success_evaluations");
+        for (Iterator i = summary.iterator(); i.hasNext(); ) {
+            log.println(((Stats) i.next()).toCSV());
+        }
+        return failed;
+    }
+
+    private void run(final Problem problem, final String model, final int run,
+        final double[] x, final double[] y, final Stats stats) {
+        final long runSeed = seed + run;
+        final Genetix genetix = settings.newGenetix();
+        genetix.setSeed(runSeed);
+        genetix.setApproximatingData(x, y);
+        final long start = System.currentTimeMillis();
+        genetix.compute();
+        final long time = System.currentTimeMillis() - start;
+        final GenetixFunction best = genetix.getBestFunctions(1)[0];
+        final boolean success = genetix.isFitnessTargetReached();
+        final long evaluations = genetix.getFitnessPointEvaluations();
+        stats.add(time, evaluations, success);
+        out.println(problem.getName() + ',' + model + ',' + run + ',' + runSeed + ',' +
+            x.length + ',' + time + ',' + genetix.getGenerationCounter() + ',' +
+            evaluations + ',' + best.getFitness() + ',' + success + ',' +
+            quote(best.formatFunction()));
+    }
+
+    private static String quote(final String value) {
+        final StringBuffer quoted = new StringBuffer(value.length() + 2);
+        quoted.append('"');
+        for (int i=0; i<value.length(); i++) {
+            final char c = value.charAt(i);
+            if ( c == '"' ) quoted.append('"');
+            quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Statistics of the runs of a problem with a model.
+     */
+    private static class Stats {
+
+        final String key;
+        int runs, failed, succeeded;
+        long time, evaluations, successTime, successEvaluations;
+
+        Stats(final String key) {
+            this.key = key;
+        }
+
+        void add(final long time, final long evaluations, final boolean success) {
+            this.runs++;
+            this.time += time;
+            this.evaluations += evaluations;
+            if ( success ) {
+                this.succeeded++;
+                this.successTime += time;
+                this.successEvaluations += evaluations;
+            }
+        }
+
+        private static String mean(final long sum, final int count) {
+            return count == 0 ? "" : Long.toString(sum / count);
+        }
+
+        String toCSV() {
+            final int total = runs + failed;
+            return key + ',' + total + ',' + failed + ',' +
+                (total == 0 ? 0 : (double) succeeded / total) + ',' +
+                mean(time, runs) + ',' + mean(evaluations, runs) + ',' +
+                mean(successTime, succeeded) + ',' + mean(successEvaluations, succeeded);
+        }
+
+        public String toString() {
+            return key + ": " + succeeded + " of " + (runs + failed) + " run(s) succeeded" +
+                (failed > 0 ? " (" + failed + " failed)" : "") +
+                ", mean time " + mean(time, runs) + "ms";
+        }
+
+    }
+
+}
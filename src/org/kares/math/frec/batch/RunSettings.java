@@ -0,0 +1,315 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.batch;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Iterator;
+
+import org.kares.math.frec.core.AdaptiveProbabilities;
+import org.kares.math.frec.core.FitnessMetric;
+import org.kares.math.frec.core.FitnessMetrics;
+import org.kares.math.frec.core.GPModelGenetix;
+import org.kares.math.frec.core.GYModelGenetix;
+import org.kares.math.frec.core.Genetix;
+import org.kares.math.frec.core.GenetixConfig;
+import org.kares.math.frec.util.DataFile;
+import org.kares.math.frec.util.DelimitedDataReader;
+import org.kares.math.frec.util.RandomHelper;
+
+/**
+ * The settings of a (headless) computation run - the same knobs as the
+ * GUI settings have. Settings are set by name (the command line options
+ * without the leading dash or the request parameters of the job server).
+ *
+ * @see BatchRunner
+ * @see JobServer
+ * @author kares
+ */
+class RunSettings {
+
+    private Class model = GYModelGenetix.class;
+    private int generationSize = 100;
+    private int generationLimit = 100;
+    private float mutationProbability = 0.03f;
+    private float crossingProbability = 0.90f;
+    private float reproductProbability = 0.95f;
+    private float selectionProbability = 0.85f;
+    private boolean arbitraryMutations = false;
+    private boolean arbitraryCrossings = false;
+    private boolean adaptive = false;
+    private int codeSampling = GenetixConfig.SAMPLING_READS;
+    private int minFunctionLength = Genetix.getMinFunctionLength();
+    private int maxFunctionLength = Genetix.getMaxFunctionLength();
+    private FitnessMetric fitnessMetric = FitnessMetrics.SAE.INSTANCE;
+    private int fitnessMode = Genetix.FITNESS_EXHAUSTIVE;
+    private int precisionMode = Genetix.PRECISION_DOUBLE;
+    private double fitnessTarget = -1;
+    private int stallLimit = 0;
+    private double minImprovement = 0;
+    private long timeLimit = 0;
+    private Long seed;
+    private String randomGenerator = RandomHelper.DEFAULT_GENERATOR;
+    private int bestCount = 1;
+    private char delimiter = DelimitedDataReader.AUTO;
+
+    static void printOptions(final PrintStream out, final String prefix) {
+        out.println("  " + prefix + "model GY|GP|GA        the computation model (GY)");
+        out.println("  " + prefix + "genSize n             generation size (100)");
+        out.println("  " + prefix + "genMax n              generation limit (100)");
+        out.println("  " + prefix + "mutation p            mutation probability (0.03)");
+        out.println("  " + prefix + "crossing p            crossing probability (0.9)");
+        out.println("  " + prefix + "reproduct p           reproduction probability - GP/GY (0.95)");
+        out.println("  " + prefix + "selection p           selection probability - GP/GY (0.85)");
+        out.println("  " + prefix + "arbitraryMutations    allow arbitrary mutations");
+        out.println("  " + prefix + "arbitraryCrossings    allow arbitrary crossings");
+        out.println("  " + prefix + "adaptive              adapt the probabilities while computing");
+        out.println("  " + prefix + "minLength n           minimal function (code) length");
+        out.println("  " + prefix + "maxLength n           maximal function (code) length");
+        out.println("  " + prefix + "sampling mode         reads|uniform|ramped random tree sampling (reads)");
+        out.println("  " + prefix + "metric name           fitness metric " + FitnessMetrics.getMetrics().keySet());
+        out.println("  " + prefix + "fitness mode          exhaustive|sampled|halving");
+        out.println("  " + prefix + "precision mode        double|float|mixed");
+        out.println("  " + prefix + "target f              stop once the best fitness is <= f (none)");
+        out.println("  " + prefix + "stall n               stop if not improved for n generations (none)");
+        out.println("  " + prefix + "improvement r         minimal relative improvement for stall (0)");
+        out.println("  " + prefix + "timeLimit s           stop after s seconds (none)");
+        out.println("  " + prefix + "seed n                the random seed (random)");
+        out.println("  " + prefix + "rng name              random generator " + RandomHelper.getGenerators().keySet());
+        out.println("  " + prefix + "best n                number of best functions reported (1)");
+        out.println("  " + prefix + "delimiter c           data delimiter (auto-detected), 'tab' or 'space'");
+    }
+
+    /**
+     * @param name
+     * @return True if the setting is a flag (does not need a value).
+     */
+    static boolean isFlag(final String name) {
+        return name.equals("arbitraryMutations") || name.equals("arbitraryCrossings") ||
+            name.equals("adaptive");
+    }
+
+    /**
+     * Sets a setting by it's name.
+     * @param name
+     * @param value The value (might be null for flags).
+     * @return False if there's no such setting.
+     * @throws IllegalArgumentException if the value is not valid
+     */
+    boolean set(final String name, final String value) {
+        if ( isFlag(name) ) {
+            final boolean flag = value == null || Boolean.valueOf(value).booleanValue();
+            if ( name.equals("arbitraryMutations") ) arbitraryMutations = flag;
+            else if ( name.equals("arbitraryCrossings") ) arbitraryCrossings = flag;
+            else adaptive = flag;
+            return true;
+        }
+        if ( value == null ) throw new IllegalArgumentException("missing value for " + name);
+        if ( name.equals("model") ) model = modelClass(value);
+        else if ( name.equals("genSize") ) generationSize = parseInt(name, value, 1);
+        else if ( name.equals("genMax") ) generationLimit = parseInt(name, value, 0);
+        else if ( name.equals("mutation") ) mutationProbability = parseProbability(name, value);
+        else if ( name.equals("crossing") ) crossingProbability = parseProbability(name, value);
+        else if ( name.equals("reproduct") ) reproductProbability = parseProbability(name, value);
+        else if ( name.equals("selection") ) selectionProbability = parseProbability(name, value);
+        else if ( name.equals("minLength") ) minFunctionLength = parseInt(name, value, 1);
+        else if ( name.equals("maxLength") ) maxFunctionLength = parseInt(name, value, 1);
+        else if ( name.equals("metric") ) {
+            fitnessMetric = (FitnessMetric) FitnessMetrics.getMetrics().get(value);
+            if ( fitnessMetric == null ) {
+                throw new IllegalArgumentException("unknown metric: " + value);
+            }
+        }
+        else if ( name.equals("fitness") ) {
+            fitnessMode = parseMode(name, value, new String[] { "exhaustive", "sampled", "halving" });
+        }
+        else if ( name.equals("sampling") ) {
+            codeSampling = parseMode(name, value, new String[] { "reads", "uniform", "ramped" });
+        }
+        else if ( name.equals("precision") ) {
+            precisionMode = parseMode(name, value, new String[] { "double", "float", "mixed" });
+        }
+        else if ( name.equals("target") ) {
+            try {
+                fitnessTarget = Double.parseDouble(value);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid " + name + ": " + value);
+            }
+        }
+        else if ( name.equals("stall") ) stallLimit = parseInt(name, value, 0);
+        else if ( name.equals("improvement") ) minImprovement = parseDouble(name, value);
+        else if ( name.equals("timeLimit") ) {
+            timeLimit = (long) (parseDouble(name, value) * 1000);
+        }
+        else if ( name.equals("seed") ) {
+            try {
+                seed = Long.valueOf(value);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid " + name + ": " + value);
+            }
+        }
+        else if ( name.equals("rng") ) {
+            if ( ! RandomHelper.getGenerators().containsKey(value) ) {
+                throw new IllegalArgumentException("unknown generator: " + value);
+            }
+            randomGenerator = value;
+        }
+        else if ( name.equals("best") ) bestCount = parseInt(name, value, 1);
+        else if ( name.equals("delimiter") ) {
+            if ( value.equals("tab") ) delimiter = '\t';
+            else if ( value.equals("space") ) delimiter = DelimitedDataReader.WHITESPACE;
+            else if ( value.length() == 1 ) delimiter = value.charAt(0);
+            else throw new IllegalArgumentException("invalid delimiter: " + value);
+        }
+        else return false;
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the settings are not consistent
+     */
+    void validate() {
+        if ( minFunctionLength > maxFunctionLength ) {
+            throw new IllegalArgumentException("minLength > maxLength");
+        }
+    }
+
+    int getBestCount() {
+        return bestCount;
+    }
+
+    int getGenerationLimit() {
+        return generationLimit;
+    }
+
+    double getFitnessTarget() {
+        return fitnessTarget;
+    }
+
+    private static Class modelClass(final String value) {
+        for (Iterator i = Genetix.getGenetixModels().iterator(); i.hasNext(); ) {
+            final Class genetixModel = (Class) i.next();
+            String name = genetixModel.getName();
+            name = name.substring(name.lastIndexOf('.') + 1);
+            if ( name.equals(value) || name.equals(value + "ModelGenetix") ) {
+                return genetixModel;
+            }
+        }
+        throw new IllegalArgumentException("unknown model: " + value);
+    }
+
+    private static int parseInt(final String name, final String value, final int min) {
+        try {
+            final int i = Integer.parseInt(value);
+            if ( i >= min ) return i;
+        }
+        catch (NumberFormatException e) { /* invalid */ }
+        throw new IllegalArgumentException("invalid " + name + ": " + value);
+    }
+
+    private static float parseProbability(final String name, final String value) {
+        try {
+            final float p = Float.parseFloat(value);
+            if ( p >= 0 && p <= 1 ) return p;
+        }
+        catch (NumberFormatException e) { /* invalid */ }
+        throw new IllegalArgumentException("invalid " + name + ": " + value);
+    }
+
+    private static double parseDouble(final String name, final String value) {
+        try {
+            final double d = Double.parseDouble(value);
+            if ( d >= 0 ) return d;
+        }
+        catch (NumberFormatException e) { /* invalid */ }
+        throw new IllegalArgumentException("invalid " + name + ": " + value);
+    }
+
+    private static int parseMode(final String name, final String value, final String[] modes) {
+        for (int i=0; i<modes.length; i++) {
+            if ( modes[i].equalsIgnoreCase(value) ) return i;
+        }
+        throw new IllegalArgumentException("invalid " + name + ": " + value);
+    }
+
+    /**
+     * @return A new (configured) genetix instance.
+     */
+    Genetix newGenetix() {
+        final Genetix genetix;
+        try {
+            genetix = (Genetix) model.getDeclaredConstructor().newInstance();
+        }
+        catch (InvocationTargetException e) {
+            throw new IllegalStateException("model " + model.getName() + 
+                    " failed: " + e.getCause(), e.getCause());
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("invalid model: " + model.getName(), e);
+        }
+        if ( genetix instanceof GPModelGenetix ) {
+            ((GPModelGenetix) genetix).setReproductProbability(reproductProbability);
+            ((GPModelGenetix) genetix).setSelectionProbability(selectionProbability);
+        }
+        genetix.getConfig().setFunctionLengthLimits(minFunctionLength, maxFunctionLength);
+        genetix.getConfig().setCodeSampling(codeSampling);
+        genetix.setGenerationSize(generationSize);
+        genetix.setGenerationLimit(generationLimit);
+        genetix.setMutationProbability(mutationProbability);
+        genetix.setCrossingProbability(crossingProbability);
+        genetix.setArbitraryMutations(arbitraryMutations);
+        genetix.setArbitraryCrossings(arbitraryCrossings);
+        if ( adaptive ) genetix.setAdaptation(new AdaptiveProbabilities());
+        genetix.setFitnessMetric(fitnessMetric);
+        genetix.setFitnessMode(fitnessMode);
+        genetix.setPrecisionMode(precisionMode);
+        genetix.setFitnessTarget(fitnessTarget);
+        genetix.setStallLimit(stallLimit);
+        genetix.setMinImprovement(minImprovement);
+        genetix.setTimeLimit(timeLimit);
+        genetix.setRandomGenerator(randomGenerator);
+        if ( seed != null ) genetix.setSeed(seed.longValue());
+        return genetix;
+    }
+
+    /**
+     * Sets the approximated data from a data set file - delimited text or
+     * a (memory-mapped) <code>.frds</code> data file.
+     * @param genetix
+     * @param file
+     * @param log Where to report malformed data lines (might be null).
+     * @return The number of data points.
+     */
+    int setApproximatingData(final Genetix genetix, final File file, final PrintStream log) {
+        if ( file.getName().endsWith(DataFile.defaultFileExtension) ) {
+            final DataFile data = DataFile.open(file);
+            genetix.setApproximatingData(data);
+            return data.size();
+        }
+        final DelimitedDataReader reader = new DelimitedDataReader(delimiter);
+        final DelimitedDataReader.Data data = reader.read(file);
+        if ( data.getMalformedCount() > 0 && log != null ) {
+            log.println("# " + file + ": " + data.getMalformedCount() + " malformed line(s)");
+        }
+        genetix.setApproximatingData(data.getX(), data.getY(), data.getWeights());
+        return data.size();
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Self-adaptation of the probabilities of a computation, applied after
+ * every generation (see {@link Genetix#setAdaptation(AdaptiveProbabilities)}).
+ * <p>
+ * The mutation and crossing probabilities are adapted using (bandit-style)
+ * credit assignment : offspring are credited to the operator that created
+ * them and succeed if they improved on their parent. The success rates
+ * are smoothed over generations, the operator with the better success rate
+ * gets it's probability increased while the other one is decreased.
+ * Mutation is also increased whenever the population diversity (the ratio
+ * of distinct fitness values) drops below the minimal diversity.
+ * <p>
+ * For {@link GPModelGenetix} the selection and reproduction probabilities
+ * trade off exploration and exploitation - with a low diversity or while
+ * the best fitness does not improve more functions are selected and less
+ * reproduced, as the best fitness improves the selection pressure grows.
+ * <p>
+ * All probabilities change by a (multiplicative) factor and are kept within
+ * fixed bounds. The adaptation state (the smoothed success rates and the
+ * last best fitness) is part of a checkpoint.
+ *
+ * @author kares
+ */
+public class AdaptiveProbabilities {
+
+    static final float MIN_MUTATION = 0.005f, MAX_MUTATION = 0.5f;
+    static final float MIN_CROSSING = 0.3f, MAX_CROSSING = 1.0f;
+    static final float MIN_SELECTION = 0.5f, MAX_SELECTION = 0.95f;
+    static final float MIN_REPRODUCT = 0.5f, MAX_REPRODUCT = 1.0f;
+
+    /**
+     * The weight of the last generation's success rate (the success rates
+     * are exponentially smoothed).
+     */
+    private static final double SMOOTHING = 0.3;
+
+    private float factor = 0.9f;
+    private float minDiversity = 0.5f;
+
+    private double mutationSuccess = -1;
+    private double crossingSuccess = -1;
+    private double lastBestFitness = -1;
+    private double diversity = -1;
+
+    /**
+     * Creates an adaptation with the defaults - the factor is 0.9 and the
+     * minimal diversity 0.5.
+     */
+    public AdaptiveProbabilities() {
+        // defaults
+    }
+
+    /**
+     * @param factor The adaptation factor (0 - 1), a probability is 
+     * multiplied (decreased) or divided (increased) by it.
+     * @param minDiversity The minimal population diversity (0 - 1).
+     */
+    public AdaptiveProbabilities(float factor, float minDiversity) {
+        if ( factor <= 0 || factor >= 1 ) throw new IllegalArgumentException("factor: " + factor);
+        if ( minDiversity < 0 || minDiversity > 1 ) throw new IllegalArgumentException("minDiversity: " + minDiversity);
+        this.factor = factor;
+        this.minDiversity = minDiversity;
+    }
+
+    /**
+     * @return The adaptation factor.
+     */
+    public float getFactor() {
+        return factor;
+    }
+
+    /**
+     * @return The minimal population diversity.
+     */
+    public float getMinDiversity() {
+        return minDiversity;
+    }
+
+    /**
+     * @return The population diversity measured by the last adaptation
+     * (-1 if not adapted yet).
+     */
+    public double getDiversity() {
+        return diversity;
+    }
+
+    /**
+     * @return The (smoothed) success rate of mutated offspring (-1 if none).
+     */
+    public double getMutationSuccess() {
+        return mutationSuccess;
+    }
+
+    /**
+     * @return The (smoothed) success rate of crossed offspring (-1 if none).
+     */
+    public double getCrossingSuccess() {
+        return crossingSuccess;
+    }
+
+    /**
+     * Adapts the probabilities of the given computation (based on it's
+     * current generation and the offspring evaluated since the last call).
+     * @param genetix
+     */
+    protected void adapt(final Genetix genetix) {
+        final GenetixFunction[] generation = genetix.getCurrentGeneration();
+        if ( generation == null || generation.length == 0 ) return;
+
+        // distinct (valid) fitness values and the best fitness :
+        final Set fitnessValues = new HashSet();
+        double bestFitness = -1;
+        for (int i=0; i<generation.length; i++) {
+            if ( ! genetix.isFitnessValid(generation[i]) ) continue;
+            final double fitness = generation[i].getFitness();
+            fitnessValues.add(Double.valueOf(fitness));
+            if ( bestFitness < 0 || fitness < bestFitness ) bestFitness = fitness;
+        }
+        diversity = (double) fitnessValues.size() / generation.length;
+        final boolean diverse = diversity >= minDiversity;
+
+        mutationSuccess = success(genetix, GenetixFunction.ORIGIN_MUTATION, mutationSuccess);
+        crossingSuccess = success(genetix, GenetixFunction.ORIGIN_CROSSING, crossingSuccess);
+        if ( mutationSuccess >= 0 && crossingSuccess >= 0 ) {
+            final boolean mutationBetter = mutationSuccess > crossingSuccess;
+            genetix.setMutationProbability( adjust(genetix.getMutationProbability(),
+                mutationBetter || ! diverse, MIN_MUTATION, MAX_MUTATION) );
+            genetix.setCrossingProbability( adjust(genetix.getCrossingProbability(),
+                ! mutationBetter, MIN_CROSSING, MAX_CROSSING) );
+        }
+        else if ( ! diverse ) {
+            genetix.setMutationProbability( adjust(genetix.getMutationProbability(),
+                true, MIN_MUTATION, MAX_MUTATION) );
+        }
+
+        final boolean improved = bestFitness >= 0 &&
+            ( lastBestFitness < 0 || bestFitness < lastBestFitness );
+        if ( bestFitness >= 0 ) lastBestFitness = bestFitness;
+
+        if ( genetix instanceof GPModelGenetix ) {
+            final GPModelGenetix gp = (GPModelGenetix) genetix;
+            final boolean explore = ! diverse || ! improved;
+            gp.setSelectionProbability( adjust(gp.getSelectionProbability(),
+                explore, MIN_SELECTION, MAX_SELECTION) );
+            gp.setReproductProbability( adjust(gp.getReproductProbability(),
+                ! explore, MIN_REPRODUCT, MAX_REPRODUCT) );
+        }
+    }
+
+    /**
+     * @return The (smoothed) success rate of the operator's offspring.
+     */
+    private static double success(final Genetix genetix, final int origin, final double previous) {
+        final int count = genetix.offspringCounts[origin];
+        if ( count == 0 ) return previous;
+        final double success = (double) genetix.offspringImproved[origin] / count;
+        if ( previous < 0 ) return success;
+        return previous + SMOOTHING * (success - previous);
+    }
+
+    /**
+     * Writes the adaptation state (to a checkpoint).
+     * @param out
+     * @throws IOException
+     */
+    void writeState(final DataOutputStream out) throws IOException {
+        out.writeFloat(factor);
+        out.writeFloat(minDiversity);
+        out.writeDouble(mutationSuccess);
+        out.writeDouble(crossingSuccess);
+        out.writeDouble(lastBestFitness);
+        out.writeDouble(diversity);
+    }
+
+    /**
+     * Restores the adaptation state (from a checkpoint).
+     * @param in
+     * @throws IOException
+     */
+    void readState(final DataInputStream in) throws IOException {
+        factor = in.readFloat();
+        minDiversity = in.readFloat();
+        mutationSuccess = in.readDouble();
+        crossingSuccess = in.readDouble();
+        lastBestFitness = in.readDouble();
+        diversity = in.readDouble();
+    }
+
+    private float adjust(final float probability, final boolean increase,
+        final float min, final float max) {
+        final float adjusted = increase ? probability / factor : probability * factor;
+        if ( adjusted < min ) return min;
+        if ( adjusted > max ) return max;
+        return adjusted;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.core;
+
+/**
+ * A fitness metric - computes the fitness (the error, lower is better)
+ * of a function from it's values at the data points.
+ * <p>
+ * {@link Genetix} evaluates a function on a block of data points and
+ * passes the values to the metric, which accumulates them into a (small)
+ * state array in a single pass. The state is accumulated over all blocks
+ * (a state starts zeroed) and is converted into the fitness at the end.
+ * Metrics should not allocate while accumulating.
+ * <p>
+ * If the data points are weighted all metrics should account for the
+ * weights (e.g. a weighted mean of squared errors).
+ *
+ * @see FitnessMetrics
+ * @see Genetix#setFitnessMetric(FitnessMetric)
+ * @author kares
+ */
+public interface FitnessMetric {
+
+    /**
+     * @return The (display) name of the metric.
+     */
+    public String getName() ;
+
+    /**
+     * @return The size of the (accumulated) state.
+     */
+    public int stateSize() ;
+
+    /**
+     * Accumulates a block of function values into the state.
+     * @param state The state to update.
+     * @param y The data f(x) values.
+     * @param off The offset of the block in <code>y</code> (and <code>w</code>).
+     * @param fy The function values, the block starts at index 0.
+     * @param w The data point weights (might be null).
+     * @param len The number of points in the block.
+     */
+    public void accumulate(double[] state, double[] y, int off, double[] fy, double[] w, int len) ;
+
+    /**
+     * Single precision variant of the accumulation.
+     * @see #accumulate(double[], double[], int, double[], double[], int)
+     */
+    public void accumulate(double[] state, float[] y, int off, float[] fy, float[] w, int len) ;
+
+    /**
+     * Computes the fitness from the accumulated state.
+     * @param state
+     * @param scale If only a sample of the data has been accumulated the
+     * ratio of all data points to the sample size (1 otherwise), metrics
+     * that are sums over the data points should scale the result.
+     * @return The fitness value (might be NaN or infinite if invalid).
+     */
+    public double fitness(double[] state, double scale) ;
+
+    /**
+     * Additive metrics are (weighted) sums of point losses, the fitness
+     * might thus be updated incrementally (for streaming data).
+     * @return True if the fitness is a sum of {@link #loss(double, double)}.
+     */
+    public boolean isAdditive() ;
+
+    /**
+     * @param y The data f(x) value.
+     * @param fy The function value.
+     * @return The loss at a single point (for additive metrics only).
+     * @see #isAdditive()
+     */
+    public double loss(double y, double fy) ;
+
+}
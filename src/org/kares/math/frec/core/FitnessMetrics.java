@@ -0,0 +1,416 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Standart fitness metric implementations.
+ * All metrics take data point weights into account (if there are any).
+ *
+ * @see FitnessMetric
+ * @see inner classes of this class
+ * @author kares
+ */
+public abstract strictfp class FitnessMetrics {
+
+    /**
+     * Get the available fitness metrics.
+     * @return Map of metric names to {@link FitnessMetric} instances.
+     */
+    public static Map getMetrics() {
+        Map metrics = new LinkedHashMap();
+        metrics.put(SAE.INSTANCE.getName(), SAE.INSTANCE);
+        metrics.put(MSE.INSTANCE.getName(), MSE.INSTANCE);
+        metrics.put(RMSE.INSTANCE.getName(), RMSE.INSTANCE);
+        metrics.put(MaxError.INSTANCE.getName(), MaxError.INSTANCE);
+        metrics.put(R2.INSTANCE.getName(), R2.INSTANCE);
+        metrics.put(Huber.INSTANCE.getName(), Huber.INSTANCE);
+        return metrics;
+    }
+
+    /**
+     * Resolves a metric by it's name - the available metrics as well as
+     * Huber metrics with a delta (e.g. "Huber(0.5)").
+     * @param name
+     * @return The metric or null if the name is not known.
+     * @see #getMetrics()
+     */
+    public static FitnessMetric forName(final String name) {
+        final FitnessMetric metric = (FitnessMetric) getMetrics().get(name);
+        if ( metric != null ) return metric;
+        if ( name.startsWith("Huber(") && name.endsWith(")") ) {
+            try {
+                return new Huber( Double.parseDouble(name.substring(6, name.length() - 1)) );
+            }
+            catch (IllegalArgumentException e) { // NumberFormatException as well
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A metric with no non-additive state.
+     */
+    static abstract class Base implements FitnessMetric {
+
+        private final String name;
+
+        protected Base(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isAdditive() {
+            return false;
+        }
+
+        public double loss(double y, double fy) {
+            throw new UnsupportedOperationException(name + " is not additive");
+        }
+
+        public String toString() {
+            return name;
+        }
+
+    }
+
+    /**
+     * Sum of absolute errors - the default (and the original) fitness.
+     * State: [ sum ]
+     *
+     * @author kares
+     */
+    public static class SAE extends Base {
+
+        public static final SAE INSTANCE = new SAE();
+
+        SAE() { super("SAE"); }
+
+        public int stateSize() {
+            return 1;
+        }
+
+        public void accumulate(double[] state, double[] y, int off, double[] fy, double[] w, int len) {
+            double sum = 0;
+            if ( w == null ) {
+                for (int i=0; i<len; i++) sum += Math.abs(y[off + i] - fy[i]);
+            }
+            else {
+                for (int i=0; i<len; i++) sum += w[off + i] * Math.abs(y[off + i] - fy[i]);
+            }
+            state[0] += sum;
+        }
+
+        public void accumulate(double[] state, float[] y, int off, float[] fy, float[] w, int len) {
+            double sum = 0;
+            if ( w == null ) {
+                for (int i=0; i<len; i++) sum += Math.abs(y[off + i] - fy[i]);
+            }
+            else {
+                for (int i=0; i<len; i++) sum += w[off + i] * Math.abs(y[off + i] - fy[i]);
+            }
+            state[0] += sum;
+        }
+
+        public double fitness(double[] state, double scale) {
+            return state[0] * scale;
+        }
+
+        public boolean isAdditive() {
+            return true;
+        }
+
+        public double loss(double y, double fy) {
+            return Math.abs(y - fy);
+        }
+
+    }
+
+    /**
+     * Mean squared error.
+     * State: [ sum of squared errors, sum of weights ]
+     *
+     * @author kares
+     */
+    public static class MSE extends Base {
+
+        public static final MSE INSTANCE = new MSE();
+
+        MSE() { super("MSE"); }
+
+        MSE(String name) { super(name); }
+
+        public int stateSize() {
+            return 2;
+        }
+
+        public void accumulate(double[] state, double[] y, int off, double[] fy, double[] w, int len) {
+            double sum = 0, weights = len;
+            if ( w == null ) {
+                for (int i=0; i<len; i++) {
+                    final double e = y[off + i] - fy[i];
+                    sum += e * e;
+                }
+            }
+            else {
+                weights = 0;
+                for (int i=0; i<len; i++) {
+                    final double e = y[off + i] - fy[i];
+                    sum += w[off + i] * e * e;
+                    weights += w[off + i];
+                }
+            }
+            state[0] += sum;
+            state[1] += weights;
+        }
+
+        public void accumulate(double[] state, float[] y, int off, float[] fy, float[] w, int len) {
+            double sum = 0, weights = len;
+            if ( w == null ) {
+                for (int i=0; i<len; i++) {
+                    final float e = y[off + i] - fy[i];
+                    sum += e * e;
+                }
+            }
+            else {
+                weights = 0;
+                for (int i=0; i<len; i++) {
+                    final float e = y[off + i] - fy[i];
+                    sum += w[off + i] * e * e;
+                    weights += w[off + i];
+                }
+            }
+            state[0] += sum;
+            state[1] += weights;
+        }
+
+        public double fitness(double[] state, double scale) {
+            return state[1] == 0 ? 0 : state[0] / state[1];
+        }
+
+    }
+
+    /**
+     * Root mean squared error.
+     *
+     * @author kares
+     */
+    public static class RMSE extends MSE {
+
+        public static final RMSE INSTANCE = new RMSE();
+
+        RMSE() { super("RMSE"); }
+
+        public double fitness(double[] state, double scale) {
+            return Math.sqrt( super.fitness(state, scale) );
+        }
+
+    }
+
+    /**
+     * Maximal (weighted) absolute error.
+     * State: [ max ]
+     *
+     * @author kares
+     */
+    public static class MaxError extends Base {
+
+        public static final MaxError INSTANCE = new MaxError();
+
+        MaxError() { super("Max"); }
+
+        public int stateSize() {
+            return 1;
+        }
+
+        public void accumulate(double[] state, double[] y, int off, double[] fy, double[] w, int len) {
+            double max = state[0];
+            for (int i=0; i<len; i++) {
+                double e = Math.abs(y[off + i] - fy[i]);
+                if ( w != null ) e *= w[off + i];
+                if ( e > max ) max = e;
+            }
+            state[0] = max;
+        }
+
+        public void accumulate(double[] state, float[] y, int off, float[] fy, float[] w, int len) {
+            double max = state[0];
+            for (int i=0; i<len; i++) {
+                float e = Math.abs(y[off + i] - fy[i]);
+                if ( w != null ) e *= w[off + i];
+                if ( e > max ) max = e;
+            }
+            state[0] = max;
+        }
+
+        public double fitness(double[] state, double scale) {
+            return state[0];
+        }
+
+    }
+
+    /**
+     * The coefficient of determination (R<sup>2</sup>) as a fitness -
+     * the fraction of unexplained variance 1 - R<sup>2</sup> (0 for a perfect
+     * fit, 1 for a constant function equal to the mean).
+     * The f(x) values are shifted by the first value to keep the variance
+     * computation stable. For constant data the mean squared error is used.
+     * State: [ sum of weights, sum of w*y, sum of w*y^2, sum of w*e^2, shift ]
+     *
+     * @author kares
+     */
+    public static class R2 extends Base {
+
+        public static final R2 INSTANCE = new R2();
+
+        R2() { super("R2"); }
+
+        public int stateSize() {
+            return 5;
+        }
+
+        public void accumulate(double[] state, double[] y, int off, double[] fy, double[] w, int len) {
+            if ( len == 0 ) return;
+            if ( state[0] == 0 ) state[4] = y[off];
+            final double shift = state[4];
+            double weights = len, sumY = 0, sumY2 = 0, sumE2 = 0;
+            if ( w == null ) {
+                for (int i=0; i<len; i++) {
+                    final double v = y[off + i] - shift;
+                    final double e = y[off + i] - fy[i];
+                    sumY += v; sumY2 += v * v; sumE2 += e * e;
+                }
+            }
+            else {
+                weights = 0;
+                for (int i=0; i<len; i++) {
+                    final double wi = w[off + i];
+                    final double v = y[off + i] - shift;
+                    final double e = y[off + i] - fy[i];
+                    weights += wi; sumY += wi * v; sumY2 += wi * v * v; sumE2 += wi * e * e;
+                }
+            }
+            state[0] += weights; state[1] += sumY; state[2] += sumY2; state[3] += sumE2;
+        }
+
+        public void accumulate(double[] state, float[] y, int off, float[] fy, float[] w, int len) {
+            if ( len == 0 ) return;
+            if ( state[0] == 0 ) state[4] = y[off];
+            final double shift = state[4];
+            double weights = len, sumY = 0, sumY2 = 0, sumE2 = 0;
+            if ( w == null ) {
+                for (int i=0; i<len; i++) {
+                    final double v = y[off + i] - shift;
+                    final float e = y[off + i] - fy[i];
+                    sumY += v; sumY2 += v * v; sumE2 += e * e;
+                }
+            }
+            else {
+                weights = 0;
+                for (int i=0; i<len; i++) {
+                    final double wi = w[off + i];
+                    final double v = y[off + i] - shift;
+                    final float e = y[off + i] - fy[i];
+                    weights += wi; sumY += wi * v; sumY2 += wi * v * v; sumE2 += wi * e * e;
+                }
+            }
+            state[0] += weights; state[1] += sumY; state[2] += sumY2; state[3] += sumE2;
+        }
+
+        public double fitness(double[] state, double scale) {
+            final double weights = state[0];
+            if ( weights == 0 ) return 0;
+            final double total = state[2] - state[1] * state[1] / weights;
+            if ( total <= 0 ) return state[3] / weights; // constant data
+            return state[3] / total;
+        }
+
+    }
+
+    /**
+     * Huber loss - quadratic for small errors, linear for errors larger
+     * than delta (thus robust to outliers). Default delta is 1.0
+     * State: [ sum ]
+     *
+     * @author kares
+     */
+    public static class Huber extends Base {
+
+        public static final Huber INSTANCE = new Huber(1.0);
+
+        private final double delta;
+
+        public Huber(double delta) {
+            super(delta == 1.0 ? "Huber" : "Huber(" + delta + ")");
+            if ( delta <= 0 ) {
+                throw new IllegalArgumentException("delta <= 0 : " + delta);
+            }
+            this.delta = delta;
+        }
+
+        public double getDelta() {
+            return delta;
+        }
+
+        public int stateSize() {
+            return 1;
+        }
+
+        public void accumulate(double[] state, double[] y, int off, double[] fy, double[] w, int len) {
+            final double delta = this.delta, half = delta / 2;
+            double sum = 0;
+            for (int i=0; i<len; i++) {
+                final double e = Math.abs(y[off + i] - fy[i]);
+                final double l = e <= delta ? 0.5 * e * e : delta * (e - half);
+                sum += w == null ? l : w[off + i] * l;
+            }
+            state[0] += sum;
+        }
+
+        public void accumulate(double[] state, float[] y, int off, float[] fy, float[] w, int len) {
+            final double delta = this.delta, half = delta / 2;
+            double sum = 0;
+            for (int i=0; i<len; i++) {
+                final double e = Math.abs(y[off + i] - fy[i]);
+                final double l = e <= delta ? 0.5 * e * e : delta * (e - half);
+                sum += w == null ? l : w[off + i] * l;
+            }
+            state[0] += sum;
+        }
+
+        public double fitness(double[] state, double scale) {
+            return state[0] * scale;
+        }
+
+        public boolean isAdditive() {
+            return true;
+        }
+
+        public double loss(double y, double fy) {
+            final double e = Math.abs(y - fy);
+            return e <= delta ? 0.5 * e * e : delta * (e - delta / 2);
+        }
+
+    }
+
+}
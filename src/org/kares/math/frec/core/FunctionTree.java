@@ -16,10 +16,7 @@
 
 package org.kares.math.frec.core;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Random;
 
 import org.kares.math.frec.util.RandomHelper;
 
@@ -32,12 +29,6 @@ import org.kares.math.frec.util.RandomHelper;
  */
 public class FunctionTree extends LimitedTree {
 
-    private static final Map allowedFunctionsByArities = new HashMap();
-    
-    private static boolean constantsAllowed = false;
-    private static double constantMin = 0;
-    private static double constantMax = 1;
-
     private Function[] functions;
 
     /**
@@ -50,6 +41,17 @@ public class FunctionTree extends LimitedTree {
         setFunctions(functions);
     }
 
+    /**
+     * Creates a tree from the given code digits and functions (both arrays
+     * are kept - not copied).
+     * @param codeDigits
+     * @param functions
+     */
+    FunctionTree(byte[] codeDigits, Function[] functions) {
+        super(codeDigits);
+        setFunctions(functions);
+    }
+
     /**
      * Generates a random instance.
      * @return random instance
@@ -64,105 +66,168 @@ public class FunctionTree extends LimitedTree {
      * @return random instance
      */
     public static FunctionTree getRandomInstance(final int length) {
-        String code = LimitedTree.generateRandomCode(length);
-        Function[] functions = new Function[length];
-        FunctionTree instance = new FunctionTree(code, functions);
-        instance.randomFunctions(0, length);
-        return instance;
+        return getRandomInstance(GenetixConfig.getDefault(), length);
+    }
+
+    /**
+     * Generates a random instance using the given configuration.
+     * @param config
+     * @return random instance
+     */
+    public static FunctionTree getRandomInstance(final GenetixConfig config) {
+        return getRandomInstance(config, randomCodeLength(config));
+    }
+
+    /**
+     * Generates a random instance using the given configuration.
+     * The code is sampled uniformly if the configuration says so (and a
+     * code of the length is possible with the configured arities).
+     * @param config
+     * @param length
+     * @return random instance
+     * @see GenetixConfig#getCodeSampling()
+     */
+    public static FunctionTree getRandomInstance(final GenetixConfig config, final int length) {
+        final Random random = RandomHelper.currentStream();
+        final byte[] code = new byte[length];
+        final ReadsCodeSampler sampler = config.getCodeSampling() == GenetixConfig.SAMPLING_READS
+            ? null : ReadsCodeSampler.forConfig(config);
+        if ( sampler != null && sampler.isPossible(length) ) {
+            sampler.generateRandomCode(code, 0, length, random);
+        }
+        else {
+            LimitedTree.generateRandomCode(config, code, 0, length, random);
+        }
+        final Function[] functions = new Function[length];
+        generateRandomFunctions(config, code, functions, 0, length, random);
+        return new FunctionTree(code, functions);
+    }
+
+    /**
+     * Fills the function slots for the given code digits with random 
+     * (allowed) functions of matching arities. Leaf slots (0 digits) are 
+     * set to null (the variable) or to a random constant.
+     * @param config
+     * @param code The code digits.
+     * @param functions The buffer for the functions (same offsets as code).
+     * @param off The offset of the first slot to fill.
+     * @param len The count of slots to fill.
+     * @param random The random source e.g. {@link RandomHelper#currentStream()}.
+     */
+    public static void generateRandomFunctions(final GenetixConfig config, 
+        final byte[] code, final Function[] functions, final int off, 
+        final int len, final Random random) {
+        final boolean constantsAllowed = config.isConstantsAllowed();
+        final double constantMin = config.getConstantMin();
+        final double constantRange = config.getConstantMax() - constantMin;
+        for ( int i = off; i < off + len; i++ ) {
+            if ( code[i] == 0 ) {
+                functions[i] = null; // constant or variable
+                if (constantsAllowed && random.nextBoolean()) {
+                    double constant = random.nextDouble(); // <0,1>
+                    functions[i] = new ConstantFunction(constant * constantRange + constantMin);
+                }
+            }
+            else {
+                final Function[] allowedFunctions = config.allowedFunctions(code[i]);
+                functions[i] = allowedFunctions[random.nextInt(allowedFunctions.length)];
+            }
+        }
     }
 
     /**
      * The constant minimum (when generating random constants).
      * @return constant min value
+     * @see GenetixConfig#getConstantMin()
      */
     public static double getConstantMin() {
-        return FunctionTree.constantMin;
+        return GenetixConfig.getDefault().getConstantMin();
     }
 
     /**
-     * Set the constant minimum value.
+     * Set the constant minimum value (of the default configuration).
      * @see #getConstantMin()
      * @param min
      */
     public static void setConstantMin(double min) {
-        FunctionTree.constantMin = min;
+        GenetixConfig.getDefault().setConstantMin(min);
     }
 
     /**
      * The constant maximum (when generating random constants).
      * @return constant max value
+     * @see GenetixConfig#getConstantMax()
      */
     public static double getConstantMax() {
-        return FunctionTree.constantMax;
+        return GenetixConfig.getDefault().getConstantMax();
     }
 
     /**
-     * Set the constant maximum value.
+     * Set the constant maximum value (of the default configuration).
      * @see #getConstantMax()
      * @param max
      */
     public static void setConstantMax(double max) {
-        FunctionTree.constantMax = max;
+        GenetixConfig.getDefault().setConstantMax(max);
     }
     
+    /**
+     * Parses a function tree from it's {@link #format()} output or from the
+     * canonical {@link #encode()}d form (the forms are told apart by spaces,
+     * formatted trees contain none).
+     * Constants are parsed back exactly.
+     * @param formatted
+     * @return The parsed tree.
+     * @throws IllegalArgumentException if the string can not be parsed
+     */
     public static FunctionTree parse(final String formatted) {
-        throw new UnsupportedOperationException("parse() NOT IMPLEMETED !");
+        if ( formatted.indexOf(' ') != -1 ) return FunctionTreeParser.decode(formatted);
+        return FunctionTreeParser.parse(formatted);
     }
 
-    private static List allowedFunctions(final int arity) {
-        List functions = (List) allowedFunctionsByArities.get(Integer.valueOf(arity));
-        if ( functions == null ) {
-            throw new IllegalArgumentException("no functions of arity " + arity);
-        }
-        return functions;
+    /**
+     * Parses a function tree from it's canonical encoding.
+     * @param encoded
+     * @return The decoded tree.
+     * @throws IllegalArgumentException if the string can not be parsed
+     * @see #encode()
+     */
+    public static FunctionTree decode(final String encoded) {
+        return FunctionTreeParser.decode(encoded);
     }
 
     /**
-     * Sets the allowed set of functions to be used in random generated instances.
+     * Sets the allowed set of functions (of the default configuration) to
+     * be used in random generated instances.
      * @param functions the allowed set of functions
+     * @see GenetixConfig#setAllowedFunctions(Function[])
      */
     public static void setAllowedFunctions(final Function[] functions) {
-        //FunctionTree.allowedFunctions = functions;
-        FunctionTree.allowedFunctionsByArities.clear();
-        if ( functions == null || functions.length == 0 ) return;
-
-        int maxArity = functions[0].arity(); int minArity = maxArity;
-        Map functionsByArities = FunctionTree.allowedFunctionsByArities;
-        for (int i=0; i<functions.length; i++) {
-            int arity = functions[i].arity();
-            if (arity > maxArity) maxArity = arity;
-            if (arity < minArity) minArity = arity;
-            
-            Integer key = Integer.valueOf(arity);
-            List value = (List) functionsByArities.get(key);
-            if (value == null) {
-                value = new ArrayList();
-                functionsByArities.put(key, value);
-            }
-            value.add(functions[i]);
-        }
-        if ( minArity == 1 ) minArity = 0;
-        setCodeElementLimits(minArity, maxArity);
+        GenetixConfig.getDefault().setAllowedFunctions(functions);
     }
 
-    private void randomFunctions(final int beg, final int end) {
-        final byte[] code = getCodeDigits();
-        for ( int i = beg; i < end; i++ ) {
-            if ( code[i] == 0 ) {
-                functions[i] = null; // constant or variable
-                if (constantsAllowed && RandomHelper.randomBoolean()) {
-                    double constant = RandomHelper.randomDouble(); // <0,1>
-                    constant = constant * (constantMax - constantMin);
-                    constant += constantMin;
-                    functions[i] = new ConstantFunction(constant);
-                }
-            }
-            else {
-                final List allowedFunctions = allowedFunctions(code[i]);
-                int rnd = RandomHelper.randomInt(allowedFunctions.size());
-                functions[i] = (Function) allowedFunctions.get(rnd);
-            }
-        }
+    private void randomFunctions(final GenetixConfig config, final int beg, final int end) {
+        generateRandomFunctions(config, getCodeDigits(), functions, beg, end - beg,
+            RandomHelper.currentStream());
+    }
+
+    /**
+     * Looks up a function by it's id, the standart {@link Functions} are
+     * tried first and then the allowed (possibly custom) functions.
+     * @param id
+     * @return The function or null if not found.
+     */
+    static Function findFunction(final String id) {
+        return findFunction(id, GenetixConfig.getDefault());
+    }
+
+    /**
+     * @see #findFunction(String)
+     */
+    static Function findFunction(final String id, final GenetixConfig config) {
+        final Function function = Functions.forId(id);
+        if ( function != null ) return function;
+        return config.allowedFunction(id);
     }
 
     /**
@@ -277,6 +342,19 @@ public class FunctionTree extends LimitedTree {
         return format(0);
     }
 
+    /**
+     * Encodes the tree in a compact canonical form - the nodes in the order
+     * of Read's code separated by spaces, a function node is represented 
+     * by it's id, <code>x</code> is the variable and constants are written
+     * as exact double values e.g. <code>+ sin x 0.5</code>.
+     * Equal trees have equal encodings.
+     * @return The canonical encoding.
+     * @see #decode(String)
+     */
+    public String encode() {
+        return FunctionTreeParser.encode(this);
+    }
+
     private String format(final int i) {
         final byte[] code = getCodeDigits();
         final int arity = code[i]; // == functions[i].arity()
@@ -320,7 +398,7 @@ public class FunctionTree extends LimitedTree {
         int j = index;
         for (int i=pos+mut_len; i<new_len; i++) newFunctions[i] = functions[j++];
         setFunctions(newFunctions);
-        randomFunctions(pos, pos + mut_len);
+        randomFunctions(context.getConfig(), pos, pos + mut_len);
     }
 
     /**
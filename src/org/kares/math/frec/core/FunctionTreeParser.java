@@ -0,0 +1,286 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.core;
+
+/**
+ * Parses {@link FunctionTree}s from their textual forms :
+ * <ul>
+ * <li> the {@link FunctionTree#format()} output e.g. <code>(sin((x+0.5)))</code>,
+ *      every function node is enclosed in parentheses
+ * <li> the canonical encoding {@link FunctionTree#encode()} - the nodes in
+ *      (Read's code) pre-order separated by spaces e.g. <code>sin + x 0.5</code>
+ * </ul>
+ * Constants are formatted using {@link Double#toString(double)} thus they
+ * are parsed back exactly.
+ * The parser is a single pass over the characters (no tokenizing), the tree
+ * nodes are emitted in pre-order - a slot is reserved for a function node
+ * when it's opening parenthesis is reached and filled once the function
+ * has been recognized.
+ * <p>
+ * NOTE: Only functions formatted like the standart {@link Functions} are
+ * understood (binary operators, prefix unary functions, - and !).
+ *
+ * @author kares
+ */
+final class FunctionTreeParser {
+
+    private final String str;
+    private final int end;
+    private int pos;
+
+    private final byte[] code;
+    private final Function[] functions;
+    private int size = 0;
+
+    private FunctionTreeParser(final String str) {
+        this.str = str;
+        this.end = str.length();
+        this.code = new byte[end];
+        this.functions = new Function[end];
+    }
+
+    /**
+     * Parses the output of {@link FunctionTree#format()}.
+     * @param formatted
+     * @return The parsed tree.
+     * @throws IllegalArgumentException if the string can not be parsed
+     */
+    static FunctionTree parse(final String formatted) {
+        final FunctionTreeParser parser = new FunctionTreeParser(formatted);
+        parser.node();
+        if ( parser.pos != parser.end ) throw parser.error("unexpected input");
+        return parser.toTree();
+    }
+
+    /**
+     * Parses the canonical encoding (see {@link FunctionTree#encode()}).
+     * @param encoded
+     * @return The parsed tree.
+     * @throws IllegalArgumentException if the string can not be parsed
+     */
+    static FunctionTree decode(final String encoded) {
+        final FunctionTreeParser parser = new FunctionTreeParser(encoded);
+        final String str = encoded;
+        final int end = parser.end;
+        int needed = 1;
+        int beg = 0;
+        while ( beg < end ) {
+            if ( needed == 0 ) throw parser.error("unexpected input");
+            int i = str.indexOf(' ', beg);
+            if ( i == -1 ) i = end;
+            if ( i == beg ) throw parser.error("empty node");
+            parser.pos = beg;
+            final int index = parser.size++;
+            final char c = str.charAt(beg);
+            if ( i - beg == 1 && c == 'x' ) { // variable
+                parser.code[index] = 0;
+            }
+            else if ( isNumberStart(str, beg, i) ) {
+                parser.functions[index] = new ConstantFunction( parser.number(beg, i) );
+            }
+            else {
+                final Function fx = lookup(str, beg, i);
+                if ( fx == null ) throw parser.error("unknown function");
+                parser.functions[index] = fx;
+                parser.code[index] = (byte) fx.arity();
+                needed += fx.arity();
+            }
+            needed--;
+            beg = i + 1;
+        }
+        if ( needed != 0 ) throw parser.error("incomplete tree");
+        return parser.toTree();
+    }
+
+    /**
+     * Encodes the tree in the canonical form.
+     * @see #decode(String)
+     */
+    static String encode(final FunctionTree tree) {
+        final Function[] functions = tree.getFunctions();
+        final StringBuffer str = new StringBuffer(functions.length * 4);
+        for (int i=0; i<functions.length; i++) {
+            if ( i > 0 ) str.append(' ');
+            final Function fx = functions[i];
+            if ( fx == null ) str.append('x');
+            else if ( fx instanceof ConstantFunction ) {
+                str.append( ((ConstantFunction) fx).value() );
+            }
+            else str.append( fx.toString() );
+        }
+        return str.toString();
+    }
+
+    private FunctionTree toTree() {
+        final char[] chars = new char[size];
+        for (int i=0; i<size; i++) chars[i] = (char) ('0' + code[i]);
+        final Function[] functions = new Function[size];
+        System.arraycopy(this.functions, 0, functions, 0, size);
+        return new FunctionTree(new String(chars), functions);
+    }
+
+    /**
+     * node := 'x' | constant | '(' function ')'
+     */
+    private void node() {
+        if ( pos >= end ) throw error("unexpected end");
+        final char c = str.charAt(pos);
+        if ( c == '(' ) {
+            pos++;
+            function();
+            expect(')');
+        }
+        else if ( c == 'x' && ( pos + 1 == end || ! isIdentifierPart(str.charAt(pos + 1)) ) ) {
+            pos++;
+            code[size] = 0; functions[size++] = null;
+        }
+        else constant();
+    }
+
+    /**
+     * function := id '(' node ')' | '-' node | node '!' | node op node
+     */
+    private void function() {
+        final int slot = size++;
+        final int start = pos;
+        final char c = pos < end ? str.charAt(pos) : 0;
+        if ( isIdentifierStart(c) ) { // prefix function e.g. sin(x)
+            int i = pos + 1;
+            while ( i < end && isIdentifierPart(str.charAt(i)) ) i++;
+            if ( i < end && str.charAt(i) == '(' ) {
+                final Function fx = lookup(str, pos, i);
+                if ( fx == null || fx.arity() != 1 ) throw error("unknown function");
+                pos = i + 1;
+                node();
+                expect(')');
+                fill(slot, fx);
+                return;
+            }
+        }
+        else if ( c == '-' ) { // negation (or a negative constant operand)
+            pos++;
+            node();
+            if ( pos < end && str.charAt(pos) == ')' ) {
+                fill(slot, Functions.Neg.INSTANCE);
+                return;
+            }
+            pos = start; size = slot + 1; // backtrack
+        }
+        node();
+        if ( pos >= end ) throw error("unexpected end");
+        final char op = str.charAt(pos++);
+        if ( op == '!' ) {
+            fill(slot, Functions.Fact.INSTANCE);
+            return;
+        }
+        final Function fx = operator(op);
+        if ( fx == null ) {
+            pos--;
+            throw error("unknown operator");
+        }
+        node();
+        fill(slot, fx);
+    }
+
+    private void fill(final int slot, final Function fx) {
+        code[slot] = (byte) fx.arity();
+        functions[slot] = fx;
+    }
+
+    private void constant() {
+        final int beg = pos;
+        int i = pos;
+        if ( i < end && str.charAt(i) == '-' ) i++;
+        if ( str.startsWith("NaN", i) ) i += 3;
+        else if ( str.startsWith("Infinity", i) ) i += 8;
+        else {
+            while ( i < end && isNumberPart(str.charAt(i)) ) i++;
+            if ( i < end && ( str.charAt(i) == 'E' || str.charAt(i) == 'e' ) ) {
+                i++;
+                if ( i < end && ( str.charAt(i) == '-' || str.charAt(i) == '+' ) ) i++;
+                while ( i < end && isNumberPart(str.charAt(i)) ) i++;
+            }
+        }
+        if ( i == beg ) throw error("unexpected character");
+        code[size] = 0;
+        functions[size++] = new ConstantFunction( number(beg, i) );
+        pos = i;
+    }
+
+    private double number(final int beg, final int end) {
+        try {
+            return Double.parseDouble( str.substring(beg, end) );
+        }
+        catch (NumberFormatException e) {
+            throw error("invalid constant");
+        }
+    }
+
+    private void expect(final char c) {
+        if ( pos >= end || str.charAt(pos) != c ) throw error("expected '" + c + "'");
+        pos++;
+    }
+
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException(message + " at " + pos + ": " + str);
+    }
+
+    private static final Function[] OPERATORS = new Function[128];
+    static {
+        final Function[] operators = new Function[] {
+            Functions.Add.INSTANCE, Functions.Sub.INSTANCE, Functions.Mul.INSTANCE,
+            Functions.Div.INSTANCE, Functions.Mod.INSTANCE, Functions.Pow.INSTANCE,
+            Functions.Max.INSTANCE, Functions.Min.INSTANCE
+        };
+        for (int i=0; i<operators.length; i++) {
+            OPERATORS[ operators[i].toString().charAt(0) ] = operators[i];
+        }
+    }
+
+    private static Function operator(final char c) {
+        if ( c < OPERATORS.length && OPERATORS[c] != null ) return OPERATORS[c];
+        final Function fx = FunctionTree.findFunction( String.valueOf(c) );
+        return fx != null && fx.arity() == 2 ? fx : null;
+    }
+
+    private static Function lookup(final String str, final int beg, final int end) {
+        if ( end - beg == 1 ) {
+            final char c = str.charAt(beg);
+            if ( c < OPERATORS.length && OPERATORS[c] != null ) return OPERATORS[c];
+        }
+        return FunctionTree.findFunction( str.substring(beg, end) );
+    }
+
+    private static boolean isNumberStart(final String str, final int beg, final int end) {
+        char c = str.charAt(beg);
+        if ( c == '-' && end - beg > 1 ) c = str.charAt(beg + 1);
+        return ( c >= '0' && c <= '9' ) || c == '.' || c == 'N' || c == 'I';
+    }
+
+    private static boolean isNumberPart(final char c) {
+        return ( c >= '0' && c <= '9' ) || c == '.';
+    }
+
+    private static boolean isIdentifierStart(final char c) {
+        return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(final char c) {
+        return isIdentifierStart(c) || ( c >= '0' && c <= '9' );
+    }
+
+}
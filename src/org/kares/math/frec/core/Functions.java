@@ -16,6 +16,10 @@
 
 package org.kares.math.frec.core;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 /**
  * Standart function implementation for computing.
  * To be used by a {@link FunctionTree}.
@@ -26,6 +30,49 @@ package org.kares.math.frec.core;
  */
 public abstract strictfp class Functions {
 
+    /**
+     * All the standart functions, the order is fixed (the index is the
+     * function's number in binary encodings).
+     */
+    static final Function[] STANDART = new Function[] {
+        Add.INSTANCE, Sub.INSTANCE, Mul.INSTANCE, Div.INSTANCE, Mod.INSTANCE,
+        Pow.INSTANCE, Sin.INSTANCE, Cos.INSTANCE, Tan.INSTANCE, Cot.INSTANCE,
+        Sec.INSTANCE, Csc.INSTANCE, ArcSin.INSTANCE, ArcCos.INSTANCE,
+        ArcTan.INSTANCE, Abs.INSTANCE, Exp.INSTANCE, Ln.INSTANCE,
+        Log2.INSTANCE, Log10.INSTANCE, Trunc.INSTANCE, Round.INSTANCE,
+        Floor.INSTANCE, Ceil.INSTANCE, Sqrt.INSTANCE, Cbrt.INSTANCE,
+        Fact.INSTANCE, Neg.INSTANCE, Max.INSTANCE, Min.INSTANCE
+    };
+
+    private static final Map byId = new HashMap();
+    private static final Map indexes = new IdentityHashMap();
+
+    static {
+        for (int i=0; i<STANDART.length; i++) {
+            byId.put(STANDART[i].toString(), STANDART[i]);
+            indexes.put(STANDART[i], Integer.valueOf(i));
+        }
+    }
+
+    /**
+     * Looks up a standart function by it's id (e.g. "sin" or "+").
+     * @param id
+     * @return The function or null if there's no such function.
+     */
+    public static Function forId(final String id) {
+        return (Function) byId.get(id);
+    }
+
+    /**
+     * @param function
+     * @return The index of a standart function (or -1 for other functions).
+     * @see #STANDART
+     */
+    static int indexOf(final Function function) {
+        final Integer index = (Integer) indexes.get(function);
+        return index == null ? -1 : index.intValue();
+    }
+
 	/**
 	 * Addition "+" function.
 	 * 
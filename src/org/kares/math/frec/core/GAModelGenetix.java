@@ -44,11 +44,17 @@ public class GAModelGenetix extends Genetix {
         
         initializeGeneration();
         checkFitnessErrors();
-        while (getCurrentGeneration().length < generationSize) {
-            final int len = getCurrentGeneration().length;
-            addNewToGeneration(generationSize - len);
-            checkFitnessErrors();
+        // NOTE: addNewToGeneration won't exceed the generation size !
+        final GenetixFunction.Tuple initGeneration = getCurrentGenerationAsTuple();
+        while (initGeneration.size() < generationSize) {
+            final GenetixFunction[] added =
+                generateFunctions(generationSize - initGeneration.size(), true);
+            computeFitness(added);
+            for (int i=0; i<added.length; i++) {
+                if ( isFitnessValid(added[i]) ) initGeneration.add(added[i]);
+            }
         }
+        setCurrentGeneration(initGeneration);
 
         generationSize /= 2;
         selectBest(generationSize);
@@ -74,9 +80,13 @@ public class GAModelGenetix extends Genetix {
      */
     protected void computeNext() {
         int generationSize = getGenerationSize();
+        getMetrics().phaseStarted(GenetixMetrics.MUTATE);
         mutateGeneration();
+        getMetrics().phaseCompleted(GenetixMetrics.MUTATE);
         selectBest(3 * generationSize / 4);
+        getMetrics().phaseStarted(GenetixMetrics.CROSS);
         crossGeneration();
+        getMetrics().phaseCompleted(GenetixMetrics.CROSS);
         checkFitnessErrors();
         checkPopulationErrors();
         selectBest(generationSize);
@@ -102,7 +112,7 @@ public class GAModelGenetix extends Genetix {
                 rnd2 = RandomHelper.randomInt(rnd1);
                 newGeneration[i] = (GenetixFunction) currentGeneration[rnd1].clone();
                 newGeneration[i+1] = (GenetixFunction) currentGeneration[rnd2].clone();
-                newGeneration[i].crossFunctions(newGeneration[i+1], arbitraryCrossings);
+                newGeneration[i].crossFunctions(newGeneration[i+1], getConfig(), arbitraryCrossings);
                 i += 2;
             //}
         }
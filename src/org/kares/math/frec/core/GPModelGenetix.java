@@ -16,6 +16,10 @@
 
 package org.kares.math.frec.core;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import org.kares.math.frec.util.RandomHelper;
 
 /**
@@ -38,14 +42,23 @@ public class GPModelGenetix extends Genetix {
     /**
      */
     public GPModelGenetix() {
-        currentCodeMin = GenetixFunction.getFunctionCodeMinLength();
-        currentCodeMax = GenetixFunction.getFunctionCodeMaxLength();
+        initCodeLimits();
+    }
+
+    /**
+     * Initializes the current code limits from the configuration (it might
+     * have changed since this instance has been created).
+     */
+    protected void initCodeLimits() {
+        currentCodeMin = getConfig().getFunctionMinLength();
+        currentCodeMax = getConfig().getFunctionMaxLength();
     }
 
     /**
      * @see org.kares.math.frec.core.Genetix#computeInit()
      */
     protected void computeInit() {
+        initCodeLimits();
         initializeGeneration();
         checkFitnessErrors();
         final int generationSize = getGenerationSize();
@@ -77,8 +90,12 @@ public class GPModelGenetix extends Genetix {
         final int generationSize = getGenerationSize();
         int select_size = Math.round(generationSize * getSelectionProbability());
         selectBest(select_size);
+        getMetrics().phaseStarted(GenetixMetrics.CROSS);
         crossGeneration();
+        getMetrics().phaseCompleted(GenetixMetrics.CROSS);
+        getMetrics().phaseStarted(GenetixMetrics.MUTATE);
         mutateGeneration();
+        getMetrics().phaseCompleted(GenetixMetrics.MUTATE);
         reproductGeneration();
         addNewToGeneration(generationSize / 10);
         computeFitness();
@@ -97,11 +114,17 @@ public class GPModelGenetix extends Genetix {
     }
 
     /**
+     * Functions of the average length are generated unless the lengths are
+     * ramped (see {@link GenetixConfig#SAMPLING_RAMPED}).
      * @see org.kares.math.frec.core.Genetix#initializeGeneration()
      */
     protected void initializeGeneration() {
         final int generationSize = getGenerationSize();
-        setCurrentGeneration( generateFunctions(generationSize, 1 + (currentCodeMin + currentCodeMax) / 2) );
+        if ( getConfig().getCodeSampling() == GenetixConfig.SAMPLING_RAMPED ) {
+            setCurrentGeneration( generateFunctions(generationSize) );
+        } else {
+            setCurrentGeneration( generateFunctions(generationSize, 1 + (currentCodeMin + currentCodeMax) / 2) );
+        }
         computeFitness();
     }
 
@@ -115,7 +138,7 @@ public class GPModelGenetix extends Genetix {
         for (int i = 0; i < currentGeneration.length; i++) {
             if ( RandomHelper.randomBoolean(prob) ) {
                 GenetixFunction mut = (GenetixFunction) currentGeneration[i].clone();
-                mut.mutateFunction( isArbitraryMutations() );
+                mut.mutateFunction( getConfig(), isArbitraryMutations() );
                 newGeneration.add(mut);
             }
         }
@@ -136,7 +159,7 @@ public class GPModelGenetix extends Genetix {
                 while (rnd == i) rnd = RandomHelper.ascRandomInt(len);
                 GenetixFunction new1 = currentGeneration[i];
                 GenetixFunction new2 = currentGeneration[rnd];
-                new1.crossFunctions(new2, isArbitraryCrossings());
+                new1.crossFunctions(new2, getConfig(), isArbitraryCrossings());
                 newGeneration.add(new1);
                 newGeneration.add(new2);
             }
@@ -176,6 +199,28 @@ public class GPModelGenetix extends Genetix {
         setCurrentGeneration(newGeneration);
     }
 
+    /**
+     * @see org.kares.math.frec.core.Genetix#writeState(DataOutputStream)
+     */
+    protected void writeState(final DataOutputStream out) throws IOException {
+        super.writeState(out);
+        out.writeFloat(reproductProbability);
+        out.writeFloat(selectionProbability);
+        out.writeInt(currentCodeMin);
+        out.writeInt(currentCodeMax);
+    }
+
+    /**
+     * @see org.kares.math.frec.core.Genetix#readState(DataInputStream)
+     */
+    protected void readState(final DataInputStream in) throws IOException {
+        super.readState(in);
+        reproductProbability = in.readFloat();
+        selectionProbability = in.readFloat();
+        currentCodeMin = in.readInt();
+        currentCodeMax = in.readInt();
+    }
+
     /**
      * Sets the reproduction probability.
      */
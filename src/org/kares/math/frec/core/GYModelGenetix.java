@@ -41,6 +41,7 @@ public class GYModelGenetix extends GPModelGenetix {
      * @see org.kares.math.frec.core.GPModelGenetix#computeInit()
      */
     protected void computeInit() {
+        initCodeLimits();
         final int generationSize = getGenerationSize();
         int initSize = 4;
         int selectSize = 0;
@@ -83,22 +84,37 @@ public class GYModelGenetix extends GPModelGenetix {
         int selectSize = Math.round(generationSize * getSelectionProbability());
         selectBest(selectSize);
         
-        //GenetixFunction.setFunctionCodeLengthLimits(++currentCodeMin, currentCodeMax *= 2);
-        setMinFunctionLength( ++currentCodeMin );
-        setMaxFunctionLength( currentCodeMax *= 2 );
-        
-        mutateGeneration(); // GP
-        reproductGeneration(); // GP
-        crossGeneration(); // GP
-        
-        //GenetixFunction.setFunctionCodeLengthLimits(--currentCodeMin, currentCodeMax /= 2);
-        setMinFunctionLength( --currentCodeMin );
-        setMaxFunctionLength( currentCodeMax /= 2 );
+        // relaxed limits (of this run's own config) while mutating and crossing :
+        final GenetixConfig config = getConfig();
+        config.setFunctionLengthLimits(currentCodeMin + 1, currentCodeMax * 2);
+        try {
+            getMetrics().phaseStarted(GenetixMetrics.MUTATE);
+            final int selected = getCurrentGeneration().length;
+            mutateGeneration(); // GP
+            // NOTE: the mutants (added at the end) still have their parent's fitness !
+            final GenetixFunction[] mutated = new GenetixFunction[getCurrentGeneration().length - selected];
+            System.arraycopy(getCurrentGeneration(), selected, mutated, 0, mutated.length);
+            computeFitness(mutated);
+            getMetrics().phaseCompleted(GenetixMetrics.MUTATE);
+            reproductGeneration(); // GP
+            getMetrics().phaseStarted(GenetixMetrics.CROSS);
+            crossGeneration(); // GP
+            getMetrics().phaseCompleted(GenetixMetrics.CROSS);
+        }
+        finally {
+            config.setFunctionLengthLimits(currentCodeMin, currentCodeMax);
+        }
         
         checkFitnessErrors();
         checkPopulationErrors();
         while ( getCurrentGeneration().length < generationSize ) {
-            addNewToGeneration(generationSize - getCurrentGeneration().length);
+            // NOTE: GP's addNewToGeneration does not compute the fitness !
+            final GenetixFunction[] added =
+                generateFunctions(generationSize - getCurrentGeneration().length);
+            computeFitness(added);
+            final GenetixFunction.Tuple newGeneration = getCurrentGenerationAsTuple();
+            newGeneration.addAll(added);
+            setCurrentGeneration(newGeneration);
             checkFitnessErrors();
         }
         selectBest(generationSize);
@@ -117,6 +133,10 @@ public class GYModelGenetix extends GPModelGenetix {
 
         GenetixFunction.Tuple validCrosses = getCurrentGenerationAsTuple();
         
+        // the crossed parents (pairs) and the crossings left to try :
+        final int[] parents = new int[2 * len];
+        final int[] crossings = new int[len];
+        int pairs = 0;
         for (int i=0; i<len; i++) {
             if ( RandomHelper.randomBoolean(prob * (1 - i / len)) )
             {
@@ -140,34 +160,53 @@ public class GYModelGenetix extends GPModelGenetix {
                 }
                 */
                 int allCrosings = 2 * ( fx1.length() - 1 ) * ( fx2.length() - 1 );
-                while ( allCrosings-- > 0 ) {
-                    int pos1 = 1 + RandomHelper.randomInt(fx1.length() - 1);
-                    int pos2 = 1 + RandomHelper.randomInt(fx2.length() - 1);
-                    GenetixFunction new1 = (GenetixFunction) fx1.clone();
-                    GenetixFunction new2 = (GenetixFunction) fx2.clone();
-                    new1.crossFunctions(new2, pos1, pos2);
-                    GenetixFunction[] crossed = new GenetixFunction[] {new1, new2};
-                    if ( addValidCrossedFunctions(validCrosses, crossed) ) break;
+                if ( allCrosings > 0 ) {
+                    parents[2 * pairs] = i; parents[2 * pairs + 1] = rnd;
+                    crossings[pairs++] = allCrosings;
                 }
             }
-        }        
+        }
+        // all pairs are crossed and scored together (thus the fitness mode 
+        // applies to all of them), pairs that did not produce a valid 
+        // function are crossed again until they run out of crossings :
+        while ( pairs > 0 ) {
+            final GenetixFunction[] crossed = new GenetixFunction[2 * pairs];
+            for (int p=0; p<pairs; p++) {
+                GenetixFunction fx1 = currentGeneration[ parents[2 * p] ];
+                GenetixFunction fx2 = currentGeneration[ parents[2 * p + 1] ];
+                int pos1 = 1 + RandomHelper.randomInt(fx1.length() - 1);
+                int pos2 = 1 + RandomHelper.randomInt(fx2.length() - 1);
+                GenetixFunction new1 = (GenetixFunction) fx1.clone();
+                GenetixFunction new2 = (GenetixFunction) fx2.clone();
+                new1.crossFunctions(new2, pos1, pos2);
+                crossed[2 * p] = new1; crossed[2 * p + 1] = new2;
+            }
+            computeFitness(crossed);
+            int left = 0;
+            for (int p=0; p<pairs; p++) {
+                if ( addValidCrossedFunctions(validCrosses, crossed, 2 * p) ) continue;
+                if ( --crossings[p] == 0 ) continue;
+                parents[2 * left] = parents[2 * p]; parents[2 * left + 1] = parents[2 * p + 1];
+                crossings[left++] = crossings[p];
+            }
+            pairs = left;
+        }
         setCurrentGeneration( validCrosses.snapshot() );
     } 
     
     private boolean addValidCrossedFunctions(
             final GenetixFunction.Tuple to, 
-            final GenetixFunction[] crossed) {
-        computeFitness(crossed);
-        final int minLen = GenetixFunction.getFunctionCodeMinLength();
-        final int maxLen = GenetixFunction.getFunctionCodeMaxLength();
+            final GenetixFunction[] crossed, final int off) {
+        final int minLen = getConfig().getFunctionMinLength();
+        final int maxLen = getConfig().getFunctionMaxLength();
         boolean added = false;
-        for (int i=0; i<crossed.length; i++) {
+        for (int i=off; i<off + 2; i++) {
             boolean validLen = isArbitraryCrossings();
             if ( ! validLen ) {
                 int len = crossed[i].length();
                 validLen = len >= minLen && len <= maxLen;
             }
-            if ( validLen && crossed[i].isFitnessValid() ) {
+            if ( validLen && isFitnessValid(crossed[i]) ) {
                 added = true;
                 to.add(crossed[i]);
             }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.core;
+
+/**
+ * A listener notified (asynchronously) about every computed generation.
+ * <p>
+ * Snapshots are delivered in order, but a slow listener might miss some
+ * of them - only the latest (not yet delivered) snapshot is kept, thus
+ * listeners never hold the computation back. The last snapshot of a
+ * computation (see {@link GenerationSnapshot#isFinished()}) is always
+ * delivered.
+ *
+ * @see Genetix#addGenerationListener(GenerationListener)
+ * @author kares
+ */
+public interface GenerationListener {
+
+    /**
+     * @param snapshot The (immutable) state of the computed generation.
+     */
+    void onGeneration(GenerationSnapshot snapshot);
+
+}
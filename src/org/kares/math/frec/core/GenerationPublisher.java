@@ -0,0 +1,140 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.core;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivers generation snapshots to the listeners of a computation.
+ * <p>
+ * Every listener has a "mailbox" holding only the latest undelivered
+ * snapshot (a newer snapshot replaces it) and the snapshots are delivered
+ * using the listener's executor, thus publishing never blocks and a slow
+ * listener only misses (intermediate) snapshots.
+ *
+ * @author kares
+ */
+final class GenerationPublisher {
+
+    private static ExecutorService defaultExecutor;
+
+    /**
+     * @return The executor used for listeners that did not specify one
+     * (daemon threads).
+     */
+    static synchronized Executor getDefaultExecutor() {
+        if ( defaultExecutor == null ) {
+            defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+                public Thread newThread(final Runnable task) {
+                    final Thread thread = new Thread(task, "F-ReC generation listener");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+
+            });
+        }
+        return defaultExecutor;
+    }
+
+    private final List subscriptions = new CopyOnWriteArrayList();
+
+    void subscribe(final GenerationListener listener, final Executor executor) {
+        if ( listener == null ) throw new IllegalArgumentException("null listener");
+        if ( executor == null ) throw new IllegalArgumentException("null executor");
+        subscriptions.add(new Subscription(listener, executor));
+    }
+
+    boolean unsubscribe(final GenerationListener listener) {
+        for (Iterator i = subscriptions.iterator(); i.hasNext(); ) {
+            final Subscription subscription = (Subscription) i.next();
+            if ( subscription.listener == listener ) {
+                return subscriptions.remove(subscription);
+            }
+        }
+        return false;
+    }
+
+    boolean hasSubscribers() {
+        return ! subscriptions.isEmpty();
+    }
+
+    void publish(final GenerationSnapshot snapshot) {
+        for (Iterator i = subscriptions.iterator(); i.hasNext(); ) {
+            ((Subscription) i.next()).offer(snapshot);
+        }
+    }
+
+    private static final class Subscription implements Runnable {
+
+        final GenerationListener listener;
+        private final Executor executor;
+        private final AtomicReference pending = new AtomicReference();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Subscription(final GenerationListener listener, final Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        void offer(final GenerationSnapshot snapshot) {
+            pending.set(snapshot); // conflate
+            if ( scheduled.compareAndSet(false, true) ) {
+                try {
+                    executor.execute(this);
+                }
+                catch (RejectedExecutionException e) {
+                    scheduled.set(false); // e.g. the executor has been shut down
+                }
+            }
+        }
+
+        /**
+         * Delivers the pending snapshots (one at a time).
+         */
+        public void run() {
+            while (true) {
+                final GenerationSnapshot snapshot = (GenerationSnapshot) pending.getAndSet(null);
+                if ( snapshot == null ) {
+                    scheduled.set(false);
+                    // a snapshot might have been offered in the meantime :
+                    if ( pending.get() == null || ! scheduled.compareAndSet(false, true) ) return;
+                    continue;
+                }
+                try {
+                    listener.onGeneration(snapshot);
+                }
+                catch (RuntimeException e) { // report but keep delivering
+                    final Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        }
+
+    }
+
+}
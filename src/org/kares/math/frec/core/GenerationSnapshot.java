@@ -0,0 +1,204 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.core;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of a computed generation - the generation counter,
+ * the best functions (copies) and statistics of the generation.
+ *
+ * @see GenerationListener
+ * @author kares
+ */
+public final class GenerationSnapshot {
+
+    private final String model;
+    private final int generation;
+    private final int generationLimit;
+    private final int populationSize;
+    private final GenetixFunction[] bestFunctions;
+    private final double bestFitness;
+    private final double meanFitness;
+    private final double medianFitness;
+    private final long fitnessEvaluations;
+    private final long pointEvaluations;
+    private final long computeTime;
+    private final long timestamp;
+    private final boolean finished;
+    private final int stopReason;
+    private final long seed;
+
+    /**
+     * Creates a snapshot of the current generation, the generation is not
+     * modified in any way (the best functions are copied).
+     * @param genetix
+     * @param bestCount The (maximal) number of best functions.
+     * @param finished
+     */
+    GenerationSnapshot(final Genetix genetix, final int bestCount, final boolean finished) {
+        final GenetixMetrics metrics = genetix.getMetrics();
+        this.model = metrics.getModel();
+        this.generation = genetix.getGenerationCounter();
+        this.generationLimit = genetix.getGenerationLimit();
+        this.fitnessEvaluations = metrics.getFitnessEvaluations();
+        this.pointEvaluations = genetix.getFitnessPointEvaluations();
+        this.computeTime = metrics.getComputeTime();
+        this.timestamp = System.currentTimeMillis();
+        this.finished = finished;
+        this.stopReason = finished ? genetix.getStopReason() : -1;
+        this.seed = genetix.getSeed();
+
+        GenetixFunction[] current = genetix.getCurrentGeneration();
+        if ( current == null ) current = new GenetixFunction[0];
+        this.populationSize = current.length;
+        // valid functions sorted by fitness :
+        final GenetixFunction[] valid = new GenetixFunction[current.length];
+        int size = 0;
+        for (int i=0; i<current.length; i++) {
+            if ( genetix.isFitnessValid(current[i]) ) valid[size++] = current[i];
+        }
+        Arrays.sort(valid, 0, size);
+
+        final int count = Math.min(bestCount, size);
+        bestFunctions = new GenetixFunction[count];
+        for (int i=0; i<count; i++) {
+            bestFunctions[i] = (GenetixFunction) valid[i].clone();
+        }
+        if ( size == 0 ) {
+            bestFitness = meanFitness = medianFitness = Double.NaN;
+        }
+        else {
+            double sum = 0;
+            for (int i=0; i<size; i++) sum += valid[i].getFitness();
+            bestFitness = valid[0].getFitness();
+            meanFitness = sum / size;
+            medianFitness = size % 2 == 1 ? valid[size / 2].getFitness() :
+                ( valid[size / 2 - 1].getFitness() + valid[size / 2].getFitness() ) / 2;
+        }
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * @return The generation counter.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    public int getGenerationLimit() {
+        return generationLimit;
+    }
+
+    /**
+     * @return The size of the generation (all functions).
+     */
+    public int getPopulationSize() {
+        return populationSize;
+    }
+
+    /**
+     * NOTE: The functions are copies, they should not be modified.
+     * @return The best (valid) functions - the best one first.
+     */
+    public GenetixFunction[] getBestFunctions() {
+        return bestFunctions.clone();
+    }
+
+    /**
+     * @return The best fitness (NaN if there are no valid functions).
+     */
+    public double getBestFitness() {
+        return bestFitness;
+    }
+
+    /**
+     * @return The mean fitness of the valid functions.
+     */
+    public double getMeanFitness() {
+        return meanFitness;
+    }
+
+    /**
+     * @return The median fitness of the valid functions.
+     */
+    public double getMedianFitness() {
+        return medianFitness;
+    }
+
+    /**
+     * @see GenetixMetrics#getFitnessEvaluations()
+     */
+    public long getFitnessEvaluations() {
+        return fitnessEvaluations;
+    }
+
+    /**
+     * @see Genetix#getFitnessPointEvaluations()
+     */
+    public long getPointEvaluations() {
+        return pointEvaluations;
+    }
+
+    /**
+     * @return The computation time (in ms) till the snapshot was taken.
+     */
+    public long getComputeTime() {
+        return computeTime;
+    }
+
+    /**
+     * @return The (system) time the snapshot was taken.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return True if this is the last snapshot (the computation ended).
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return Why the computation stopped (a <code>Genetix.STOP_</code>
+     * constant), -1 unless this is the last snapshot.
+     * @see Genetix#getStopReason()
+     */
+    public int getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * @return The (run) seed of the computation.
+     * @see Genetix#getSeed()
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public String toString() {
+        return model + " generation " + generation + " of " + generationLimit +
+            ": best fitness " + bestFitness + (finished ? " (finished)" : "");
+    }
+
+}
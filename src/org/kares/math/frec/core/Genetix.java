@@ -16,14 +16,25 @@
 
 package org.kares.math.frec.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.kares.math.frec.util.GenFile;
+import org.kares.math.frec.util.GenerationLog;
 import org.kares.math.frec.util.RandomHelper;
+import org.kares.math.frec.util.RandomStream;
 
 /**
  * <code>Genetix</code> represents the computation "engine" that 
@@ -36,6 +47,109 @@ import org.kares.math.frec.util.RandomHelper;
  */
 public abstract class Genetix implements Runnable {
     
+    /**
+     * Fitness mode - every function is scored on all the training data.
+     * This is the default mode.
+     */
+    public static final int FITNESS_EXHAUSTIVE = 0;
+
+    /**
+     * Fitness mode - functions are scored on a (stratified) random sample
+     * of the training data, the sample is re-drawn every generation.
+     * Only functions that survive {@link #selectBest(int)} get re-scored
+     * on all the data. The sample size adapts to how well the sampled
+     * estimates match the fitness computed on all data.
+     * Useful for large training data sets (only applies when there are at
+     * least <code>2 * MIN_FITNESS_SAMPLE_SIZE</code> data points).
+     */
+    public static final int FITNESS_SAMPLED = 1;
+
+    /**
+     * Fitness mode - successive halving, functions are scored on a small 
+     * fraction of the training data, only the better half gets scored on
+     * twice as many points, until the best functions are scored on all data.
+     * As with {@link #FITNESS_SAMPLED} estimated functions that would be 
+     * selected are re-scored on all data.
+     * Functions are only dropped among the functions scored together, the
+     * models thus score their offspring (mutants and crossed functions) 
+     * in batches.
+     * @see #getFitnessPointEvaluationsSaved()
+     */
+    public static final int FITNESS_HALVING = 2;
+
+    /**
+     * Precision mode - the fitness is computed in double precision.
+     * This is the default mode.
+     */
+    public static final int PRECISION_DOUBLE = 0;
+
+    /**
+     * Precision mode - the fitness is computed in single precision (on a
+     * float copy of the data), the reported best functions are re-scored
+     * in double precision.
+     * NOTE: Functions are still evaluated in double precision thus this
+     * mode does not compute any faster than {@link #PRECISION_DOUBLE}.
+     * @see #getBestFunctions(int)
+     */
+    public static final int PRECISION_FLOAT = 1;
+
+    /**
+     * Precision mode - two tiers, all functions are screened (ranked) in
+     * single precision, the elite and the functions near the selection
+     * cut-off are re-scored in (strict) double precision before selecting.
+     * @see #getPrecisionRankDisagreements()
+     */
+    public static final int PRECISION_MIXED = 2;
+
+    /**
+     * Stop reason - the generation limit has been reached.
+     * @see #getStopReason()
+     */
+    public static final int STOP_GENERATION_LIMIT = 0;
+
+    /**
+     * Stop reason - the best fitness met the fitness target.
+     * @see #setFitnessTarget(double)
+     */
+    public static final int STOP_FITNESS_TARGET = 1;
+
+    /**
+     * Stop reason - the best fitness did not improve (enough) for the
+     * configured number of generations.
+     * @see #setStallLimit(int)
+     * @see #setMinImprovement(double)
+     */
+    public static final int STOP_STALLED = 2;
+
+    /**
+     * Stop reason - the (wall-clock) time limit has been exceeded.
+     * @see #setTimeLimit(long)
+     */
+    public static final int STOP_TIME_LIMIT = 3;
+
+    /**
+     * Stop reason - the computation has been stopped.
+     * @see #stopCompute()
+     */
+    public static final int STOP_CANCELLED = 4;
+
+    /**
+     * Functions with a (float) fitness within this relative distance from
+     * the selection cut-off are re-scored in {@link #PRECISION_MIXED}.
+     */
+    private static final double PRECISION_MARGIN = 1e-4;
+
+    /**
+     * The minimal size of the data sample for {@link #FITNESS_SAMPLED}
+     * (as well as the smallest fraction for {@link #FITNESS_HALVING}).
+     */
+    public static final int MIN_FITNESS_SAMPLE_SIZE = 500;
+
+    /**
+     * How many data points are read at once from {@link TrainingData}.
+     */
+    private static final int DATA_BLOCK_SIZE = 4096;
+
     /** 
      * The (actual) generation (includes the fitness).
      */
@@ -62,16 +176,102 @@ public abstract class Genetix implements Runnable {
      */
     private double[] dataX, dataY;
 
+    /**
+     * The (optional) weights of the data points, <code>null</code> if all
+     * the points are equally important.
+     */
+    private double[] dataW;
+
+    /**
+     * Single precision copies of the data (if evaluating in float).
+     * @see #setPrecisionMode(int)
+     */
+    private float[] floatX, floatY, floatW;
+
+    /** Data not kept in arrays (if set) e.g. a memory-mapped file. */
+    private TrainingData trainingData;
+
+    /** Buffers for blocks of (gathered) data points. */
+    private final double[] blockX = new double[DATA_BLOCK_SIZE];
+    private final double[] blockY = new double[DATA_BLOCK_SIZE];
+    private final double[] blockW = new double[DATA_BLOCK_SIZE];
+    private final float[] floatBlockX = new float[DATA_BLOCK_SIZE];
+    private final float[] floatBlockY = new float[DATA_BLOCK_SIZE];
+    private final float[] floatBlockW = new float[DATA_BLOCK_SIZE];
+
+    /** Buffers for the function values (on a block of data points). */
+    private final double[] values = new double[DATA_BLOCK_SIZE];
+    private final float[] floatValues = new float[DATA_BLOCK_SIZE];
+
+    /** Streaming data (if set) and it's current snapshot. */
+    private StreamingData streamingData;
+    private StreamingData.Snapshot streamingSnapshot;
+    /** The current "version" of the (streaming) data. */
+    private long dataStamp = -1;
+
     private float mutationProbability = 0.03f;
     private float crossingProbability = 0.90f;
 
+    private long seed;
+    private boolean seeded = false;
+    private String randomGenerator = RandomHelper.DEFAULT_GENERATOR;
+    /** The random stream of this computation (created with the seed). */
+    private RandomStream randomStream;
+
+    private AdaptiveProbabilities adaptation;
+    /** Offspring evaluated (per origin) since the last adaptation. */
+    final int[] offspringCounts = new int[3];
+    /** Offspring better than their parent (per origin). */
+    final int[] offspringImproved = new int[3];
+
     private long instancesCreated = 0; // UNUSED
 
+    private GenetixConfig config = GenetixConfig.getDefault().copy();
+
+    private final GenetixMetrics metrics = new GenetixMetrics(this);
+
+    private final GenerationPublisher publisher = new GenerationPublisher();
+    private int snapshotBestCount = 10;
+
     private double bestFitness = -1;
+    private double fitnessTarget = -1;
+    private int stallLimit = 0;
+    private double minImprovement = 0;
+    private long timeLimit = 0;
+
+    /** The best fitness that last counted as an improvement. */
+    private double improvedFitness = -1;
+    /** How many generations passed since the last improvement. */
+    private int stallCounter = 0;
+    private int stopReason = -1;
+
+    private int fitnessMode = FITNESS_EXHAUSTIVE;
+
+    private FitnessMetric fitnessMetric = FitnessMetrics.SAE.INSTANCE;
+    private double[] metricState;
+
+    /** The (adaptive) size of the data sample used for fitness estimates. */
+    private int fitnessSampleSize = 0;
+    private int[] fitnessSample;
+    private int fitnessSampleGeneration = -1;
+
+    private long pointEvaluations = 0;
+    private long pointEvaluationsExhaustive = 0;
+
+    private int precisionMode = PRECISION_DOUBLE;
+
+    private long precisionRankComparisons = 0;
+    private long precisionRankDisagreements = 0;
 
     /** This indicates whether saving is enabled (running in application mode). */
     private boolean isSaving = false;
     private GenFile genFile;
+
+    /** The checkpoint log (if set) and how often checkpoints are saved. */
+    private GenerationLog checkpointLog;
+    private int checkpointInterval = 1;
+    /** Whether the state has been restored from a checkpoint. */
+    private boolean resumed = false;
     
     /**
      * An empty constructor.
@@ -100,8 +300,10 @@ public abstract class Genetix implements Runnable {
     }
     
     /**
-     * Sets the minimal length of functions that will be created.
+     * Sets the (default) minimal length of functions that will be created.
      * The length here corresponds to Read's code length.
+     * NOTE: Only applies to instances created afterwards, use 
+     * {@link #getConfig()} to change the setting of an instance.
      * @see GenetixFunction#setFunctionCodeMinLength(int)
      */
     public static void setMinFunctionLength(int min_len) {
@@ -116,14 +318,42 @@ public abstract class Genetix implements Runnable {
     }
     
     /**
-     * Sets the maximal length of functions that will be created.
+     * Sets the (default) maximal length of functions that will be created.
      * The length here corresponds to Read's code length.
+     * NOTE: Only applies to instances created afterwards, use 
+     * {@link #getConfig()} to change the setting of an instance.
      * @see GenetixFunction#setFunctionCodeMaxLength(int)
      */
     public static void setMaxFunctionLength(int max_len) {
         GenetixFunction.setFunctionCodeMaxLength(max_len);
     }
 
+    /**
+     * @return The configuration of this instance (a copy of the default 
+     * configuration when created), changes apply to this instance only.
+     * @see GenetixConfig#getDefault()
+     */
+    public GenetixConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return The metrics (statistics) of this computation.
+     */
+    public GenetixMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the configuration, a copy of the given configuration is used
+     * thus the same configuration might be passed to several instances.
+     * @param config The configuration to be used by this instance.
+     */
+    public void setConfig(final GenetixConfig config) {
+        if ( config == null ) throw new IllegalArgumentException("null config");
+        this.config = config.copy();
+    }
+
     /**
      * Start the computation.
      * @see #compute()
@@ -140,19 +370,74 @@ public abstract class Genetix implements Runnable {
      * Performs initialization {@link #computeInit()} and then
      * iterates to the next generation {@link #computeNext()}.
      * This is repeated until the {@link #getGenerationLimit()}
-     * is reached. 
+     * is reached or one of the (combinable) stop criteria is met :
+     * the {@link #getFitnessTarget()}, the {@link #getStallLimit()}
+     * or the {@link #getTimeLimit()}. Criteria are checked between
+     * generations, see {@link #getStopReason()} for why it stopped.
+     * The computation uses it's own random stream (bound to the computing
+     * thread) thus it is reproducible given the {@link #getSeed()}.
+     * If the state has been restored from a checkpoint the initialization
+     * is skipped and the computation continues with the next generation.
+     * Generation listeners are notified after every generation.
+     * @see #resume(File)
+     * @see #addGenerationListener(GenerationListener)
      */
     public void compute() {
         computing = Boolean.TRUE;
-        computeInit();
-        while (generationCounter < generationLimit) {
-            if ( computeStopped() ) return;
-            if ( isSaving ) saveGeneration();
-            computeNext();
-            //debugGeneration( System.out );
-            generationCounter++;
+        stopReason = -1;
+        final long started = System.currentTimeMillis();
+        improvedFitness = -1; stallCounter = 0;
+        resetOffspringCounts();
+        if ( randomStream == null ) {
+            if ( ! seeded ) setSeed( RandomHelper.randomSeed() );
+            randomStream = RandomHelper.newStream(randomGenerator, seed);
+        }
+        final RandomStream boundStream = RandomHelper.bind(randomStream);
+        metrics.computeStarted();
+        try {
+            if ( streamingData != null ) syncStreamingData();
+            boolean saved = resumed; // the restored generation is in the log
+            if ( resumed ) resumed = false;
+            else {
+                metrics.phaseStarted(GenetixMetrics.INIT);
+                computeInit();
+                metrics.phaseCompleted(GenetixMetrics.INIT);
+                publishGeneration(false);
+            }
+            trackImprovement();
+            while (generationCounter < generationLimit) {
+                if ( computeStopped() ) {
+                    stopReason = STOP_CANCELLED;
+                    if ( checkpointLog != null && ! saved ) saveCheckpoint();
+                    return;
+                }
+                final int stop = checkStopCriteria(started);
+                if ( stop >= 0 ) {
+                    stopReason = stop;
+                    break;
+                }
+                if ( streamingData != null ) syncStreamingData();
+                if ( isSaving && ! saved ) saveGeneration();
+                saved = false;
+                metrics.phaseStarted(GenetixMetrics.NEXT);
+                computeNext();
+                metrics.phaseCompleted(GenetixMetrics.NEXT);
+                //debugGeneration( System.out );
+                generationCounter++;
+                trackImprovement();
+                if ( adaptation != null ) adaptation.adapt(this);
+                resetOffspringCounts();
+                publishGeneration(false);
+            }
+            if ( stopReason < 0 ) stopReason = STOP_GENERATION_LIMIT;
+            if ( isSaving && checkpointLog != null && ! saved ) saveCheckpoint();
+            computing = null;
+        }
+        finally {
+            RandomHelper.bind(boundStream);
+            metrics.computeFinished();
+            publishGeneration(true);
         }
-        computing = null;
     }
 
     /**
@@ -172,6 +457,108 @@ public abstract class Genetix implements Runnable {
         return ! computing.booleanValue();
     }
 
+    /**
+     * @param started The time the computation started at.
+     * @return The stop reason if a stop criteria is met, -1 otherwise.
+     */
+    private int checkStopCriteria(final long started) {
+        if ( isFitnessTargetReached() ) return STOP_FITNESS_TARGET;
+        if ( stallLimit > 0 && stallCounter >= stallLimit ) return STOP_STALLED;
+        if ( timeLimit > 0 && System.currentTimeMillis() - started >= timeLimit ) {
+            return STOP_TIME_LIMIT;
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the generations the best fitness did not improve for.
+     * Improvements are measured relative to the last improvement (thus
+     * many small improvements eventually count as one).
+     */
+    private void trackImprovement() {
+        if ( bestFitness < 0 ) return;
+        if ( improvedFitness < 0 ||
+             improvedFitness - bestFitness > minImprovement * improvedFitness ) {
+            improvedFitness = bestFitness;
+            stallCounter = 0;
+        }
+        else stallCounter++;
+    }
+
+    private void resetOffspringCounts() {
+        Arrays.fill(offspringCounts, 0);
+        Arrays.fill(offspringImproved, 0);
+    }
+
+    /**
+     * Accounts for an evaluated offspring (a mutated or crossed function).
+     * @param fx
+     */
+    private void offspringEvaluated(final GenetixFunction fx) {
+        final int origin = fx.getOrigin();
+        if ( origin == GenetixFunction.ORIGIN_NONE ) return;
+        fx.clearOrigin();
+        offspringCounts[origin]++;
+        if ( ! isFitnessValid(fx) ) return;
+        final double parentFitness = fx.getParentFitness();
+        if ( parentFitness < 0 || Double.isNaN(parentFitness) || 
+             fx.getFitness() < parentFitness ) {
+            offspringImproved[origin]++;
+        }
+    }
+
+    private void publishGeneration(final boolean finished) {
+        if ( ! publisher.hasSubscribers() ) return;
+        publisher.publish( new GenerationSnapshot(this, snapshotBestCount, finished) );
+    }
+
+    /**
+     * Adds a listener to be notified about computed generations, the
+     * notifications are delivered (asynchronously) using a shared pool of
+     * daemon threads.
+     * @param listener
+     * @see GenerationListener
+     */
+    public void addGenerationListener(final GenerationListener listener) {
+        addGenerationListener(listener, GenerationPublisher.getDefaultExecutor());
+    }
+
+    /**
+     * Adds a listener to be notified about computed generations.
+     * @param listener
+     * @param executor The executor used to deliver notifications e.g.
+     * to notify a GUI component on it's event dispatch thread.
+     * @see GenerationListener
+     */
+    public void addGenerationListener(final GenerationListener listener, final Executor executor) {
+        publisher.subscribe(listener, executor);
+    }
+
+    /**
+     * @param listener
+     * @return True if the listener has been removed.
+     */
+    public boolean removeGenerationListener(final GenerationListener listener) {
+        return publisher.unsubscribe(listener);
+    }
+
+    /**
+     * @return The number of best functions in generation snapshots.
+     */
+    public int getSnapshotBestCount() {
+        return snapshotBestCount;
+    }
+
+    /**
+     * @param count The number of best functions to be included in the
+     * generation snapshots (delivered to listeners).
+     * @see GenerationSnapshot#getBestFunctions()
+     */
+    public void setSnapshotBestCount(int count) {
+        if ( count < 0 ) throw new IllegalArgumentException("count < 0");
+        this.snapshotBestCount = count;
+    }
+
     /**
      * Halt the computation (if it's happening).
      * NOTE: It won't stop immediately but when the current iteration finishes.
@@ -187,7 +574,7 @@ public abstract class Genetix implements Runnable {
      */
     protected GenetixFunction[] generateFunctions(int size) {
         instancesCreated += size;
-        return GenetixFunction.generate(size);
+        return GenetixFunction.generate(config, size);
     }
 
     /**
@@ -198,7 +585,7 @@ public abstract class Genetix implements Runnable {
      */
     protected GenetixFunction[] generateFunctions(int size, int length) {
         instancesCreated += size;
-        return GenetixFunction.generate(size, length);
+        return GenetixFunction.generate(config, size, length);
     }
 
     /**
@@ -209,7 +596,7 @@ public abstract class Genetix implements Runnable {
      */
     protected GenetixFunction[] generateFunctions(int size, boolean shorter) {
         instancesCreated += size;
-        return GenetixFunction.generate(size, shorter);
+        return GenetixFunction.generate(config, size, shorter);
     }
 
     /**
@@ -247,8 +634,9 @@ public abstract class Genetix implements Runnable {
         int size = 0;
         int[] index = new int[currentGeneration.length];
         for ( int i=0; i<currentGeneration.length; i++ ) {
-            if ( currentGeneration[i].isFitnessValid() ) index[size++] = i;
+            if ( isFitnessValid(currentGeneration[i]) ) index[size++] = i;
         }
+        metrics.fitnessChecked(currentGeneration.length, currentGeneration.length - size);
         if ( size == currentGeneration.length ) return;
         GenetixFunction[] validGeneration = new GenetixFunction[size];
         for (int i=0; i<size; i++) {
@@ -257,14 +645,26 @@ public abstract class Genetix implements Runnable {
         setCurrentGeneration( validGeneration );
     }
     
+    /**
+     * @param fx
+     * @return True if the function's fitness is valid (within the 
+     * configured limit).
+     * @see GenetixConfig#getValidFitnessLimit()
+     */
+    protected boolean isFitnessValid(final GenetixFunction fx) {
+        return fx.isFitnessValid( config.getValidFitnessLimit() );
+    }
+
     /**
      * Performs various function error checks on the current generation.
      * @see GenetixFunction#checkFunction()
      */    
     protected void checkPopulationErrors() {
+        metrics.phaseStarted(GenetixMetrics.CHECK_POPULATION);
         final GenetixFunction[] currentGeneration = getCurrentGeneration();
         final int[] index = new int[currentGeneration.length];
         int invalidSize = 0;
+        int duplicateSize = 0;
 
         for (int i=0; i<currentGeneration.length; i++) {
             final boolean valid = currentGeneration[i].checkFunction();
@@ -281,6 +681,7 @@ public abstract class Genetix implements Runnable {
                 if ( currentGeneration[i].equals(currentGeneration[j]) ) {
                     index[j] = -1;
                     invalidSize++;
+                    duplicateSize++;
                 }
             }
         }
@@ -295,6 +696,8 @@ public abstract class Genetix implements Runnable {
             }
             setCurrentGeneration(validGeneration);
         }
+        metrics.populationChecked(currentGeneration.length, duplicateSize);
+        metrics.phaseCompleted(GenetixMetrics.CHECK_POPULATION);
     }    
 
     /**
@@ -307,11 +710,17 @@ public abstract class Genetix implements Runnable {
             limit = currentGeneration.length;
         }
         if ( limit <= 0 ) return;
+        metrics.phaseStarted(GenetixMetrics.SELECT);
         Arrays.sort( currentGeneration );
+        if ( isFitnessEstimating() ) confirmFitness(currentGeneration, limit);
+        else if ( precisionMode == PRECISION_MIXED && floatX != null ) {
+            confirmPrecision(currentGeneration, limit);
+        }
         GenetixFunction[] selected = new GenetixFunction[limit];
         System.arraycopy(currentGeneration, 0, selected, 0, limit);
         setCurrentGeneration(selected);
         bestFitness = selected[0].getFitness();
+        metrics.phaseCompleted(GenetixMetrics.SELECT);
     }
     
     /**
@@ -320,16 +729,31 @@ public abstract class Genetix implements Runnable {
      * decided using a mutation probability.
      */        
     protected void mutateGeneration() {
+       // the originals of the mutated functions :
+       final GenetixFunction[] originals = new GenetixFunction[currentGeneration.length];
+       int mutated = 0;
        for (int i=0; i<currentGeneration.length; i++) {
            final GenetixFunction fx = currentGeneration[i];
            if ( RandomHelper.randomBoolean(mutationProbability) ) {
                if (fx.getFitness() > 3 * bestFitness) {
-                   GenetixFunction org = (GenetixFunction) fx.clone();
-                   fx.mutateFunction(arbitraryMutations);
-                   if ( ! computeFitness(fx) ) currentGeneration[i] = org;
+                   originals[i] = (GenetixFunction) fx.clone();
+                   fx.mutateFunction(config, arbitraryMutations);
+                   mutated++;
                }
            }
        }
+       if ( mutated == 0 ) return;
+       // the mutants are scored together (the fitness mode applies) :
+       final GenetixFunction[] mutants = new GenetixFunction[mutated];
+       for (int i=0, j=0; i<currentGeneration.length; i++) {
+           if ( originals[i] != null ) mutants[j++] = currentGeneration[i];
+       }
+       computeFitness(mutants);
+       for (int i=0; i<currentGeneration.length; i++) {
+           if ( originals[i] != null && ! isFitnessValid(currentGeneration[i]) ) {
+               currentGeneration[i] = originals[i];
+           }
+       }
     }
     
     /**
@@ -349,22 +773,264 @@ public abstract class Genetix implements Runnable {
                 while (rnd == i) rnd = RandomHelper.randomInt(len);
                 GenetixFunction f1 = currentGeneration[i];
                 GenetixFunction f2 = currentGeneration[rnd];
-                f1.crossFunctions(f2, isArbitraryCrossings());
+                f1.crossFunctions(f2, config, isArbitraryCrossings());
             }
         }
         setCurrentGeneration(currentGeneration);
     }
 
     /**
-     * NOTE: NOT USED !
+     * Saves the current generation (if saving is enabled), the functions
+     * are written to the gen file and a checkpoint is appended to the 
+     * checkpoint log (every {@link #getCheckpointInterval()} generations).
+     * @see #setSavingMode(boolean)
      */
     void saveGeneration() {
-        if ( true ) return; // TODO saving disabled !
-        if (genFile == null) throw new IllegalStateException("no gen file");
-        final GenetixFunction[] currentGeneration = getCurrentGeneration();
-        for (int i=0; i<currentGeneration.length; i++) {
-            genFile.write( currentGeneration[i].getFunctionTree() );
+        if ( genFile != null ) {
+            final GenetixFunction[] currentGeneration = getCurrentGeneration();
+            for (int i=0; i<currentGeneration.length; i++) {
+                genFile.write( currentGeneration[i].getFunctionTree() );
+            }
+            genFile.flush();
+        }
+        if ( checkpointLog != null && generationCounter % checkpointInterval == 0 ) {
+            saveCheckpoint();
+        }
+    }
+
+    private void saveCheckpoint() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        try {
+            writeCheckpoint( new DataOutputStream(bytes) );
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        checkpointLog.append( bytes.toByteArray() );
+    }
+
+    /**
+     * Writes the computation state - the settings, the counters, the seed
+     * and the state of the random stream and the current generation (the functions 
+     * including constants and the fitness values, see {@link GenomeCodec}).
+     * @param out
+     * @throws IOException
+     */
+    private void writeCheckpoint(final DataOutputStream out) throws IOException {
+        out.writeUTF( getClass().getName() );
+        out.writeInt( getDataSize() );
+        out.writeInt( generationCounter );
+        out.writeInt( generationSize );
+        out.writeInt( generationLimit );
+        out.writeFloat( mutationProbability );
+        out.writeFloat( crossingProbability );
+        out.writeBoolean( arbitraryMutations );
+        out.writeBoolean( arbitraryCrossings );
+        out.writeInt( fitnessMode );
+        out.writeUTF( fitnessMetric.getName() );
+        out.writeInt( precisionMode );
+        out.writeInt( fitnessSampleSize );
+        out.writeDouble( bestFitness );
+        out.writeLong( instancesCreated );
+        out.writeLong( pointEvaluations );
+        out.writeLong( pointEvaluationsExhaustive );
+        out.writeLong( precisionRankComparisons );
+        out.writeLong( precisionRankDisagreements );
+        // the configuration :
+        out.writeInt( config.getFunctionMinLength() );
+        out.writeInt( config.getFunctionMaxLength() );
+        out.writeInt( config.getMaxRandomCodeLength() );
+        final Function[] allowedFunctions = config.getAllowedFunctions();
+        out.writeInt( allowedFunctions.length );
+        for (int i=0; i<allowedFunctions.length; i++) {
+            out.writeUTF( allowedFunctions[i].toString() );
+        }
+        out.writeInt( config.getCodeElementMin() );
+        out.writeInt( config.getCodeElementMax() );
+        out.writeDouble( config.getValidFitnessLimit() );
+        out.writeBoolean( config.isConstantsAllowed() );
+        out.writeDouble( config.getConstantMin() );
+        out.writeDouble( config.getConstantMax() );
+        out.writeInt( config.getCodeSampling() );
+        // a sample drawn for this generation is re-used :
+        final boolean sample = fitnessSample != null 
+            && fitnessSampleGeneration == generationCounter;
+        out.writeBoolean( sample );
+        if ( sample ) {
+            out.writeInt( fitnessSample.length );
+            for (int i=0; i<fitnessSample.length; i++) out.writeInt( fitnessSample[i] );
+        }
+        writeState(out);
+        out.writeLong( seed );
+        out.writeUTF( randomStream.getName() );
+        randomStream.writeState(out);
+        final ByteBuffer generation = GenomeCodec.encode( getCurrentGeneration() );
+        out.writeInt( generation.remaining() );
+        out.write( generation.array(), 0, generation.remaining() );
+        out.flush();
+    }
+
+    private void readCheckpoint(final DataInputStream in) throws IOException {
+        final String model = in.readUTF();
+        if ( ! model.equals( getClass().getName() ) ) {
+            throw new IllegalStateException("checkpoint of " + model + 
+                    " can not be resumed by " + getClass().getName());
+        }
+        final int dataSize = in.readInt();
+        if ( dataSize != getDataSize() ) {
+            throw new IllegalStateException("checkpoint data size " + dataSize + 
+                    " differs from the approximated data size " + getDataSize());
+        }
+        generationCounter = in.readInt();
+        generationSize = in.readInt();
+        generationLimit = in.readInt();
+        mutationProbability = in.readFloat();
+        crossingProbability = in.readFloat();
+        arbitraryMutations = in.readBoolean();
+        arbitraryCrossings = in.readBoolean();
+        fitnessMode = in.readInt();
+        final String metric = in.readUTF();
+        if ( ! metric.equals( fitnessMetric.getName() ) ) {
+            final FitnessMetric fitnessMetric = FitnessMetrics.forName(metric);
+            if ( fitnessMetric == null ) {
+                throw new IllegalStateException("unknown fitness metric: " + metric);
+            }
+            this.fitnessMetric = fitnessMetric;
+            this.metricState = null;
+        }
+        setPrecisionMode( in.readInt() );
+        fitnessSampleSize = in.readInt();
+        bestFitness = in.readDouble();
+        instancesCreated = in.readLong();
+        pointEvaluations = in.readLong();
+        pointEvaluationsExhaustive = in.readLong();
+        precisionRankComparisons = in.readLong();
+        precisionRankDisagreements = in.readLong();
+        final GenetixConfig config = this.config.copy();
+        config.setFunctionLengthLimits(in.readInt(), in.readInt());
+        config.setMaxRandomCodeLength( in.readInt() );
+        final Function[] allowedFunctions = new Function[ in.readInt() ];
+        for (int i=0; i<allowedFunctions.length; i++) {
+            final String id = in.readUTF();
+            allowedFunctions[i] = FunctionTree.findFunction(id, this.config);
+            if ( allowedFunctions[i] == null ) {
+                throw new IllegalStateException("unknown function: " + id);
+            }
+        }
+        config.setAllowedFunctions(allowedFunctions);
+        config.setCodeElementLimits(in.readInt(), in.readInt());
+        config.setValidFitnessLimit( in.readDouble() );
+        config.setConstantsAllowed( in.readBoolean() );
+        config.setConstantMin( in.readDouble() );
+        config.setConstantMax( in.readDouble() );
+        config.setCodeSampling( in.readInt() );
+        this.config = config;
+        fitnessSample = null;
+        fitnessSampleGeneration = -1;
+        if ( in.readBoolean() ) {
+            fitnessSample = new int[ in.readInt() ];
+            for (int i=0; i<fitnessSample.length; i++) fitnessSample[i] = in.readInt();
+            fitnessSampleGeneration = generationCounter;
+        }
+        readState(in);
+        seed = in.readLong(); seeded = true;
+        randomGenerator = in.readUTF();
+        randomStream = RandomHelper.newStream(randomGenerator, seed);
+        randomStream.readState(in);
+        final byte[] generation = new byte[ in.readInt() ];
+        in.readFully(generation);
+        setCurrentGeneration( GenomeCodec.decodeGeneration(ByteBuffer.wrap(generation), config) );
+    }
+
+    /**
+     * Writes the (model specific) state to a checkpoint.
+     * @param out
+     * @throws IOException
+     * @see #readState(DataInputStream)
+     */
+    protected void writeState(final DataOutputStream out) throws IOException {
+        // the adaptation and the offspring counted since the last adaptation :
+        out.writeBoolean( adaptation != null );
+        if ( adaptation != null ) adaptation.writeState(out);
+        for (int i=0; i<offspringCounts.length; i++) {
+            out.writeInt( offspringCounts[i] );
+            out.writeInt( offspringImproved[i] );
+        }
+    }
+
+    /**
+     * Restores the (model specific) state from a checkpoint.
+     * @param in
+     * @throws IOException
+     * @see #writeState(DataOutputStream)
+     */
+    protected void readState(final DataInputStream in) throws IOException {
+        if ( in.readBoolean() ) {
+            if ( adaptation == null ) adaptation = new AdaptiveProbabilities();
+            adaptation.readState(in);
+        }
+        else {
+            adaptation = null;
+        }
+        for (int i=0; i<offspringCounts.length; i++) {
+            offspringCounts[i] = in.readInt();
+            offspringImproved[i] = in.readInt();
+        }
+    }
+
+    /**
+     * Continues a computation from the last checkpoint saved in the given
+     * checkpoint log. The approximated data has to be set (the same data 
+     * as for the checkpointed computation), the settings, the state of the
+     * random generator and the generation are restored - the computation 
+     * continues exactly as if it had not been interrupted.
+     * <p>
+     * NOTE: {@link StreamingData} is not part of the checkpoint, a resumed 
+     * computation continues with the data available at the time.
+     * <p>
+     * NOTE: The generation limit is restored from the checkpoint as well
+     * (a limit set before resuming is lost), use 
+     * {@link #resume(File, int)} to continue past the checkpointed limit.
+     * @param checkpointFile
+     * @see #setCheckpointFile(File)
+     * @see #compute()
+     */
+    public void resume(final File checkpointFile) {
+        restore(checkpointFile);
+        compute();
+    }
+
+    /**
+     * Continues a computation from the last checkpoint with a new 
+     * generation limit (e.g. to extend a run that reached it's limit).
+     * @param checkpointFile
+     * @param generationLimit The generation limit (replacing the limit 
+     * of the checkpoint).
+     * @see #resume(File)
+     */
+    public void resume(final File checkpointFile, final int generationLimit) {
+        restore(checkpointFile);
+        setGenerationLimit(generationLimit);
+        compute();
+    }
+
+    /**
+     * Restores the state from the last checkpoint (without computing).
+     * @param checkpointFile
+     * @see #resume(File)
+     */
+    public void restore(final File checkpointFile) {
+        final byte[] checkpoint = GenerationLog.readLast(checkpointFile);
+        if ( checkpoint == null ) {
+            throw new IllegalStateException("no checkpoint in " + checkpointFile);
+        }
+        try {
+            readCheckpoint( new DataInputStream(new ByteArrayInputStream(checkpoint)) );
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
         }
+        resumed = true;
     }
 
     /**
@@ -427,79 +1093,581 @@ public abstract class Genetix implements Runnable {
      * @param fx
      * @return Trues if the fitness is valid.
      */
-    public strictfp boolean computeFitness(final GenetixFunction fx) {
-        // dataY and the funcY values (based on dataX)
-        double arithmeticDiff = 0;
-        for ( int j=0; j<dataX.length; j++ ) {
-            double funcYj = fx.getFunctionValue( dataX[j] );
-            if ( Double.isNaN(funcYj) ) {
-                arithmeticDiff = Double.NaN;
-                break;
-            }
-            arithmeticDiff += Math.abs(dataY[j] - funcYj);
-        }
-        return fx.setFitness( arithmeticDiff );
-        //return arithmeticDiff;
+    public boolean computeFitness(final GenetixFunction fx) {
+        metrics.phaseStarted(GenetixMetrics.FITNESS);
+        pointEvaluationsExhaustive += getDataSize();
+        final boolean valid = computeFullFitness(fx, false);
+        offspringEvaluated(fx);
+        metrics.fitnessEvaluated(1);
+        metrics.phaseCompleted(GenetixMetrics.FITNESS);
+        return valid;
     }
 
     /**
+     * Computes the fitness for the given functions.
+     * Depending on the fitness mode the fitness might be only estimated.
      * @see #computeFitness(GenetixFunction)
+     * @see #setFitnessMode(int)
      */
     public void computeFitness(final GenetixFunction[] fxs) {
+        metrics.phaseStarted(GenetixMetrics.FITNESS);
+        computeFitness0(fxs);
+        for (int i=0; i<fxs.length; i++) offspringEvaluated(fxs[i]);
+        metrics.fitnessEvaluated(fxs.length);
+        metrics.phaseCompleted(GenetixMetrics.FITNESS);
+    }
+
+    private void computeFitness0(final GenetixFunction[] fxs) {
+        pointEvaluationsExhaustive += (long) fxs.length * getDataSize();
+        if ( isFitnessEstimating() ) {
+            if ( fitnessMode == FITNESS_HALVING ) {
+                computeHalvingFitness(fxs);
+                return;
+            }
+            final int[] sample = getFitnessSample();
+            for (int i=0; i<fxs.length; i++) {
+                computeFitness(fxs[i], sample);
+            }
+            return;
+        }
+        if ( trainingData != null ) {
+            computeBlockFitness(fxs);
+            return;
+        }
         for (int i=0; i<fxs.length; i++) {
-            computeFitness(fxs[i]);
+            computeFullFitness(fxs[i], false);
         }
     }
 
     /**
-     * @return The current generation.
+     * Computes the fitness on all the data.
+     * @param fx
+     * @param strict If true the fitness is always computed in double precision.
+     * @return True if the fitness is valid.
      */
-    public GenetixFunction[] getCurrentGeneration() {
-        return this.currentGeneration;
+    private strictfp boolean computeFullFitness(final GenetixFunction fx, final boolean strict) {
+        if ( streamingData != null && fx.getFitnessStamp() >= 0 ) {
+            final boolean updated = updateStreamingFitness(fx);
+            metrics.fitnessCached(updated);
+            if ( updated ) return isFitnessValid(fx);
+        }
+        if ( trainingData != null ) {
+            computeBlockFitness(new GenetixFunction[] { fx });
+            return isFitnessValid(fx);
+        }
+        final double[] state = resetMetricState();
+        if ( floatX != null && ! strict ) {
+            final boolean valid = accumulate(fx, floatX, floatY, floatW, 0, floatX.length, state);
+            fx.setFitnessEstimate( valid ? fitnessMetric.fitness(state, 1) : Double.NaN );
+            return isFitnessValid(fx);
+        }
+        // dataY and the funcY values (based on dataX)
+        final boolean valid = accumulate(fx, dataX, dataY, dataW, 0, dataX.length, state);
+        fx.setFitness( valid ? fitnessMetric.fitness(state, 1) : Double.NaN );
+        fx.setFitnessStamp( dataStamp );
+        return isFitnessValid(fx);
     }
 
-    protected GenetixFunction.Tuple getCurrentGenerationAsTuple() {
-        return new GenetixFunction.Tuple(this.currentGeneration);
+    /**
+     * Computes the fitness of the given functions on {@link TrainingData}.
+     * The data is read in blocks and all functions are evaluated on a block
+     * (while it's "hot" in the cache) before moving on to the next one.
+     * @param fxs
+     */
+    private void computeBlockFitness(final GenetixFunction[] fxs) {
+        final TrainingData data = this.trainingData;
+        final FitnessMetric metric = this.fitnessMetric;
+        final int size = data.size();
+        final double[][] states = new double[fxs.length][metric.stateSize()];
+        final boolean[] invalid = new boolean[fxs.length];
+        final double[] w = data.isWeighted() ? blockW : null;
+        for ( int from = 0; from < size; from += DATA_BLOCK_SIZE ) {
+            final int len = Math.min(DATA_BLOCK_SIZE, size - from);
+            data.read(from, blockX, blockY, blockW, 0, len);
+            for (int i=0; i<fxs.length; i++) {
+                if ( invalid[i] ) continue;
+                invalid[i] = ! accumulate(fxs[i], blockX, blockY, w, 0, len, states[i]);
+            }
+        }
+        for (int i=0; i<fxs.length; i++) {
+            fxs[i].setFitness( invalid[i] ? Double.NaN : metric.fitness(states[i], 1) );
+            fxs[i].setFitnessStamp( dataStamp );
+        }
     }
 
-    protected void setCurrentGeneration(GenetixFunction[] gen) {
-        this.currentGeneration = gen;
+    /**
+     * @return The (zeroed) metric state for computing a single fitness.
+     */
+    private double[] resetMetricState() {
+        double[] state = this.metricState;
+        final int size = fitnessMetric.stateSize();
+        if ( state == null || state.length != size ) {
+            return this.metricState = new double[size];
+        }
+        Arrays.fill(state, 0);
+        return state;
     }
 
-    protected void setCurrentGeneration(GenetixFunction.Tuple tuple) {
-        this.currentGeneration = tuple.snapshot();
+    /**
+     * Evaluates the function on a range of data points and accumulates the 
+     * values into the metric state. The function values are computed into 
+     * a buffer (a block at a time) that the metric processes in one pass.
+     * @return False if the function value is NaN at some point.
+     */
+    private strictfp boolean accumulate(final GenetixFunction fx,
+            final double[] x, final double[] y, final double[] w, 
+            final int off, final int len, final double[] state) {
+        final FitnessMetric metric = this.fitnessMetric;
+        final double[] values = this.values;
+        for ( int from = off, end = off + len; from < end; from += DATA_BLOCK_SIZE ) {
+            final int n = Math.min(DATA_BLOCK_SIZE, end - from);
+            for (int i=0; i<n; i++) {
+                final double funcYj = fx.getFunctionValue( x[from + i] );
+                if ( Double.isNaN(funcYj) ) {
+                    pointsEvaluated(fx, from - off + i + 1);
+                    return false;
+                }
+                values[i] = funcYj;
+            }
+            metric.accumulate(state, y, from, values, w, n);
+        }
+        pointsEvaluated(fx, len);
+        return true;
+    }
+
+    private void pointsEvaluated(final GenetixFunction fx, final int points) {
+        pointEvaluations += points;
+        metrics.nodesEvaluated((long) points * fx.length());
     }
 
     /**
-     * Sets the training data. The training data represent 
-     * the aproximated function. 
-     *
-     * @param dataX The x (real) values of the training data.
-     * @param dataY The y values (f(x) values) of the training data.
-     */     
-    public void setApproximatingData(double[] dataX, double[] dataY) {
-        if (dataX == null) dataX = new double[0];
-        if (dataY == null) dataY = new double[0];
-        final int len = dataX.length;
-        if (len != dataY.length) {
-            throw new IllegalArgumentException(
-                    "dataX.length (" + dataX.length + ") != " +
-                    "dataY.length (" + dataY.length + ")");
-        }
-        double[] _dataX = new double[len];
-        double[] _dataY = new double[len];
-        for (int i=0; i<len; i++) {
-            _dataX[i] = dataX[i];
-            _dataY[i] = dataY[i];
+     * Single precision variant, the function values are rounded to float 
+     * and processed along with the float data.
+     * @see #accumulate(GenetixFunction, double[], double[], double[], int, int, double[])
+     */
+    private boolean accumulate(final GenetixFunction fx,
+            final float[] x, final float[] y, final float[] w, 
+            final int off, final int len, final double[] state) {
+        final FitnessMetric metric = this.fitnessMetric;
+        final float[] values = this.floatValues;
+        for ( int from = off, end = off + len; from < end; from += DATA_BLOCK_SIZE ) {
+            final int n = Math.min(DATA_BLOCK_SIZE, end - from);
+            for (int i=0; i<n; i++) {
+                final float funcYj = (float) fx.getFunctionValue( x[from + i] );
+                if ( Float.isNaN(funcYj) ) {
+                    pointsEvaluated(fx, from - off + i + 1);
+                    return false;
+                }
+                values[i] = funcYj;
+            }
+            metric.accumulate(state, y, from, values, w, n);
         }
-        this.dataX = _dataX;
-        this.dataY = _dataY;
+        pointsEvaluated(fx, len);
+        return true;
     }
 
     /**
-     * @see #setApproximatingData(double[], double[])
+     * Accumulates the metric state on the given data points, the points are
+     * gathered (a block at a time) into buffers first.
+     * @return False if the function value is NaN at some point.
      */
-    public void setApproximatingData(float[] dataX, float[] dataY) {
+    private boolean accumulate(final GenetixFunction fx, 
+            final int[] points, final int beg, final int end, final double[] state) {
+        for ( int from = beg; from < end; from += DATA_BLOCK_SIZE ) {
+            final int len = Math.min(DATA_BLOCK_SIZE, end - from);
+            final boolean valid;
+            if ( floatX != null ) {
+                final float[] w = floatW == null ? null : floatBlockW;
+                for (int i=0; i<len; i++) {
+                    final int j = points[from + i];
+                    floatBlockX[i] = floatX[j];
+                    floatBlockY[i] = floatY[j];
+                    if ( w != null ) w[i] = floatW[j];
+                }
+                valid = accumulate(fx, floatBlockX, floatBlockY, w, 0, len, state);
+            }
+            else {
+                final double[] w;
+                if ( trainingData != null ) {
+                    trainingData.read(points, from, blockX, blockY, blockW, 0, len);
+                    w = trainingData.isWeighted() ? blockW : null;
+                }
+                else {
+                    w = dataW == null ? null : blockW;
+                    for (int i=0; i<len; i++) {
+                        final int j = points[from + i];
+                        blockX[i] = dataX[j];
+                        blockY[i] = dataY[j];
+                        if ( w != null ) w[i] = dataW[j];
+                    }
+                }
+                valid = accumulate(fx, blockX, blockY, w, 0, len, state);
+            }
+            if ( ! valid ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Updates the fitness of a function computed on a previous version of
+     * the streaming data, the errors on points that left the window are
+     * subtracted and the errors on new points are added.
+     * This only works with additive metrics. To bound the rounding errors
+     * the fitness is computed from scratch each time the data sequence 
+     * passes a multiple of the window size.
+     * @param fx
+     * @return False if the fitness could not be updated incrementally.
+     * @see FitnessMetric#isAdditive()
+     */
+    private strictfp boolean updateStreamingFitness(final GenetixFunction fx) {
+        final long stamp = fx.getFitnessStamp();
+        if ( stamp == dataStamp ) return true; // up to date
+        final FitnessMetric metric = this.fitnessMetric;
+        if ( ! metric.isAdditive() ) return false;
+        final StreamingData.Snapshot snapshot = this.streamingSnapshot;
+        final StreamingData data = this.streamingData;
+        final long window = data.getWindow();
+        if ( stamp / window != dataStamp / window ) return false; // wrapped
+        final long beg = data.windowStart(stamp);
+        final long end = data.windowStart(dataStamp);
+        if ( beg < snapshot.base || end > stamp ) return false;
+        double fitness = fx.getFitness();
+        if ( Double.isNaN(fitness) || Double.isInfinite(fitness) ) return false;
+
+        final long tail = dataStamp;
+        final double decay = data.getDecay();
+        fitness *= data.weight(tail - stamp);
+        int evaluated = 0;
+        double weight = data.weight(tail - end);
+        for ( long s = end - 1; s >= beg; s-- ) { // evicted (newest first)
+            final int j = (int) (s - snapshot.base);
+            final double funcYj = fx.getFunctionValue( snapshot.x[j] );
+            fitness -= weight * metric.loss(snapshot.y[j], funcYj);
+            weight *= decay;
+            evaluated++;
+        }
+        weight = 1.0;
+        for ( long s = tail - 1; s >= stamp; s-- ) { // new (newest first)
+            final int j = (int) (s - snapshot.base);
+            final double funcYj = fx.getFunctionValue( snapshot.x[j] );
+            evaluated++;
+            if ( Double.isNaN(funcYj) ) {
+                fitness = Double.NaN;
+                break;
+            }
+            fitness += weight * metric.loss(snapshot.y[j], funcYj);
+            weight *= decay;
+        }
+        pointsEvaluated(fx, evaluated);
+        if ( fitness < 0 ) return false; // rounding errors
+        fx.setFitness( fitness );
+        fx.setFitnessStamp( tail );
+        return true;
+    }
+
+    /**
+     * Computes (and sets) an estimated fitness for the given function, 
+     * only the sample data points are considered. The estimate is scaled 
+     * to be comparable with the fitness computed on all data.
+     * @param fx
+     * @param sample Indexes of the data points to use.
+     * @return True if the (estimated) fitness is valid.
+     */
+    protected boolean computeFitness(final GenetixFunction fx, final int[] sample) {
+        final double[] state = resetMetricState();
+        final boolean valid = accumulate(fx, sample, 0, sample.length, state);
+        final double scale = (double) getDataSize() / sample.length;
+        fx.setFitnessEstimate( valid ? fitnessMetric.fitness(state, scale) : Double.NaN );
+        return isFitnessValid(fx);
+    }
+
+    /**
+     * Successive halving - all functions are scored on a small fraction of
+     * the data, the better half is kept and scored on twice as many points
+     * (the points scored so far are not re-evaluated, the fractions are 
+     * prefixes of a random permutation of the data). This repeats until 
+     * the survivors are scored on all the data. 
+     * Functions dropped along the way keep their (estimated) fitness.
+     * @param fxs
+     */
+    private void computeHalvingFitness(final GenetixFunction[] fxs) {
+        final FitnessMetric metric = this.fitnessMetric;
+        final int len = getDataSize();
+        final int[] points = getFitnessPermutation();
+        int rungs = 0;
+        for ( int n = fxs.length, m = len; 
+              n > 1 && (m >> 1) >= MIN_FITNESS_SAMPLE_SIZE; 
+              n = (n + 1) / 2, m >>= 1 ) rungs++;
+
+        final GenetixFunction[] alive = fxs.clone();
+        final double[][] states = new double[alive.length][metric.stateSize()];
+        int size = alive.length; int beg = 0;
+        for ( int rung = rungs; rung >= 0; rung-- ) {
+            final int end = len >> rung;
+            for (int i=0; i<size; i++) {
+                if ( states[i] != null && ! accumulate(alive[i], points, beg, end, states[i]) ) {
+                    states[i] = null; // invalid
+                }
+                final double fitness = states[i] == null ? 
+                        Double.NaN : metric.fitness(states[i], (double) len / end);
+                if ( rung == 0 && floatX == null ) {
+                    alive[i].setFitness( fitness );
+                    alive[i].setFitnessStamp( dataStamp );
+                }
+                else alive[i].setFitnessEstimate( fitness );
+            }
+            if ( rung > 0 ) {
+                sortByFitness(alive, states, size);
+                size = (size + 1) / 2;
+            }
+            beg = end;
+        }
+    }
+
+    /**
+     * Sorts (insertion sort) the functions along with their associated values.
+     */
+    private static void sortByFitness(final GenetixFunction[] fxs, final Object[] values, final int size) {
+        for (int i=1; i<size; i++) {
+            final GenetixFunction fx = fxs[i];
+            final Object value = values[i];
+            int j = i - 1;
+            while ( j >= 0 && fxs[j].compareTo(fx) > 0 ) {
+                fxs[j + 1] = fxs[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            fxs[j + 1] = fx;
+            values[j + 1] = value;
+        }
+    }
+
+    /**
+     * @return True if fitness values are being estimated on data samples.
+     * @see #FITNESS_SAMPLED
+     * @see #FITNESS_HALVING
+     */
+    protected boolean isFitnessEstimating() {
+        return fitnessMode != FITNESS_EXHAUSTIVE 
+            && getDataSize() >= 2 * MIN_FITNESS_SAMPLE_SIZE;
+    }
+
+    /**
+     * Returns the data sample for the current generation.
+     * The sample is stratified - the data is split into equal parts 
+     * and a random point is picked from each part, all functions of 
+     * a generation are thus estimated using the same data points.
+     * @return Indexes of the sampled data points.
+     */
+    protected int[] getFitnessSample() {
+        if ( fitnessSample != null && fitnessSampleGeneration == generationCounter ) {
+            return fitnessSample;
+        }
+        final int len = getDataSize();
+        if ( fitnessSampleSize < MIN_FITNESS_SAMPLE_SIZE ) {
+            fitnessSampleSize = Math.max(MIN_FITNESS_SAMPLE_SIZE, len / 10);
+        }
+        final int size = Math.min(fitnessSampleSize, len / 2);
+        final int[] sample = new int[size];
+        for (int i=0; i<size; i++) {
+            final int beg = (int) ( (long) i * len / size );
+            final int end = (int) ( (long) (i + 1) * len / size );
+            sample[i] = beg + RandomHelper.randomInt(end - beg);
+        }
+        fitnessSampleGeneration = generationCounter;
+        return fitnessSample = sample;
+    }
+
+    /**
+     * Returns a random permutation of the data point indexes, the 
+     * permutation is re-shuffled every generation.
+     * @return Indexes of all the data points.
+     */
+    protected int[] getFitnessPermutation() {
+        final int len = getDataSize();
+        int[] permutation = fitnessSample;
+        if ( permutation != null && fitnessSampleGeneration == generationCounter
+                && permutation.length == len ) {
+            return permutation;
+        }
+        if ( permutation == null || permutation.length != len ) {
+            permutation = new int[len];
+        }
+        // shuffled from the identity (not depending on previous generations)
+        for (int i=0; i<len; i++) permutation[i] = i;
+        final Random random = RandomHelper.newRandom();
+        for (int i=len - 1; i>0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int p = permutation[i];
+            permutation[i] = permutation[j]; permutation[j] = p;
+        }
+        fitnessSampleGeneration = generationCounter;
+        return fitnessSample = permutation;
+    }
+
+    /**
+     * Re-computes the fitness on all data for functions with estimated 
+     * fitness values that would be selected (are among the best ones).
+     * The generation gets re-sorted until the selected best functions all
+     * have their fitness computed on all the data.
+     * The sample size is adapted based on how far the estimates were off.
+     * Fitness values computed in single precision are re-computed in double.
+     * @param generation The (sorted) generation.
+     * @param limit The number of functions to be selected.
+     */
+    private void confirmFitness(final GenetixFunction[] generation, final int limit) {
+        double relativeError = 0; int confirmed = 0;
+        boolean sorted = false;
+        while ( ! sorted ) {
+            sorted = true;
+            for (int i=0; i<limit; i++) {
+                final GenetixFunction fx = generation[i];
+                if ( ! fx.isFitnessEstimated() ) continue;
+                final double estimate = fx.getFitness();
+                if ( computeFullFitness(fx, true) ) {
+                    final double fitness = fx.getFitness();
+                    relativeError += Math.abs(estimate - fitness) / (fitness + Double.MIN_VALUE);
+                    confirmed++;
+                }
+                sorted = false;
+            }
+            if ( ! sorted ) Arrays.sort(generation);
+        }
+        if ( confirmed > 0 && fitnessMode == FITNESS_SAMPLED ) {
+            adaptFitnessSampleSize(relativeError / confirmed);
+        }
+    }
+
+    /**
+     * Re-computes (in double precision) the fitness of the elite and of the
+     * functions near the selection cut-off (all others are ranked on their
+     * single precision fitness). The generation gets re-sorted.
+     * Re-computed functions that were adjacent in the single precision 
+     * ranking (consecutive in the generation) are compared to detect 
+     * ranking disagreements.
+     * @param generation The (sorted) generation.
+     * @param limit The number of functions to be selected.
+     * @see #PRECISION_MIXED
+     */
+    private void confirmPrecision(final GenetixFunction[] generation, final int limit) {
+        final int elite = Math.max(1, limit / 10);
+        final boolean cut = limit < generation.length;
+        final double cutoff = generation[limit - 1].getFitness();
+        final double margin = Math.abs(cutoff) * PRECISION_MARGIN;
+        final double[] screened = new double[generation.length];
+        final double[] confirmed = new double[generation.length];
+        final int[] index = new int[generation.length];
+        int count = 0;
+        for (int i=0; i<generation.length; i++) {
+            final GenetixFunction fx = generation[i];
+            final double fitness = fx.getFitness();
+            if ( i >= elite ) {
+                if ( ! cut || ! ( fitness <= cutoff + margin ) ) break;
+                if ( fitness < cutoff - margin ) continue;
+            }
+            if ( ! fx.isFitnessEstimated() ) continue;
+            computeFullFitness(fx, true);
+            screened[count] = fitness;
+            index[count] = i;
+            confirmed[count++] = fx.getFitness();
+        }
+        for (int i=1; i<count; i++) {
+            if ( index[i] != index[i - 1] + 1 ) continue; // not adjacent
+            final int s = compare(screened[i - 1], screened[i]);
+            if ( s != compare(confirmed[i - 1], confirmed[i]) ) {
+                precisionRankDisagreements++;
+            }
+            precisionRankComparisons++;
+        }
+        if ( count > 0 ) Arrays.sort(generation);
+    }
+
+    private static int compare(final double fitness1, final double fitness2) {
+        return fitness1 < fitness2 ? -1 : ( fitness1 > fitness2 ? 1 : 0 );
+    }
+
+    /**
+     * Grows the sample if estimates are off by more than 5% (on average),
+     * shrinks it when the estimates are accurate. The new size is used
+     * starting with the next generation.
+     * @param relativeError
+     */
+    private void adaptFitnessSampleSize(final double relativeError) {
+        int size = fitnessSampleSize;
+        if ( relativeError > 0.05 ) size *= 2;
+        else if ( relativeError < 0.0125 ) size -= size / 4;
+        if ( size > getDataSize() / 2 ) size = getDataSize() / 2;
+        if ( size < MIN_FITNESS_SAMPLE_SIZE ) size = MIN_FITNESS_SAMPLE_SIZE;
+        fitnessSampleSize = size;
+    }
+
+    /**
+     * @return How many times a function has been evaluated at a data point 
+     * while computing fitness values (including re-scoring of estimates).
+     */
+    public long getFitnessPointEvaluations() {
+        return pointEvaluations;
+    }
+
+    /**
+     * @return How many function evaluations (at a data point) have been saved
+     * compared to scoring all fitness requests on all the data points.
+     * NOTE: Re-scoring (e.g. confirming estimates) is not a fitness request
+     * thus it might cost more than it saves, the result is never negative.
+     * @see #getFitnessPointEvaluations()
+     */
+    public long getFitnessPointEvaluationsSaved() {
+        return Math.max(pointEvaluationsExhaustive - pointEvaluations, 0);
+    }
+
+    /**
+     * @return The current generation.
+     */
+    public GenetixFunction[] getCurrentGeneration() {
+        return this.currentGeneration;
+    }
+
+    protected GenetixFunction.Tuple getCurrentGenerationAsTuple() {
+        return new GenetixFunction.Tuple(this.currentGeneration);
+    }
+
+    protected void setCurrentGeneration(GenetixFunction[] gen) {
+        this.currentGeneration = gen;
+    }
+
+    protected void setCurrentGeneration(GenetixFunction.Tuple tuple) {
+        this.currentGeneration = tuple.snapshot();
+    }
+
+    /**
+     * Sets the training data. The training data represent 
+     * the aproximated function. 
+     *
+     * @param dataX The x (real) values of the training data.
+     * @param dataY The y values (f(x) values) of the training data.
+     */     
+    public void setApproximatingData(double[] dataX, double[] dataY) {
+        if (dataX == null) dataX = new double[0];
+        if (dataY == null) dataY = new double[0];
+        final int len = dataX.length;
+        if (len != dataY.length) {
+            throw new IllegalArgumentException(
+                    "dataX.length (" + dataX.length + ") != " +
+                    "dataY.length (" + dataY.length + ")");
+        }
+        double[] _dataX = new double[len];
+        double[] _dataY = new double[len];
+        for (int i=0; i<len; i++) {
+            _dataX[i] = dataX[i];
+            _dataY[i] = dataY[i];
+        }
+        setApproximatingData0(_dataX, _dataY, null);
+    }
+
+    /**
+     * @see #setApproximatingData(double[], double[])
+     */
+    public void setApproximatingData(float[] dataX, float[] dataY) {
         if (dataX == null) dataX = new float[0];
         if (dataY == null) dataY = new float[0];
         final int len = dataX.length;
@@ -514,23 +1682,182 @@ public abstract class Genetix implements Runnable {
             _dataX[i] = dataX[i];
             _dataY[i] = dataY[i];
         }
+        setApproximatingData0(_dataX, _dataY, null);
+    }
+
+    /**
+     * Sets weighted training data, the error at a data point is multiplied
+     * by the point's weight (e.g. data reduced into fewer weighted points).
+     *
+     * @param dataX The x (real) values of the training data.
+     * @param dataY The y values (f(x) values) of the training data.
+     * @param dataW The (non-negative) weights of the data points.
+     * @see #setApproximatingData(double[], double[])
+     * @see org.kares.math.frec.util.DataReducer
+     */
+    public void setApproximatingData(double[] dataX, double[] dataY, double[] dataW) {
+        if ( dataW == null ) {
+            setApproximatingData(dataX, dataY);
+            return;
+        }
+        if ( dataX == null || dataY == null ||
+             dataX.length != dataY.length || dataX.length != dataW.length ) {
+            throw new IllegalArgumentException("data lengths differ");
+        }
+        final int len = dataX.length;
+        for (int i=0; i<len; i++) {
+            if ( ! ( dataW[i] >= 0 ) ) {
+                throw new IllegalArgumentException("invalid weight: " + dataW[i]);
+            }
+        }
+        setApproximatingData0(dataX.clone(), dataY.clone(), dataW.clone());
+    }
+
+    private void setApproximatingData0(double[] dataX, double[] dataY, double[] dataW) {
+        this.dataX = dataX;
+        this.dataY = dataY;
+        this.dataW = dataW;
+        this.trainingData = null;
+        this.streamingData = null;
+        this.streamingSnapshot = null;
+        this.dataStamp = -1;
+        updateFloatData();
+    }
+
+    /**
+     * Updates the single precision copies of the data.
+     */
+    private void updateFloatData() {
+        if ( precisionMode == PRECISION_DOUBLE || dataX == null || streamingData != null ) {
+            this.floatX = this.floatY = this.floatW = null;
+            return;
+        }
+        final int len = dataX.length;
+        final float[] _floatX = new float[len];
+        final float[] _floatY = new float[len];
+        final float[] _floatW = dataW == null ? null : new float[len];
+        for (int i=0; i<len; i++) {
+            _floatX[i] = (float) dataX[i];
+            _floatY[i] = (float) dataY[i];
+            if ( _floatW != null ) _floatW[i] = (float) dataW[i];
+        }
+        this.floatX = _floatX;
+        this.floatY = _floatY;
+        this.floatW = _floatW;
+    }
+
+    /**
+     * Sets the training data, the data is not copied into memory (as the
+     * other variants do) it's read in blocks while computing the fitness.
+     * Useful for large data sets e.g. memory-mapped files.
+     *
+     * @param data
+     */
+    public void setApproximatingData(final TrainingData data) {
+        setApproximatingData0(null, null, null);
+        this.trainingData = data;
+    }
+
+    /**
+     * @return The number of training data points.
+     */
+    protected int getDataSize() {
+        return trainingData != null ? trainingData.size() : dataX.length;
+    }
+
+    /**
+     * Sets streaming training data. The approximated data (window) is 
+     * updated every generation (with the points appended so far) and the 
+     * computation continues with the current generation, the fitness
+     * values are updated incrementally.
+     *
+     * @param data
+     * @see StreamingData
+     */
+    public void setApproximatingData(final StreamingData data) {
+        setApproximatingData0(new double[0], new double[0], null);
+        this.streamingData = data;
+        updateFloatData();
+        syncStreamingData();
+    }
+
+    /**
+     * Synchronizes the approximated data with the streaming data (takes
+     * all points appended so far into account) and updates the fitness 
+     * of the current generation.
+     */
+    protected void syncStreamingData() {
+        final StreamingData data = this.streamingData;
+        final StreamingData.Snapshot snapshot = data.snapshot(streamingSnapshot);
+        this.streamingSnapshot = snapshot;
+        final long tail = snapshot.sequence;
+        if ( tail == dataStamp ) return;
+
+        final long beg = data.windowStart(tail);
+        final int len = (int) (tail - beg);
+        final int off = (int) (beg - snapshot.base);
+        double[] _dataX = dataX, _dataY = dataY, _dataW = dataW;
+        if ( _dataX.length != len ) {
+            _dataX = new double[len];
+            _dataY = new double[len];
+            _dataW = data.getDecay() == 1.0 ? null : new double[len];
+        }
+        System.arraycopy(snapshot.x, off, _dataX, 0, len);
+        System.arraycopy(snapshot.y, off, _dataY, 0, len);
+        if ( _dataW != null ) { // the newest point has weight 1
+            final double decay = data.getDecay();
+            double weight = 1.0;
+            for (int i=len - 1; i>=0; i--) {
+                _dataW[i] = weight;
+                weight *= decay;
+            }
+        }
         this.dataX = _dataX;
         this.dataY = _dataY;
+        this.dataW = _dataW;
+        this.dataStamp = tail;
+        // the fitness is not comparable with the previous data :
+        this.improvedFitness = -1; this.stallCounter = 0;
+
+        // re-scored (not counted as fitness requests or offspring) :
+        final GenetixFunction[] currentGeneration = getCurrentGeneration();
+        if ( currentGeneration != null ) {
+            metrics.phaseStarted(GenetixMetrics.FITNESS);
+            pointEvaluationsExhaustive += (long) currentGeneration.length * len;
+            for (int i=0; i<currentGeneration.length; i++) {
+                computeFullFitness(currentGeneration[i], false);
+            }
+            metrics.phaseCompleted(GenetixMetrics.FITNESS);
+        }
     }
 
     /**
+     * NOTE: If {@link TrainingData} has been set it will be read into 
+     * memory (a new array) !
      * @return The x values of the training data.
      */     
     public double[] getApproximatingDataX() {
+        if ( trainingData != null ) return readTrainingData()[0];
         return dataX;
     }    
 
     /**
+     * NOTE: If {@link TrainingData} has been set it will be read into 
+     * memory (a new array) !
      * @return The f(x) values of the training data.
      */     
     public double[] getApproximatingDataY() {
+        if ( trainingData != null ) return readTrainingData()[1];
         return dataY;
     }       
+
+    private double[][] readTrainingData() {
+        final int size = trainingData.size();
+        final double[] x = new double[size], y = new double[size];
+        final double[] w = trainingData.isWeighted() ? new double[size] : null;
+        trainingData.read(0, x, y, w, 0, size);
+        return new double[][] { x, y, w };
+    }
     
     /**
      * Returns the current value of the generation counter.
@@ -576,6 +1903,177 @@ public abstract class Genetix implements Runnable {
         this.generationLimit = max;
     }    
     
+    /**
+     * @return The fitness target (negative if not set).
+     * @see #setFitnessTarget(double)
+     */
+    public double getFitnessTarget() {
+        return fitnessTarget;
+    }
+
+    /**
+     * Sets the fitness target - the computation stops (before reaching
+     * the generation limit) as soon as the best fitness is less or equal
+     * to the target. The target is not part of the checkpoint (it should
+     * be set again on resume).
+     * @param target The target fitness, a negative value means no target.
+     */
+    public void setFitnessTarget(double target) {
+        this.fitnessTarget = target;
+    }
+
+    /**
+     * @return True if the best fitness met the fitness target.
+     * @see #setFitnessTarget(double)
+     */
+    public boolean isFitnessTargetReached() {
+        return fitnessTarget >= 0 && bestFitness >= 0 && bestFitness <= fitnessTarget;
+    }
+
+    /**
+     * @return The stall limit (0 if not set).
+     * @see #setStallLimit(int)
+     */
+    public int getStallLimit() {
+        return stallLimit;
+    }
+
+    /**
+     * Sets the stall limit - the computation stops if the best fitness
+     * did not improve for the given number of generations.
+     * The stall count is not part of the checkpoint (it starts over on
+     * resume).
+     * @param generations The number of generations, 0 means no limit.
+     * @see #setMinImprovement(double)
+     */
+    public void setStallLimit(int generations) {
+        if ( generations < 0 ) throw new IllegalArgumentException("< 0");
+        this.stallLimit = generations;
+    }
+
+    /**
+     * @return The minimal (relative) improvement.
+     * @see #setMinImprovement(double)
+     */
+    public double getMinImprovement() {
+        return minImprovement;
+    }
+
+    /**
+     * Sets the minimal relative improvement of the best fitness that
+     * resets the stall count, e.g. 0.01 requires the best fitness to
+     * drop by 1%. Only used with a {@link #setStallLimit(int)}.
+     * @param improvement The relative improvement, 0 means any.
+     */
+    public void setMinImprovement(double improvement) {
+        if ( improvement < 0 ) throw new IllegalArgumentException("< 0");
+        this.minImprovement = improvement;
+    }
+
+    /**
+     * @return The (wall-clock) time limit in milliseconds (0 if not set).
+     * @see #setTimeLimit(long)
+     */
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * Sets the (wall-clock) time limit of a computation - no further 
+     * generations are computed once the time has been exceeded (the
+     * current generation is finished). The limit applies to every call
+     * to {@link #compute()} (e.g. a resumed computation).
+     * @param millis The time limit in milliseconds, 0 means no limit.
+     */
+    public void setTimeLimit(long millis) {
+        if ( millis < 0 ) throw new IllegalArgumentException("< 0");
+        this.timeLimit = millis;
+    }
+
+    /**
+     * @return Why the (last) computation stopped, one of the
+     * <code>STOP_</code> constants or -1 if not computed (yet).
+     */
+    public int getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * @return The (run) seed of the random stream.
+     * @throws IllegalStateException if not seeded (nor computed) yet
+     * @see #setSeed(long)
+     */
+    public long getSeed() {
+        if ( ! seeded ) throw new IllegalStateException("not seeded");
+        return seed;
+    }
+
+    /**
+     * Seeds the random stream of this computation, the same seed (and
+     * settings) produce the same computation. If not set a seed is drawn
+     * (from the current random stream) when the computation starts, the
+     * seed is part of the checkpoint.
+     * @param seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seeded = true;
+        this.randomStream = null;
+    }
+
+    /**
+     * @return The name of the random generator.
+     * @see #setRandomGenerator(String)
+     */
+    public String getRandomGenerator() {
+        return randomGenerator;
+    }
+
+    /**
+     * Sets the random generator used for the random stream of this 
+     * computation, {@link RandomHelper#DEFAULT_GENERATOR} by default.
+     * @param generator The name of the generator.
+     * @throws IllegalArgumentException if there's no such generator
+     * @see RandomHelper#getGenerators()
+     */
+    public void setRandomGenerator(String generator) {
+        if ( ! RandomHelper.getGenerators().containsKey(generator) ) {
+            throw new IllegalArgumentException("unknown generator: " + generator);
+        }
+        this.randomGenerator = generator;
+        this.randomStream = null;
+    }
+
+    /**
+     * The random stream of this computation, e.g. to {@link RandomStream#split()}
+     * independent streams for parallel (sub) computations.
+     * @return The stream (null if not computed yet).
+     */
+    public RandomStream getRandomStream() {
+        return randomStream;
+    }
+
+    /**
+     * @return The probability adaptation (null if the probabilities are fixed).
+     * @see #setAdaptation(AdaptiveProbabilities)
+     */
+    public AdaptiveProbabilities getAdaptation() {
+        return adaptation;
+    }
+
+    /**
+     * Sets the (self) adaptation of the probabilities - the mutation and 
+     * crossing probabilities (as well as the GP reproduction and selection
+     * probabilities) are tuned after every generation, the configured 
+     * values are the initial ones. An adaptation instance keeps state and
+     * should not be shared between computations, it's state is checkpointed
+     * (a resumed computation restores the adaptation of the checkpoint).
+     * @param adaptation null to keep the probabilities fixed (the default)
+     */
+    public void setAdaptation(AdaptiveProbabilities adaptation) {
+        this.adaptation = adaptation;
+    }
+
     /**
      * Returns the mutation probability.
      */         
@@ -620,10 +2118,194 @@ public abstract class Genetix implements Runnable {
         this.arbitraryCrossings = flag;
     }
 
+    /**
+     * @return The fitness mode.
+     * @see #setFitnessMode(int)
+     */
+    public int getFitnessMode() {
+        return this.fitnessMode;
+    }
+
+    /**
+     * Sets how the fitness of functions is computed.
+     * @param mode
+     * @see #FITNESS_EXHAUSTIVE
+     * @see #FITNESS_SAMPLED
+     * @see #FITNESS_HALVING
+     */
+    public void setFitnessMode(int mode) {
+        if ( mode < FITNESS_EXHAUSTIVE || mode > FITNESS_HALVING ) {
+            throw new IllegalArgumentException("invalid fitness mode: " + mode);
+        }
+        this.fitnessMode = mode;
+    }
+
+    /**
+     * @return The fitness metric.
+     * @see #setFitnessMetric(FitnessMetric)
+     */
+    public FitnessMetric getFitnessMetric() {
+        return this.fitnessMetric;
+    }
+
+    /**
+     * Sets the metric used to compute the fitness of functions, the default
+     * is the sum of absolute errors ({@link FitnessMetrics.SAE}).
+     * The fitness of the current generation (if any) is re-computed.
+     * @param metric
+     * @throws IllegalStateException if checkpointing and the metric can not
+     * be checkpointed
+     * @see FitnessMetrics
+     * @see #setCheckpointFile(File)
+     */
+    public void setFitnessMetric(FitnessMetric metric) {
+        if ( metric == null ) {
+            throw new IllegalArgumentException("null metric");
+        }
+        if ( checkpointLog != null ) checkCheckpointMetric(metric);
+        this.fitnessMetric = metric;
+        this.metricState = null;
+        if ( currentGeneration != null ) computeFitness(currentGeneration);
+    }
+
+    /**
+     * @return The current size of the data sample used to estimate the 
+     * fitness (0 if no sample has been used yet).
+     * @see #FITNESS_SAMPLED
+     */
+    public int getFitnessSampleSize() {
+        return this.fitnessSampleSize;
+    }
+
+    /**
+     * @return The precision mode.
+     * @see #setPrecisionMode(int)
+     */
+    public int getPrecisionMode() {
+        return this.precisionMode;
+    }
+
+    /**
+     * Sets the (floating point) precision of fitness evaluation.
+     * For the single precision modes the data is (also) kept as float 
+     * arrays that the fitness is computed on. Such fitness values are 
+     * considered estimates, the best functions get re-scored in double 
+     * precision when they're reported ({@link #getBestFunctions(int)}).
+     * <p>
+     * NOTE: The functions (trees) are evaluated in double precision, the 
+     * values are rounded to float. Evaluating the functions dominates the 
+     * fitness computation thus the single precision modes give no speedup
+     * (and need memory for the float copy of the data).
+     * <p>
+     * NOTE: Only data set as arrays is evaluated in single precision, 
+     * {@link TrainingData} and {@link StreamingData} are not.
+     * @param mode
+     * @see #PRECISION_DOUBLE
+     * @see #PRECISION_FLOAT
+     * @see #PRECISION_MIXED
+     */
+    public void setPrecisionMode(int mode) {
+        if ( mode < PRECISION_DOUBLE || mode > PRECISION_MIXED ) {
+            throw new IllegalArgumentException("invalid precision mode: " + mode);
+        }
+        this.precisionMode = mode;
+        updateFloatData();
+    }
+
+    /**
+     * @return True if the fitness is evaluated in single precision (only).
+     * @see #setFloatPrecision(boolean)
+     */
+    public boolean isFloatPrecision() {
+        return this.precisionMode == PRECISION_FLOAT;
+    }
+
+    /**
+     * A shorthand for setting the {@link #PRECISION_FLOAT} (or the
+     * {@link #PRECISION_DOUBLE}) precision mode.
+     * @param flag
+     * @see #setPrecisionMode(int)
+     */
+    public void setFloatPrecision(boolean flag) {
+        setPrecisionMode( flag ? PRECISION_FLOAT : PRECISION_DOUBLE );
+    }
+
+    /**
+     * @return How many (adjacent) pairs of functions have been compared in
+     * both single and double precision.
+     * @see #PRECISION_MIXED
+     */
+    public long getPrecisionRankComparisons() {
+        return precisionRankComparisons;
+    }
+
+    /**
+     * @return How many times the single and double precision fitness values
+     * disagreed on the order of two (adjacent) functions.
+     * @see #getPrecisionRankComparisons()
+     */
+    public long getPrecisionRankDisagreements() {
+        return precisionRankDisagreements;
+    }
+
     public void setSavingMode(boolean mode) {
         isSaving = mode;
         //if (isSaving && genFile==null) genFile = new GenFile();
     } 
+
+    /**
+     * Sets a file the functions of every generation get written to.
+     * @param genFile
+     * @see #setSavingMode(boolean)
+     */
+    public void setGenFile(GenFile genFile) {
+        this.genFile = genFile;
+    }
+
+    /**
+     * Sets the checkpoint log file (enables saving), the computation state
+     * is appended every {@link #getCheckpointInterval()} generations as well
+     * as when the computation ends (or is stopped).
+     * An existing log is appended to.
+     * <p>
+     * NOTE: The fitness metric is checkpointed by it's name, thus only the
+     * metrics known to {@link FitnessMetrics#forName(String)} are supported.
+     * @param file The log file or null to stop checkpointing.
+     * @throws IllegalStateException if the fitness metric can not be checkpointed
+     * @see #resume(File)
+     * @see GenerationLog
+     */
+    public void setCheckpointFile(File file) {
+        if ( file != null ) checkCheckpointMetric(fitnessMetric);
+        if ( checkpointLog != null ) checkpointLog.close();
+        checkpointLog = file == null ? null : new GenerationLog(file);
+        if ( file != null ) isSaving = true;
+    }
+
+    private static void checkCheckpointMetric(final FitnessMetric metric) {
+        final FitnessMetric resolved = FitnessMetrics.forName( metric.getName() );
+        if ( resolved == null || resolved.getClass() != metric.getClass() ) {
+            throw new IllegalStateException("fitness metric " + metric.getName() + 
+                    " can not be checkpointed (not a known metric)");
+        }
+    }
+
+    /**
+     * @return How often (every n-th generation) checkpoints are saved.
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * @param interval How often (every n-th generation) checkpoints are saved.
+     */
+    public void setCheckpointInterval(int interval) {
+        if ( interval < 1 ) {
+            throw new IllegalArgumentException("interval < 1 : " + interval);
+        }
+        this.checkpointInterval = interval;
+    }
     
     private ComputedCallback computedCallback;
 
@@ -656,6 +2338,9 @@ public abstract class Genetix implements Runnable {
         //selectBest(size);
         if (currentGeneration.length < size) size = currentGeneration.length;
         Arrays.sort(currentGeneration);
+        if ( isFitnessEstimating() || floatX != null ) {
+            confirmFitness(currentGeneration, size);
+        }
         final GenetixFunction[] bestFunctions = new GenetixFunction[size];
         for (int i=0; i<size; i++) {
             bestFunctions[i] = currentGeneration[i];
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The (tree generating) configuration of a computation - the function
+ * length limits, the allowed functions (and thus code element limits),
+ * random constants and the valid fitness limit.
+ * <p>
+ * Every {@link Genetix} has it's own configuration (a copy of the default
+ * one when created) which is passed along when functions are generated,
+ * mutated or crossed thus independent computations might run concurrently.
+ * The static settings of {@link GenetixFunction}, {@link FunctionTree},
+ * {@link LimitedTree} and {@link ReadsTree} change the default
+ * configuration (see {@link #getDefault()}).
+ * <p>
+ * NOTE: A configuration is not thread-safe, it should not be changed
+ * while it's computation is running.
+ *
+ * @author kares
+ */
+public class GenetixConfig implements Cloneable {
+
+    /**
+     * The default allowed functions.
+     * Due to the JCM parser limits only those elementary functions are used
+     * that the parser understands (to be able to show the results).
+     */
+    static final Function[] DEFAULT_FUNCTIONS = new Function[] {
+        Functions.Add.INSTANCE,
+        Functions.Sub.INSTANCE,
+        Functions.Mul.INSTANCE,
+        Functions.Div.INSTANCE,
+        // NOTE: % seems not supported by JCM !
+        //Functions.Mod.INSTANCE,
+        Functions.Pow.INSTANCE,
+        Functions.Sin.INSTANCE,
+        Functions.Cos.INSTANCE,
+        Functions.Tan.INSTANCE,
+        //Functions.Cot.INSTANCE,
+        Functions.Sec.INSTANCE,
+        //Functions.Csc.INSTANCE,
+        Functions.ArcSin.INSTANCE,
+        Functions.ArcCos.INSTANCE,
+        Functions.ArcTan.INSTANCE,
+        Functions.Abs.INSTANCE,
+        Functions.Sqrt.INSTANCE,
+        Functions.Exp.INSTANCE,
+        Functions.Ln.INSTANCE,
+        Functions.Log2.INSTANCE,
+        Functions.Log10.INSTANCE,
+        Functions.Trunc.INSTANCE,
+        Functions.Round.INSTANCE,
+        Functions.Floor.INSTANCE,
+        // NOTE: ceil not supported by JCM !
+        //Functions.Ceil.INSTANCE,
+        Functions.Cbrt.INSTANCE,
+        // NOTE: somehow not working in JCM !
+        //Functions.Fact.INSTANCE,
+        Functions.Neg.INSTANCE,
+        // NOTE: <, > not supported by JCM !
+        //Functions.Min.INSTANCE,
+        //Functions.Max.INSTANCE,
+    };
+
+    /**
+     * Random codes are generated by the (default) Read's code generator.
+     * @see LimitedTree#generateRandomCode(GenetixConfig, int)
+     */
+    public static final int SAMPLING_READS = 0;
+    /**
+     * Random codes are sampled uniformly - all the codes of a length are 
+     * equally likely.
+     * @see ReadsCodeSampler
+     */
+    public static final int SAMPLING_UNIFORM = 1;
+    /**
+     * Same as {@link #SAMPLING_UNIFORM} but the lengths of generated 
+     * functions are ramped - spread evenly over the function length limits.
+     */
+    public static final int SAMPLING_RAMPED = 2;
+
+    private static final GenetixConfig defaultConfig = new GenetixConfig();
+
+    /**
+     * @return The default configuration (new computations start with a
+     * copy of it).
+     */
+    public static GenetixConfig getDefault() {
+        return defaultConfig;
+    }
+
+    private int functionMinLength = 2;
+    private int functionMaxLength = 12;
+    private int maxRandomCodeLength = 10;
+
+    private double validFitnessLimit = 1000000;
+
+    /** allowed functions indexed by arities (0-9) */
+    private Function[][] functionsByArities;
+    private int codeElementMin = 0; // downer limit [1..codeElementMax]
+    private int codeElementMax = 9; // upper limit [codeElementMin..9]
+
+    private int codeSampling = SAMPLING_READS;
+
+    private boolean constantsAllowed = false;
+    private double constantMin = 0;
+    private double constantMax = 1;
+    
+    /** the code sampler (of the code element mask) last looked up */
+    private ReadsCodeSampler codeSampler;
+
+    /**
+     * Creates a configuration with the (initial) default settings.
+     */
+    public GenetixConfig() {
+        setAllowedFunctions(DEFAULT_FUNCTIONS);
+    }
+
+    /**
+     * @return A copy of this configuration.
+     */
+    public GenetixConfig copy() {
+        return (GenetixConfig) clone();
+    }
+
+    /**
+     * Set the function length limits. These limits should be kept
+     * while generating random functions as well as during mutation
+     * and crossings.
+     * @param min
+     * @param max
+     */
+    public void setFunctionLengthLimits(int min, int max) {
+        if ( min > max ) {
+            throw new IllegalArgumentException("min(" + min + ") > max(" + max + ")");
+        }
+        setFunctionMinLength(min);
+        setFunctionMaxLength(max);
+    }
+
+    /**
+     * @see #setFunctionLengthLimits(int, int)
+     */
+    public int getFunctionMinLength() {
+        return functionMinLength;
+    }
+
+    /**
+     * @see #setFunctionLengthLimits(int, int)
+     */
+    public void setFunctionMinLength(int min) {
+        if ( min >= 0 ) functionMinLength = min;
+    }
+
+    /**
+     * @see #setFunctionLengthLimits(int, int)
+     */
+    public int getFunctionMaxLength() {
+        return functionMaxLength;
+    }
+
+    /**
+     * @see #setFunctionLengthLimits(int, int)
+     */
+    public void setFunctionMaxLength(int max) {
+        if ( max > 0 ) functionMaxLength = max;
+    }
+
+    /**
+     * @return The maximal length of random trees (of no given length).
+     */
+    public int getMaxRandomCodeLength() {
+        return maxRandomCodeLength;
+    }
+
+    public void setMaxRandomCodeLength(int length) {
+        if (length < 2) {
+            throw new IllegalArgumentException("length should be >= 2 got: " + length);
+        }
+        maxRandomCodeLength = length;
+    }
+
+    /**
+     * @see #setValidFitnessLimit(double)
+     * @return The current fitness limit.
+     */
+    public double getValidFitnessLimit() {
+        return validFitnessLimit;
+    }
+
+    /**
+     * Set the valid fitness threshold fitness values greater
+     * than this value are considered invalid and will be discarded.
+     * @param limit
+     */
+    public void setValidFitnessLimit(final double limit) {
+        if ( limit <= 0 ) {
+            throw new IllegalArgumentException(limit + " <= 0");
+        }
+        if ( Double.isInfinite(limit) ) {
+            throw new IllegalArgumentException("limit is infinite");
+        }
+        if ( Double.isNaN(limit) ) {
+            throw new IllegalArgumentException("limit is NaN");
+        }
+        this.validFitnessLimit = limit;
+    }
+
+    /**
+     * Sets the allowed set of functions to be used in random generated
+     * trees, the code element limits are set accordingly.
+     * @param functions the allowed set of functions
+     */
+    public void setAllowedFunctions(final Function[] functions) {
+        final List[] lists = new List[10];
+        if ( functions == null || functions.length == 0 ) {
+            functionsByArities = new Function[10][];
+            return;
+        }
+        int maxArity = functions[0].arity(); int minArity = maxArity;
+        for (int i=0; i<functions.length; i++) {
+            final int arity = functions[i].arity();
+            if ( arity < 0 || arity > 9 ) {
+                throw new IllegalArgumentException("unsupported arity: " + functions[i]);
+            }
+            if (arity > maxArity) maxArity = arity;
+            if (arity < minArity) minArity = arity;
+            if ( lists[arity] == null ) lists[arity] = new ArrayList();
+            lists[arity].add(functions[i]);
+        }
+        final Function[][] byArities = new Function[10][];
+        for (int i=0; i<lists.length; i++) {
+            if ( lists[i] == null ) continue;
+            byArities[i] = (Function[]) lists[i].toArray(new Function[lists[i].size()]);
+        }
+        functionsByArities = byArities;
+        if ( minArity == 1 ) minArity = 0;
+        setCodeElementLimits(minArity, maxArity);
+    }
+
+    /**
+     * @return The allowed functions (ordered by arities).
+     * @see #setAllowedFunctions(Function[])
+     */
+    public Function[] getAllowedFunctions() {
+        final List functions = new ArrayList();
+        for (int i=0; i<functionsByArities.length; i++) {
+            final Function[] fxs = functionsByArities[i];
+            for (int j=0; fxs != null && j<fxs.length; j++) functions.add(fxs[j]);
+        }
+        return (Function[]) functions.toArray(new Function[functions.size()]);
+    }
+
+    /**
+     * @param arity
+     * @return The allowed functions of the given arity.
+     * @throws IllegalArgumentException if there are no such functions
+     */
+    Function[] allowedFunctions(final int arity) {
+        final Function[] functions = functionsByArities[arity];
+        if ( functions == null ) {
+            throw new IllegalArgumentException("no functions of arity " + arity);
+        }
+        return functions;
+    }
+
+    /**
+     * Looks up an allowed function by it's id.
+     * @param id
+     * @return The function or null if not found.
+     */
+    Function allowedFunction(final String id) {
+        for (int i=0; i<functionsByArities.length; i++) {
+            final Function[] fxs = functionsByArities[i];
+            for (int j=0; fxs != null && j<fxs.length; j++) {
+                if ( id.equals( fxs[j].toString() ) ) return fxs[j];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A shorthand to set the limits at once.
+     *
+     * Code elements are generally numbers from [0,9].
+     * After setting the limits newly generated trees will have code
+     * elements within [min_arity, max_arity].
+     *
+     * @param min_arity Downer limit for the code elements of generated trees.
+     * @param max_arity Upper limit for the code elements of generated trees.
+     * @throws IllegalArgumentException
+     */
+    public void setCodeElementLimits(int min_arity, int max_arity) {
+        if (max_arity < min_arity)
+            throw new IllegalArgumentException("max_arity < min_arity");
+        setCodeElementMin(min_arity);
+        setCodeElementMax(max_arity);
+    }
+
+    /**
+     * Sets the minimum allowed degree of elements in generated codes.
+     * @param min_arity
+     */
+    public void setCodeElementMin(int min_arity) {
+        if (min_arity < 0)
+            throw new IllegalArgumentException("min_arity < 0");
+        codeElementMin = min_arity;
+    }
+
+    /**
+     * @return The code element minimum.
+     * @see #setCodeElementMin(int)
+     */
+    public int getCodeElementMin() {
+        return codeElementMin;
+    }
+
+    /**
+     * Sets the maximum allowed degree of elements in generated codes.
+     * @param max_arity
+     */
+    public void setCodeElementMax(int max_arity) {
+        if (max_arity > 9)
+            throw new IllegalArgumentException("max_arity > 9");
+        codeElementMax = max_arity;
+    }
+
+    /**
+     * @return The code element maximum.
+     * @see #setCodeElementMax(int)
+     */
+    public int getCodeElementMax() {
+        return codeElementMax;
+    }
+
+    /**
+     * @return The code elements (allowed arities) as a bit mask - 0 and 
+     * the arities within the code element limits that have functions.
+     */
+    int codeElementMask() {
+        int mask = 1;
+        for (int d=Math.max(codeElementMin, 1); d<=codeElementMax; d++) {
+            if ( functionsByArities[d] != null ) mask |= 1 << d;
+        }
+        return mask;
+    }
+
+    /**
+     * @return The (shared) sampler of the code elements, looked up again
+     * only if the code elements changed.
+     * @see ReadsCodeSampler#forConfig(GenetixConfig)
+     */
+    ReadsCodeSampler codeSampler() {
+        final int mask = codeElementMask();
+        ReadsCodeSampler sampler = codeSampler;
+        if ( sampler == null || sampler.mask != mask ) {
+            codeSampler = sampler = ReadsCodeSampler.forMask(mask);
+        }
+        return sampler;
+    }
+
+    /**
+     * @return How random codes are generated (a <code>SAMPLING_</code> constant).
+     */
+    public int getCodeSampling() {
+        return codeSampling;
+    }
+
+    /**
+     * Sets how random codes (and function lengths) are generated.
+     * @param sampling
+     * @see #SAMPLING_READS
+     * @see #SAMPLING_UNIFORM
+     * @see #SAMPLING_RAMPED
+     */
+    public void setCodeSampling(final int sampling) {
+        if ( sampling < SAMPLING_READS || sampling > SAMPLING_RAMPED ) {
+            throw new IllegalArgumentException("invalid sampling: " + sampling);
+        }
+        this.codeSampling = sampling;
+    }
+
+    /**
+     * @return True if random constants are generated (in tree leafs).
+     */
+    public boolean isConstantsAllowed() {
+        return constantsAllowed;
+    }
+
+    public void setConstantsAllowed(boolean allowed) {
+        this.constantsAllowed = allowed;
+    }
+
+    /**
+     * The constant minimum (when generating random constants).
+     * @return constant min value
+     */
+    public double getConstantMin() {
+        return constantMin;
+    }
+
+    public void setConstantMin(double min) {
+        this.constantMin = min;
+    }
+
+    /**
+     * The constant maximum (when generating random constants).
+     * @return constant max value
+     */
+    public double getConstantMax() {
+        return constantMax;
+    }
+
+    public void setConstantMax(double max) {
+        this.constantMax = max;
+    }
+
+    /**
+     * @see java.lang.Object#clone()
+     */
+    public Object clone() {
+        try {
+            return super.clone(); // functionsByArities is never modified
+        }
+        catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
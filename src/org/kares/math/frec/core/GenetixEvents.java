@@ -0,0 +1,133 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events of the {@link Genetix} computation phases,
+ * e.g. to correlate the phases with GC and allocations (in JMC).
+ * The events are emitted by {@link GenetixMetrics} - when a phase is
+ * started an event is created only if it's enabled (in a running
+ * recording) thus there's (almost) no overhead otherwise.
+ *
+ * @author kares
+ */
+final class GenetixEvents {
+
+    private GenetixEvents() { /* static only */ }
+
+    /**
+     * The (common) phase event data, the duration of the phase is the
+     * duration of the event.
+     */
+    @Category({ "F-ReC", "Genetix" })
+    @StackTrace(false)
+    static abstract class PhaseEvent extends Event {
+
+        @Label("Model")
+        String model;
+
+        @Label("Generation")
+        int generation;
+
+        @Label("Population Size")
+        @Description("The size of the current generation (when the phase finished)")
+        int populationSize;
+
+        @Label("Fitness Evaluations")
+        @Description("Functions (fitness) evaluated during the phase")
+        long fitnessEvaluations;
+
+        @Label("Point Evaluations")
+        @Description("Function evaluations at data points during the phase")
+        long pointEvaluations;
+
+    }
+
+    @Name("org.kares.math.frec.ComputeInit")
+    @Label("Compute Init")
+    static final class ComputeInit extends PhaseEvent { }
+
+    @Name("org.kares.math.frec.ComputeNext")
+    @Label("Compute Next")
+    static final class ComputeNext extends PhaseEvent { }
+
+    @Name("org.kares.math.frec.CrossGeneration")
+    @Label("Cross Generation")
+    static final class CrossGeneration extends PhaseEvent { }
+
+    @Name("org.kares.math.frec.MutateGeneration")
+    @Label("Mutate Generation")
+    static final class MutateGeneration extends PhaseEvent { }
+
+    @Name("org.kares.math.frec.ComputeFitness")
+    @Label("Compute Fitness")
+    @Description("Fitness computations (single functions are computed often thus only the longer ones are recorded by default)")
+    @Threshold("1 ms")
+    static final class ComputeFitness extends PhaseEvent { }
+
+    @Name("org.kares.math.frec.SelectBest")
+    @Label("Select Best")
+    static final class SelectBest extends PhaseEvent { }
+
+    @Name("org.kares.math.frec.CheckPopulationErrors")
+    @Label("Check Population Errors")
+    static final class CheckPopulationErrors extends PhaseEvent { }
+
+    /** event types indexed by phases */
+    private static final EventType[] types = new EventType[] {
+        EventType.getEventType(ComputeInit.class),
+        EventType.getEventType(ComputeNext.class),
+        EventType.getEventType(CrossGeneration.class),
+        EventType.getEventType(MutateGeneration.class),
+        EventType.getEventType(ComputeFitness.class),
+        EventType.getEventType(SelectBest.class),
+        EventType.getEventType(CheckPopulationErrors.class),
+    };
+
+    /**
+     * @param phase
+     * @return A new (begun) event or null if the event is not enabled.
+     * @see GenetixMetrics#INIT
+     */
+    static PhaseEvent begin(final int phase) {
+        if ( ! types[phase].isEnabled() ) return null;
+        final PhaseEvent event;
+        switch (phase) {
+            case GenetixMetrics.INIT: event = new ComputeInit(); break;
+            case GenetixMetrics.NEXT: event = new ComputeNext(); break;
+            case GenetixMetrics.CROSS: event = new CrossGeneration(); break;
+            case GenetixMetrics.MUTATE: event = new MutateGeneration(); break;
+            case GenetixMetrics.FITNESS: event = new ComputeFitness(); break;
+            case GenetixMetrics.SELECT: event = new SelectBest(); break;
+            case GenetixMetrics.CHECK_POPULATION: event = new CheckPopulationErrors(); break;
+            default: throw new IllegalArgumentException("unknown phase: " + phase);
+        }
+        event.begin();
+        return event;
+    }
+
+}
@@ -35,9 +35,12 @@ import org.kares.math.frec.util.RandomHelper;
  * approximated data (the fitness is computed by {@link Genetix}).
  * 
  * <p>
+ * Functions are generated, mutated and crossed according to a
+ * {@link GenetixConfig} (the default configuration if none is given).
+ * <p>
  * NOTE: Due to the JCM parser limits only those elementary functions
  * are used that the parser understands (to be able to show the results).
- * If the GUI part is not important use {@link FunctionTree#setAllowedFunctions(Function[])}
+ * If the GUI part is not important use {@link GenetixConfig#setAllowedFunctions(Function[])}
  * to change the allowed functions.
  * 
  * @author kares
@@ -46,61 +49,31 @@ import org.kares.math.frec.util.RandomHelper;
 public class GenetixFunction implements Comparable, Cloneable {
 
     private static final double INI = -1.0;
-    //private static final double MAX = Double.MAX_VALUE;
 
-    private static double validFitnessLimit = 1000000;
-
-    static {
-        Function[] defaultFunctions = new Function[] {
-            Functions.Add.INSTANCE,
-            Functions.Sub.INSTANCE,
-            Functions.Mul.INSTANCE,
-            Functions.Div.INSTANCE,
-            // NOTE: % seems not supported by JCM !
-            //Functions.Mod.INSTANCE,
-            Functions.Pow.INSTANCE,
-            Functions.Sin.INSTANCE,
-            Functions.Cos.INSTANCE,
-            Functions.Tan.INSTANCE,
-            //Functions.Cot.INSTANCE,
-            Functions.Sec.INSTANCE,
-            //Functions.Csc.INSTANCE,
-            Functions.ArcSin.INSTANCE,
-            Functions.ArcCos.INSTANCE,
-            Functions.ArcTan.INSTANCE,
-            Functions.Abs.INSTANCE,
-            Functions.Sqrt.INSTANCE,
-            Functions.Exp.INSTANCE,
-            Functions.Ln.INSTANCE,
-            Functions.Log2.INSTANCE,
-            Functions.Log10.INSTANCE,
-            Functions.Trunc.INSTANCE,
-            Functions.Round.INSTANCE,
-            Functions.Floor.INSTANCE,
-            // NOTE: ceil not supported by JCM !
-            //Functions.Ceil.INSTANCE,
-            Functions.Cbrt.INSTANCE,
-            // NOTE: somehow not working in JCM !
-            //Functions.Fact.INSTANCE,
-            Functions.Neg.INSTANCE,
-            // NOTE: <, > not supported by JCM !
-            //Functions.Min.INSTANCE,
-            //Functions.Max.INSTANCE,
-        };
-        FunctionTree.setAllowedFunctions(defaultFunctions);
-    }
-
-    private static int functionMinLength = 2;
-    private static int functionMaxLength = 12;
+    /** Offspring origin - not an offspring (or already accounted for). */
+    static final int ORIGIN_NONE = 0;
+    /** Offspring origin - a mutated function. */
+    static final int ORIGIN_MUTATION = 1;
+    /** Offspring origin - a crossed function. */
+    static final int ORIGIN_CROSSING = 2;
+    //private static final double MAX = Double.MAX_VALUE;
 
     private FunctionTree function;
     private double fitness = INI;
+    /** Whether the fitness is only estimated (on a data sample or in float). */
+    private boolean fitnessEstimated = false;
+    /** The (streaming) data version the fitness was computed for (or -1). */
+    private long fitnessStamp = -1;
+    /** How this function has been created (until it's fitness is computed). */
+    private int origin = ORIGIN_NONE;
+    /** The (raw) fitness of the parent this offspring was created from. */
+    private double parentFitness = INI;
 
     /**
      * Constructor.
      */
     protected GenetixFunction() {
-        this(functionMinLength + RandomHelper.randomInt(functionMaxLength - functionMinLength + 1));
+        this(randomLength(GenetixConfig.getDefault()));
     }
 
     /**
@@ -115,18 +88,64 @@ public class GenetixFunction implements Comparable, Cloneable {
      * Constructor.
      * @param function
      */
-    private GenetixFunction(FunctionTree function) {
+    GenetixFunction(FunctionTree function) {
         this.function = function;
     }
 
+    private static int randomLength(final GenetixConfig config) {
+        final int min = config.getFunctionMinLength();
+        return min + RandomHelper.randomInt(config.getFunctionMaxLength() - min + 1);
+    }
+
     /**
      * Factory for generating random instances.
      * @param size
      * @return Generated function instances.
      */
     public static GenetixFunction[] generate(int size) {
+        return generate(GenetixConfig.getDefault(), size);
+    }
+
+    /**
+     * Factory for generating random instances.
+     * @param config
+     * @param size
+     * @return Generated function instances.
+     */
+    public static GenetixFunction[] generate(final GenetixConfig config, int size) {
+        if ( config.getCodeSampling() == GenetixConfig.SAMPLING_RAMPED ) {
+            return generateRamped(config, size);
+        }
         GenetixFunction[] gp = new GenetixFunction[size];
-        for (int i = 0; i < size; i++) gp[i] = new GenetixFunction();
+        for (int i = 0; i < size; i++) {
+            gp[i] = new GenetixFunction(FunctionTree.getRandomInstance(config, randomLength(config)));
+        }
+        return gp;
+    }
+
+    /**
+     * Generates instances with lengths ramped over the function length 
+     * limits - each (possible) length is generated about the same number of
+     * times (the first length is random).
+     */
+    private static GenetixFunction[] generateRamped(final GenetixConfig config, int size) {
+        final ReadsCodeSampler sampler = ReadsCodeSampler.forConfig(config);
+        final int min = config.getFunctionMinLength();
+        final int max = config.getFunctionMaxLength();
+        final int[] lengths = new int[max - min + 1];
+        int count = 0;
+        for (int len = min; len <= max; len++) {
+            if ( sampler.isPossible(len) ) lengths[count++] = len;
+        }
+        if ( count == 0 ) { // generated by the Read's code generator
+            for (int len = min; len <= max; len++) lengths[count++] = len;
+        }
+        int next = RandomHelper.randomInt(count);
+        GenetixFunction[] gp = new GenetixFunction[size];
+        for (int i = 0; i < size; i++) {
+            gp[i] = new GenetixFunction(FunctionTree.getRandomInstance(config, lengths[next]));
+            if ( ++next == count ) next = 0;
+        }
         return gp;
     }
 
@@ -137,8 +156,21 @@ public class GenetixFunction implements Comparable, Cloneable {
      * @return Generated function instances.
      */
     public static GenetixFunction[] generate(int size, int length) {
+        return generate(GenetixConfig.getDefault(), size, length);
+    }
+
+    /**
+     * Factory for generating random instances (of a given length).
+     * @param config
+     * @param size
+     * @param length
+     * @return Generated function instances.
+     */
+    public static GenetixFunction[] generate(final GenetixConfig config, int size, int length) {
         GenetixFunction[] gp = new GenetixFunction[size];
-        for (int i=0; i<size; i++) gp[i] = new GenetixFunction(length);
+        for (int i=0; i<size; i++) {
+            gp[i] = new GenetixFunction(FunctionTree.getRandomInstance(config, length));
+        }
         return gp;
     }
     
@@ -149,82 +181,81 @@ public class GenetixFunction implements Comparable, Cloneable {
      * @return Generated function instances.
      */
     public static GenetixFunction[] generate(int size, boolean shorter) {
-        if ( ! shorter ) return generate(size);
+        return generate(GenetixConfig.getDefault(), size, shorter);
+    }
+
+    /**
+     * Factory for generating random instances.
+     * @param config
+     * @param size
+     * @param shorter If true shorter length functions will be preffered.
+     * @return Generated function instances.
+     */
+    public static GenetixFunction[] generate(final GenetixConfig config, int size, boolean shorter) {
+        if ( ! shorter ) return generate(config, size);
+        final int min = config.getFunctionMinLength();
+        final int max = config.getFunctionMaxLength();
         GenetixFunction[] gp = new GenetixFunction[size];
         for (int i=0; i<size; i++) {
-            int ascRndInt = RandomHelper.ascRandomInt(functionMaxLength - functionMinLength + 1);
-            gp[i] = new GenetixFunction(functionMinLength + ascRndInt);
+            int ascRndInt = RandomHelper.ascRandomInt(max - min + 1);
+            gp[i] = new GenetixFunction(FunctionTree.getRandomInstance(config, min + ascRndInt));
         }
         return gp;
     }
     
     /**
-     * Set the function length limits. These limits should be kept
-     * while generating random functions as well as during mutation
-     * and crossings.
+     * Set the function length limits (of the default configuration).
      * @param min
      * @param max
+     * @see GenetixConfig#setFunctionLengthLimits(int, int)
      */
     public static void setFunctionCodeLengthLimits(int min, int max) {
-        if ( min > max ) {
-            throw new IllegalArgumentException("min(" + min + ") > max(" + max + ")");
-        }
-        setFunctionCodeMinLength(min);
-        setFunctionCodeMaxLength(max);
+        GenetixConfig.getDefault().setFunctionLengthLimits(min, max);
     }
 
     /**
      * @see #setFunctionCodeLengthLimits(int, int)
      */
     public static void setFunctionCodeMinLength(int min) {
-        if ( min >= 0 ) functionMinLength = min;
+        GenetixConfig.getDefault().setFunctionMinLength(min);
     }
 
     /**
      * @see #setFunctionCodeLengthLimits(int, int)
      */
     public static int getFunctionCodeMinLength() {
-        return functionMinLength;
+        return GenetixConfig.getDefault().getFunctionMinLength();
     }
 
     /**
      * @see #setFunctionCodeLengthLimits(int, int)
      */
     public static void setFunctionCodeMaxLength(int max) {
-        if ( max >  0 ) functionMaxLength = max;
+        GenetixConfig.getDefault().setFunctionMaxLength(max);
     }
 
     /**
      * @see #setFunctionCodeLengthLimits(int, int)
      */
     public static int getFunctionCodeMaxLength() {
-        return functionMaxLength;
+        return GenetixConfig.getDefault().getFunctionMaxLength();
     }
 
     /**
      * @see #setValidFitnessLimit(double)
-     * @return The current fitness limit.
+     * @return The current (default) fitness limit.
      */
     public static double getValidFitnessLimit() {
-    	return validFitnessLimit;
+    	return GenetixConfig.getDefault().getValidFitnessLimit();
     }
 
     /**
-     * Set the valid fitness threshold fitness values greater
-     * than this value are considered invalid and will be discarded.
+     * Set the (default) valid fitness threshold.
      * @param limit
+     * @see GenetixConfig#setValidFitnessLimit(double)
      */
     public static void setValidFitnessLimit(final double limit) {
-    	if ( limit <= 0 ) {
-    		throw new IllegalArgumentException(limit + " <= 0");
-    	}
-    	if ( Double.isInfinite(limit) ) {
-    		throw new IllegalArgumentException("limit is infinite");
-    	}
-    	if ( Double.isNaN(limit) ) {
-    		throw new IllegalArgumentException("limit is NaN");
-    	}
-    	GenetixFunction.validFitnessLimit = limit;
+    	GenetixConfig.getDefault().setValidFitnessLimit(limit);
     }
     
     /**
@@ -232,9 +263,19 @@ public class GenetixFunction implements Comparable, Cloneable {
      * @return Returns true if the fitness is a valid value.
      */
     public boolean isFitnessValid() {
+        return isFitnessValid( getValidFitnessLimit() );
+    }
+
+    /**
+     * Check the fitness for errors.
+     * @param limit The valid fitness limit.
+     * @return Returns true if the fitness is a valid value.
+     * @see GenetixConfig#getValidFitnessLimit()
+     */
+    public boolean isFitnessValid(final double limit) {
         if ( Double.isNaN(fitness) ) return false;
         if ( Double.isInfinite(fitness) ) return false;
-        return fitness >= 0 && fitness <= validFitnessLimit;
+        return fitness >= 0 && fitness <= limit;
     }
 
     /**
@@ -253,14 +294,99 @@ public class GenetixFunction implements Comparable, Cloneable {
      */
     public boolean setFitness(double value) {
         this.fitness = value;
+        this.fitnessEstimated = false;
+        this.fitnessStamp = -1;
+        return isFitnessValid();
+    }
+
+    /**
+     * Set an estimated fitness value (e.g. computed only on a sample
+     * of the training data or in single precision). The estimate should
+     * be scaled so that it is comparable with fitness values computed
+     * on all data.
+     * @param value
+     * @return {@link #isFitnessValid()}
+     * @see #isFitnessEstimated()
+     */
+    public boolean setFitnessEstimate(double value) {
+        this.fitness = value;
+        this.fitnessEstimated = true;
+        this.fitnessStamp = -1;
         return isFitnessValid();
     }
 
+    /**
+     * @return True if the fitness value is an estimate only.
+     * @see #setFitnessEstimate(double)
+     */
+    public boolean isFitnessEstimated() {
+        return fitnessEstimated;
+    }
+
     /**
      * Resets the fitness to an initial state.
      */
     public void resetFitness() {
         this.fitness = INI;
+        this.fitnessEstimated = false;
+        this.fitnessStamp = -1;
+    }
+
+    /**
+     * @return The data "version" the fitness has been computed for.
+     * @see StreamingData
+     */
+    long getFitnessStamp() {
+        return fitnessStamp;
+    }
+
+    void setFitnessStamp(long stamp) {
+        this.fitnessStamp = stamp;
+    }
+
+    /**
+     * @return The fitness value as is (no NaN for the initial value).
+     */
+    double getRawFitness() {
+        return fitness;
+    }
+
+    /**
+     * @return How this function has been created (an offspring created by
+     * mutation or crossing), <code>ORIGIN_NONE</code> once accounted for.
+     */
+    int getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return The (raw) fitness of the parent (meaningful for offspring).
+     */
+    double getParentFitness() {
+        return parentFitness;
+    }
+
+    void clearOrigin() {
+        this.origin = ORIGIN_NONE;
+    }
+
+    /**
+     * Marks this function as an offspring, if modified repeatedly (before
+     * the fitness has been computed) the original parent's fitness is kept.
+     */
+    private void offspring(final int origin, final double parentFitness) {
+        if ( this.origin == ORIGIN_NONE ) this.parentFitness = parentFitness;
+        this.origin = origin;
+    }
+
+    /**
+     * Restores a (previously encoded) fitness state.
+     * @see GenomeCodec
+     */
+    void restoreFitness(double fitness, boolean estimated, long stamp) {
+        this.fitness = fitness;
+        this.fitnessEstimated = estimated;
+        this.fitnessStamp = stamp;
     }
 
     /**
@@ -306,12 +432,30 @@ public class GenetixFunction implements Comparable, Cloneable {
      * @see FunctionTree#mutateCode(MutationContext)
      */
     public void mutateFunction(boolean arbitrary) {
+        mutateFunction(GenetixConfig.getDefault(), arbitrary);
+    }
+
+    /**
+     * Mutates this function.
+     * @param config The configuration (length limits and allowed functions).
+     * @param arbitrary Whether to use arbitrary crossing or respect the
+     * minimum - maximum function length limits.
+     * @see FunctionTree#mutateCode(MutationContext)
+     */
+    public void mutateFunction(final GenetixConfig config, boolean arbitrary) {
+        this.fitnessStamp = -1;
+        offspring(ORIGIN_MUTATION, this.fitness);
+        final int pos, len;
         if ( arbitrary ) {
-            function.mutateCode(RandomHelper.randomInt(functionMaxLength));
+            len = RandomHelper.randomInt(config.getFunctionMaxLength());
+            pos = 1 + RandomHelper.randomInt(function.length() - 1);
         }
         else {
-            function.mutateCode(functionMinLength, functionMaxLength);
+            pos = 1 + RandomHelper.randomInt(function.length() - 1);
+            len = function.randomMutationLength(pos,
+                config.getFunctionMinLength(), config.getFunctionMaxLength());
         }
+        function.mutateCode(new MutationContext(function, pos, len, config));
     }
 
     /**
@@ -322,17 +466,33 @@ public class GenetixFunction implements Comparable, Cloneable {
      * @see FunctionTree#crossCode(CrossingContext)
      */
     public void crossFunctions(final GenetixFunction that, boolean arbitrary) {
+        crossFunctions(that, GenetixConfig.getDefault(), arbitrary);
+    }
+
+    /**
+     * Crosses two functions.
+     * @param that The other function to be crossed with this.
+     * @param config The configuration (length limits).
+     * @param arbitrary Whether to use arbitrary crossing or respect the
+     * minimum - maximum function length limits.
+     * @see FunctionTree#crossCode(CrossingContext)
+     */
+    public void crossFunctions(final GenetixFunction that,
+        final GenetixConfig config, boolean arbitrary) {
         FunctionTree[] crossed;
         if ( arbitrary ) {
             crossed = this.function.crossCode(that.function);
         }
         else {
-            crossed = this.function.crossCode(that.function, functionMinLength, functionMaxLength);
+            crossed = this.function.crossCode(that.function,
+                config.getFunctionMinLength(), config.getFunctionMaxLength());
         }
         this.function = crossed[0];
         that.function = crossed[1];
-        this.fitness = INI;
-        that.fitness = INI;
+        this.offspring(ORIGIN_CROSSING, this.fitness);
+        that.offspring(ORIGIN_CROSSING, that.fitness);
+        this.resetFitness();
+        that.resetFitness();
     }
 
     /**
@@ -354,8 +514,10 @@ public class GenetixFunction implements Comparable, Cloneable {
         function.crossCode(crossContext);
         this.function = (FunctionTree) crossContext.getChild1();
         that.function = (FunctionTree) crossContext.getChild2();
-        this.fitness = INI;
-        that.fitness = INI;
+        this.offspring(ORIGIN_CROSSING, this.fitness);
+        that.offspring(ORIGIN_CROSSING, that.fitness);
+        this.resetFitness();
+        that.resetFitness();
     }
 
     /**
@@ -372,7 +534,7 @@ public class GenetixFunction implements Comparable, Cloneable {
         if ( fitness2 == INI ) {
             throw new IllegalStateException("fitness not set for " + that);
         }
-        if ( Double.isNaN(fitness1) ) return +1;
+        if ( Double.isNaN(fitness1) ) return Double.isNaN(fitness2) ? 0 : +1;
         if ( Double.isNaN(fitness2) ) return -1;
         if ( fitness1 > fitness2 ) return +1;
         if ( fitness1 < fitness2 ) return -1;
@@ -420,6 +582,7 @@ public class GenetixFunction implements Comparable, Cloneable {
         String fit = Float.toString((float) fitness);
         if (fitness == INI) fit = "initial";
         if (Double.isNaN(fitness)) fit = "invalid";
+        else if (fitnessEstimated) fit = "~" + fit;
         
         final StringBuffer str = new StringBuffer();
         str.append("GenetixFunction:");
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics (statistics) of a {@link Genetix} computation - evaluation
+ * counters, discarded functions and phase latencies. The metrics are
+ * registered as an MBean (with the platform MBean server) while the
+ * computation is running.
+ * <p>
+ * Counters are updated by the computing thread and might be read from any
+ * thread, {@link LongAdder}s are used to keep the updates cheap. The fitness
+ * statistics (e.g. the median fitness) are computed on request from the
+ * current generation.
+ * <p>
+ * The phases are reported as (JFR) events as well if a flight recording
+ * is running (and the events are enabled).
+ *
+ * @see Genetix#getMetrics()
+ * @author kares
+ */
+public class GenetixMetrics implements GenetixMetricsMBean {
+
+    /** the {@link Genetix#computeInit()} phase */
+    public static final int INIT = 0;
+    /** the {@link Genetix#computeNext()} phase */
+    public static final int NEXT = 1;
+    /** the {@link Genetix#crossGeneration()} phase */
+    public static final int CROSS = 2;
+    /** the {@link Genetix#mutateGeneration()} phase */
+    public static final int MUTATE = 3;
+    /** fitness computation (of a function or functions) */
+    public static final int FITNESS = 4;
+    /** the {@link Genetix#selectBest(int)} phase */
+    public static final int SELECT = 5;
+    /** the {@link Genetix#checkPopulationErrors()} phase */
+    public static final int CHECK_POPULATION = 6;
+
+    private static final int PHASES = 7;
+
+    /** the JMX domain the metrics are registered with */
+    public static final String DOMAIN = "org.kares.math.frec";
+
+    private static boolean registering = true;
+
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    private static final boolean events = eventsAvailable();
+
+    private static boolean eventsAvailable() {
+        try { // the jdk.jfr module might not be present
+            Class.forName(GenetixEvents.class.getName());
+            return true;
+        }
+        catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return True if the metrics of running computations are registered.
+     */
+    public static boolean isRegistering() {
+        return registering;
+    }
+
+    /**
+     * Whether to register the metrics of running computations (the metrics
+     * are collected anyway).
+     * @param flag
+     */
+    public static void setRegistering(boolean flag) {
+        registering = flag;
+    }
+
+    private final Genetix genetix;
+    private final int id = ids.incrementAndGet();
+    private ObjectName name;
+
+    private volatile long computeStart = -1;
+    private final LongAdder computeNanos = new LongAdder();
+
+    private final LongAdder fitnessEvaluations = new LongAdder();
+    private final LongAdder nodeEvaluations = new LongAdder();
+    private final LongAdder fitnessChecked = new LongAdder();
+    private final LongAdder fitnessInvalid = new LongAdder();
+    private final LongAdder populationChecked = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private final LongAdder[] phaseCounts = new LongAdder[PHASES];
+    private final LongAdder[] phaseNanos = new LongAdder[PHASES];
+
+    // the state of started phases (phases do not nest into themselves) :
+    private final long[] phaseStarts = new long[PHASES];
+    private final Object[] phaseEvents = new Object[PHASES];
+    private final long[] phaseFitnessEvaluations = new long[PHASES];
+    private final long[] phasePointEvaluations = new long[PHASES];
+
+    GenetixMetrics(final Genetix genetix) {
+        this.genetix = genetix;
+        for (int i=0; i<PHASES; i++) {
+            phaseCounts[i] = new LongAdder();
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return The name the metrics are (to be) registered with.
+     */
+    public ObjectName getObjectName() {
+        if ( name == null ) {
+            try {
+                name = new ObjectName(DOMAIN + ":type=Genetix,model=" + getModel() + ",id=" + id);
+            }
+            catch (JMException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return name;
+    }
+
+    void computeStarted() {
+        computeStart = System.nanoTime();
+        if ( ! registering ) return;
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if ( ! server.isRegistered( getObjectName() ) ) {
+                server.registerMBean(this, getObjectName());
+            }
+        }
+        catch (JMException e) {
+            // monitoring is not essential for the computation
+        }
+    }
+
+    void computeFinished() {
+        final long start = computeStart;
+        if ( start >= 0 ) computeNanos.add(System.nanoTime() - start);
+        computeStart = -1;
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if ( server.isRegistered( getObjectName() ) ) {
+                server.unregisterMBean( getObjectName() );
+            }
+        }
+        catch (JMException e) {
+            // monitoring is not essential for the computation
+        }
+    }
+
+    /**
+     * Marks the start of a computation phase.
+     * @param phase
+     * @see #phaseCompleted(int)
+     */
+    void phaseStarted(final int phase) {
+        if ( events ) {
+            final GenetixEvents.PhaseEvent event = GenetixEvents.begin(phase);
+            if ( event != null ) {
+                phaseFitnessEvaluations[phase] = fitnessEvaluations.sum();
+                phasePointEvaluations[phase] = genetix.getFitnessPointEvaluations();
+            }
+            phaseEvents[phase] = event;
+        }
+        phaseStarts[phase] = System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a (started) computation phase.
+     * @param phase
+     * @see #phaseStarted(int)
+     */
+    void phaseCompleted(final int phase) {
+        phaseCounts[phase].increment();
+        phaseNanos[phase].add(System.nanoTime() - phaseStarts[phase]);
+        if ( events && phaseEvents[phase] != null ) commitEvent(phase);
+    }
+
+    private void commitEvent(final int phase) {
+        final GenetixEvents.PhaseEvent event = (GenetixEvents.PhaseEvent) phaseEvents[phase];
+        phaseEvents[phase] = null;
+        event.end();
+        if ( ! event.shouldCommit() ) return;
+        event.model = getModel();
+        event.generation = genetix.getGenerationCounter();
+        final GenetixFunction[] generation = genetix.getCurrentGeneration();
+        event.populationSize = generation == null ? 0 : generation.length;
+        event.fitnessEvaluations = fitnessEvaluations.sum() - phaseFitnessEvaluations[phase];
+        event.pointEvaluations = genetix.getFitnessPointEvaluations() - phasePointEvaluations[phase];
+        event.commit();
+    }
+
+    void fitnessEvaluated(final int functions) {
+        fitnessEvaluations.add(functions);
+    }
+
+    void nodesEvaluated(final long nodes) {
+        nodeEvaluations.add(nodes);
+    }
+
+    void fitnessChecked(final int checked, final int invalid) {
+        fitnessChecked.add(checked);
+        if ( invalid > 0 ) fitnessInvalid.add(invalid);
+    }
+
+    void populationChecked(final int checked, final int duplicates) {
+        populationChecked.add(checked);
+        if ( duplicates > 0 ) this.duplicates.add(duplicates);
+    }
+
+    void fitnessCached(final boolean hit) {
+        if ( hit ) cacheHits.increment();
+        else cacheMisses.increment();
+    }
+
+    public String getModel() {
+        final String name = genetix.getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    public boolean isComputing() {
+        return computeStart >= 0;
+    }
+
+    private long computeNanos() {
+        final long start = computeStart;
+        return computeNanos.sum() + ( start >= 0 ? System.nanoTime() - start : 0 );
+    }
+
+    public long getComputeTime() {
+        return computeNanos() / 1000000;
+    }
+
+    public int getGenerationCounter() {
+        return genetix.getGenerationCounter();
+    }
+
+    public int getGenerationSize() {
+        return genetix.getGenerationSize();
+    }
+
+    public int getGenerationLimit() {
+        return genetix.getGenerationLimit();
+    }
+
+    /**
+     * @return The (sorted) valid fitness values of the current generation.
+     */
+    private double[] currentFitness() {
+        final GenetixFunction[] generation = genetix.getCurrentGeneration();
+        if ( generation == null ) return new double[0];
+        final double[] fitness = new double[generation.length];
+        int size = 0;
+        for (int i=0; i<generation.length; i++) {
+            final GenetixFunction fx = generation[i];
+            if ( fx != null && genetix.isFitnessValid(fx) ) fitness[size++] = fx.getFitness();
+        }
+        Arrays.sort(fitness, 0, size);
+        final double[] valid = new double[size];
+        System.arraycopy(fitness, 0, valid, 0, size);
+        return valid;
+    }
+
+    public double getBestFitness() {
+        final double[] fitness = currentFitness();
+        return fitness.length == 0 ? Double.NaN : fitness[0];
+    }
+
+    public double getMeanFitness() {
+        final double[] fitness = currentFitness();
+        if ( fitness.length == 0 ) return Double.NaN;
+        double sum = 0;
+        for (int i=0; i<fitness.length; i++) sum += fitness[i];
+        return sum / fitness.length;
+    }
+
+    public double getMedianFitness() {
+        final double[] fitness = currentFitness();
+        final int size = fitness.length;
+        if ( size == 0 ) return Double.NaN;
+        if ( size % 2 == 1 ) return fitness[size / 2];
+        return ( fitness[size / 2 - 1] + fitness[size / 2] ) / 2;
+    }
+
+    public double getAverageTreeLength() {
+        final GenetixFunction[] generation = genetix.getCurrentGeneration();
+        if ( generation == null || generation.length == 0 ) return Double.NaN;
+        long length = 0; int size = 0;
+        for (int i=0; i<generation.length; i++) {
+            if ( generation[i] == null ) continue;
+            length += generation[i].length(); size++;
+        }
+        return size == 0 ? Double.NaN : (double) length / size;
+    }
+
+    public long getFitnessEvaluations() {
+        return fitnessEvaluations.sum();
+    }
+
+    public long getPointEvaluations() {
+        return genetix.getFitnessPointEvaluations();
+    }
+
+    public long getNodeEvaluations() {
+        return nodeEvaluations.sum();
+    }
+
+    private double perSecond(final long count) {
+        final long nanos = computeNanos();
+        return nanos <= 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    public double getFitnessEvaluationsPerSecond() {
+        return perSecond( getFitnessEvaluations() );
+    }
+
+    public double getPointEvaluationsPerSecond() {
+        return perSecond( getPointEvaluations() );
+    }
+
+    public double getNodeEvaluationsPerSecond() {
+        return perSecond( getNodeEvaluations() );
+    }
+
+    private static double rate(final long count, final long total) {
+        return total == 0 ? 0 : (double) count / total;
+    }
+
+    public double getInvalidFitnessRate() {
+        return rate( fitnessInvalid.sum(), fitnessChecked.sum() );
+    }
+
+    public double getDuplicateRate() {
+        return rate( duplicates.sum(), populationChecked.sum() );
+    }
+
+    public double getFitnessCacheHitRate() {
+        final long hits = cacheHits.sum();
+        return rate( hits, hits + cacheMisses.sum() );
+    }
+
+    public double getSavedEvaluationRate() {
+        final long saved = genetix.getFitnessPointEvaluationsSaved();
+        return rate( saved, saved + genetix.getFitnessPointEvaluations() );
+    }
+
+    /**
+     * @param phase
+     * @return The mean latency of a phase in microseconds.
+     */
+    public double getLatency(final int phase) {
+        final long count = phaseCounts[phase].sum();
+        return count == 0 ? 0 : phaseNanos[phase].sum() / ( count * 1000.0 );
+    }
+
+    public double getInitLatency() {
+        return getLatency(INIT);
+    }
+
+    public double getNextLatency() {
+        return getLatency(NEXT);
+    }
+
+    public double getCrossLatency() {
+        return getLatency(CROSS);
+    }
+
+    public double getMutateLatency() {
+        return getLatency(MUTATE);
+    }
+
+    public double getFitnessLatency() {
+        return getLatency(FITNESS);
+    }
+
+    public double getSelectLatency() {
+        return getLatency(SELECT);
+    }
+
+    public double getCheckPopulationLatency() {
+        return getLatency(CHECK_POPULATION);
+    }
+
+}
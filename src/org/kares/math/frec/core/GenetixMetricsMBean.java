@@ -0,0 +1,94 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.kares.math.frec.core;
+
+/**
+ * The management (JMX) interface of {@link GenetixMetrics}.
+ * Latencies are mean values in microseconds, rates are per second of
+ * computation (or fractions of the checked functions).
+ *
+ * @author kares
+ */
+public interface GenetixMetricsMBean {
+
+    String getModel();
+
+    boolean isComputing();
+
+    /** @return The computation time (in ms). */
+    long getComputeTime();
+
+    int getGenerationCounter();
+
+    int getGenerationSize();
+
+    int getGenerationLimit();
+
+    /** @return The best fitness of the current generation (NaN if none). */
+    double getBestFitness();
+
+    /** @return The mean (valid) fitness of the current generation. */
+    double getMeanFitness();
+
+    /** @return The median (valid) fitness of the current generation. */
+    double getMedianFitness();
+
+    /** @return The average tree (code) length of the current generation. */
+    double getAverageTreeLength();
+
+    /** @return The number of (function) fitness computations. */
+    long getFitnessEvaluations();
+
+    long getPointEvaluations();
+
+    /** @return The tree nodes evaluated (point evaluations * tree length). */
+    long getNodeEvaluations();
+
+    double getFitnessEvaluationsPerSecond();
+
+    double getPointEvaluationsPerSecond();
+
+    double getNodeEvaluationsPerSecond();
+
+    /** @return The rate of functions discarded due to an invalid fitness. */
+    double getInvalidFitnessRate();
+
+    /** @return The rate of duplicate functions discarded. */
+    double getDuplicateRate();
+
+    /** @return The rate of (streaming) fitness values updated incrementally. */
+    double getFitnessCacheHitRate();
+
+    /** @return The rate of point evaluations saved (estimates, invalid values). */
+    double getSavedEvaluationRate();
+
+    double getInitLatency();
+
+    double getNextLatency();
+
+    double getCrossLatency();
+
+    double getMutateLatency();
+
+    double getFitnessLatency();
+
+    double getSelectLatency();
+
+    double getCheckPopulationLatency();
+
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.core;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A compact binary encoding of {@link FunctionTree}s and
+ * {@link GenetixFunction}s (whole generations).
+ * <p>
+ * A tree is encoded as :
+ * <pre>
+ *   [varint node count]
+ *   [node nibbles]  - 2 nodes per byte (the first in the high nibble), the
+ *                     nibble is the node's arity (Read's code digit) or
+ *                     0xF for a constant leaf (0 stands for the variable x)
+ *   [function ids]  - a byte per function node, the number of a standart
+ *                     function (see {@link Functions}) or 0xFF followed by
+ *                     the (varint length prefixed UTF-8) id of another one
+ *   [constants]     - 8 bytes (raw double bits) per constant leaf
+ * </pre>
+ * A function appends it's fitness (8 bytes), a flags byte (whether the
+ * fitness is estimated) and a varint (fitness stamp + 1) to the tree.
+ * A generation is a varint count followed by the functions.
+ * <p>
+ * Constants and fitness values are kept exactly. An encoded function
+ * (including it's fitness) takes less than half of the size of it's UTF 
+ * formatted string (as written by {@link org.kares.math.frec.util.GenFile})
+ * and it's encoded as well as decoded without any formatting or parsing.
+ *
+ * @author kares
+ */
+public abstract class GenomeCodec {
+
+    private static final int CONSTANT = 0xF;
+    private static final int CUSTOM = 0xFF;
+
+    /**
+     * @param tree
+     * @return The size of the encoded tree (in bytes).
+     */
+    public static int encodedSize(final FunctionTree tree) {
+        final Function[] functions = tree.getFunctions();
+        final byte[] code = tree.getCodeDigits();
+        final int len = code.length;
+        int size = varIntSize(len) + (len + 1) / 2;
+        for (int i=0; i<len; i++) {
+            final Function fx = functions[i];
+            if ( code[i] > 0 ) {
+                size++;
+                if ( Functions.indexOf(fx) < 0 ) {
+                    final int idLen = utf8(fx.toString()).length;
+                    size += varIntSize(idLen) + idLen;
+                }
+            }
+            else if ( fx != null ) size += 8;
+        }
+        return size;
+    }
+
+    /**
+     * @param fx
+     * @return The size of the encoded function (in bytes).
+     */
+    public static int encodedSize(final GenetixFunction fx) {
+        return encodedSize(fx.getFunctionTree()) + 8 + 1 +
+            varLongSize(fx.getFitnessStamp() + 1);
+    }
+
+    /**
+     * @param generation
+     * @return The size of the encoded generation (in bytes).
+     */
+    public static int encodedSize(final GenetixFunction[] generation) {
+        int size = varIntSize(generation.length);
+        for (int i=0; i<generation.length; i++) size += encodedSize(generation[i]);
+        return size;
+    }
+
+    /**
+     * Encodes the tree into the buffer.
+     * @param tree
+     * @param buffer
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(final FunctionTree tree, final ByteBuffer buffer) {
+        final Function[] functions = tree.getFunctions();
+        final byte[] code = tree.getCodeDigits();
+        final int len = code.length;
+        putVarInt(buffer, len);
+        for (int i=0; i<len; i+=2) {
+            int nibbles = nibble(code, functions, i) << 4;
+            if ( i + 1 < len ) nibbles |= nibble(code, functions, i + 1);
+            buffer.put( (byte) nibbles );
+        }
+        for (int i=0; i<len; i++) {
+            if ( code[i] == 0 ) continue;
+            final int index = Functions.indexOf(functions[i]);
+            if ( index >= 0 ) buffer.put( (byte) index );
+            else {
+                final byte[] id = utf8(functions[i].toString());
+                buffer.put( (byte) CUSTOM );
+                putVarInt(buffer, id.length);
+                buffer.put(id);
+            }
+        }
+        for (int i=0; i<len; i++) {
+            if ( code[i] == 0 && functions[i] != null ) {
+                buffer.putDouble( ((ConstantFunction) functions[i]).value() );
+            }
+        }
+    }
+
+    private static int nibble(final byte[] code, final Function[] functions, final int i) {
+        return code[i] == 0 && functions[i] != null ? CONSTANT : code[i];
+    }
+
+    /**
+     * Decodes a tree from the buffer.
+     * @param buffer
+     * @return The decoded tree.
+     * @throws IllegalArgumentException if the data is not a valid tree
+     */
+    public static FunctionTree decodeTree(final ByteBuffer buffer) {
+        return decodeTree(buffer, GenetixConfig.getDefault());
+    }
+
+    /**
+     * Decodes a tree from the buffer.
+     * @param buffer
+     * @param config The configuration to look up (custom) functions in.
+     * @return The decoded tree.
+     * @throws IllegalArgumentException if the data is not a valid tree
+     */
+    public static FunctionTree decodeTree(final ByteBuffer buffer, final GenetixConfig config) {
+        try {
+            final int len = getVarInt(buffer);
+            if ( len <= 0 ) throw new IllegalArgumentException("invalid tree length: " + len);
+            final char[] code = new char[len];
+            final Function[] functions = new Function[len];
+            final boolean[] constants = new boolean[len];
+            int needed = 1;
+            for (int i=0; i<len; i+=2) {
+                final int nibbles = buffer.get() & 0xFF;
+                needed += decodeNibble(nibbles >>> 4, i, code, constants);
+                if ( i + 1 < len ) needed += decodeNibble(nibbles & 0xF, i + 1, code, constants);
+            }
+            if ( needed != 0 ) throw new IllegalArgumentException("invalid tree code");
+            for (int i=0; i<len; i++) {
+                if ( code[i] == '0' ) continue;
+                final int index = buffer.get() & 0xFF;
+                if ( index == CUSTOM ) {
+                    final byte[] id = new byte[ getVarInt(buffer) ];
+                    buffer.get(id);
+                    final String name = new String(id, "UTF-8");
+                    functions[i] = FunctionTree.findFunction(name, config);
+                    if ( functions[i] == null ) {
+                        throw new IllegalArgumentException("unknown function: " + name);
+                    }
+                }
+                else if ( index < Functions.STANDART.length ) {
+                    functions[i] = Functions.STANDART[index];
+                }
+                else throw new IllegalArgumentException("invalid function: " + index);
+                if ( functions[i].arity() != code[i] - '0' ) {
+                    throw new IllegalArgumentException("arity mismatch: " + functions[i]);
+                }
+            }
+            for (int i=0; i<len; i++) {
+                if ( constants[i] ) functions[i] = new ConstantFunction( buffer.getDouble() );
+            }
+            return new FunctionTree(new String(code), functions);
+        }
+        catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated tree");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static int decodeNibble(final int nibble, final int i,
+        final char[] code, final boolean[] constants) {
+        if ( nibble == CONSTANT ) {
+            code[i] = '0';
+            constants[i] = true;
+            return -1;
+        }
+        if ( nibble > 9 ) throw new IllegalArgumentException("invalid node: " + nibble);
+        code[i] = (char) ('0' + nibble);
+        return nibble - 1;
+    }
+
+    /**
+     * Encodes the function (the tree and the fitness) into the buffer.
+     * @param fx
+     * @param buffer
+     */
+    public static void encode(final GenetixFunction fx, final ByteBuffer buffer) {
+        encode(fx.getFunctionTree(), buffer);
+        buffer.putDouble( fx.getRawFitness() );
+        buffer.put( (byte) (fx.isFitnessEstimated() ? 1 : 0) );
+        putVarLong(buffer, fx.getFitnessStamp() + 1);
+    }
+
+    /**
+     * Decodes a function from the buffer.
+     * @param buffer
+     * @return The decoded function.
+     */
+    public static GenetixFunction decodeFunction(final ByteBuffer buffer) {
+        return decodeFunction(buffer, GenetixConfig.getDefault());
+    }
+
+    /**
+     * Decodes a function from the buffer.
+     * @param buffer
+     * @param config The configuration to look up (custom) functions in.
+     * @return The decoded function.
+     */
+    public static GenetixFunction decodeFunction(final ByteBuffer buffer, final GenetixConfig config) {
+        final GenetixFunction fx = new GenetixFunction( decodeTree(buffer, config) );
+        try {
+            final double fitness = buffer.getDouble();
+            final boolean estimated = ( buffer.get() & 1 ) != 0;
+            fx.restoreFitness(fitness, estimated, getVarLong(buffer) - 1);
+        }
+        catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated function");
+        }
+        return fx;
+    }
+
+    /**
+     * Encodes a whole generation into the buffer.
+     * @param generation
+     * @param buffer
+     */
+    public static void encode(final GenetixFunction[] generation, final ByteBuffer buffer) {
+        putVarInt(buffer, generation.length);
+        for (int i=0; i<generation.length; i++) encode(generation[i], buffer);
+    }
+
+    /**
+     * Encodes a whole generation into a new (exactly sized) buffer.
+     * @param generation
+     * @return The buffer (flipped, ready to be read).
+     */
+    public static ByteBuffer encode(final GenetixFunction[] generation) {
+        final ByteBuffer buffer = ByteBuffer.allocate( encodedSize(generation) );
+        encode(generation, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes a whole generation from the buffer.
+     * @param buffer
+     * @return The decoded functions.
+     */
+    public static GenetixFunction[] decodeGeneration(final ByteBuffer buffer) {
+        return decodeGeneration(buffer, GenetixConfig.getDefault());
+    }
+
+    /**
+     * Decodes a whole generation from the buffer.
+     * @param buffer
+     * @param config The configuration to look up (custom) functions in.
+     * @return The decoded functions.
+     */
+    public static GenetixFunction[] decodeGeneration(final ByteBuffer buffer, final GenetixConfig config) {
+        final int size;
+        try {
+            size = getVarInt(buffer);
+        }
+        catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated generation");
+        }
+        final GenetixFunction[] generation = new GenetixFunction[size];
+        for (int i=0; i<size; i++) generation[i] = decodeFunction(buffer, config);
+        return generation;
+    }
+
+    private static byte[] utf8(final String str) {
+        try {
+            return str.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ( ( value >>>= 7 ) != 0 ) size++;
+        return size;
+    }
+
+    static int varLongSize(long value) {
+        int size = 1;
+        while ( ( value >>>= 7 ) != 0 ) size++;
+        return size;
+    }
+
+    static void putVarInt(final ByteBuffer buffer, int value) {
+        while ( ( value & ~0x7F ) != 0 ) {
+            buffer.put( (byte) ( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+        buffer.put( (byte) value );
+    }
+
+    static void putVarLong(final ByteBuffer buffer, long value) {
+        while ( ( value & ~0x7FL ) != 0 ) {
+            buffer.put( (byte) ( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+        buffer.put( (byte) value );
+    }
+
+    static int getVarInt(final ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = buffer.get();
+            value |= ( b & 0x7F ) << shift;
+            if ( b >= 0 ) return value;
+        }
+        throw new IllegalArgumentException("invalid varint");
+    }
+
+    static long getVarLong(final ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = buffer.get();
+            value |= (long) ( b & 0x7F ) << shift;
+            if ( b >= 0 ) return value;
+        }
+        throw new IllegalArgumentException("invalid varint");
+    }
+
+}
@@ -37,9 +37,6 @@ import org.kares.math.frec.util.RandomHelper;
  */
 public class LimitedTree extends ReadsTree {
     
-    private static int codeElementMin = 0; // downer limit [1..codeElementMax]
-    private static int codeElementMax = 9; // upper limit [codeElementMin..9]
-
     /**
      * Creates a new limited tree with the given code.
      * 
@@ -51,6 +48,13 @@ public class LimitedTree extends ReadsTree {
         super(code);
     }
 
+    /**
+     * @see ReadsTree#ReadsTree(byte[])
+     */
+    LimitedTree(final byte[] codeDigits) {
+        super(codeDigits);
+    }
+
     /**
      * Generates a random tree instance.
      * @return random tree
@@ -72,75 +76,103 @@ public class LimitedTree extends ReadsTree {
      * @see ReadsTree#generateRandomCode(int)
      */
     public static String generateRandomCode(int len) {
+        return generateRandomCode(GenetixConfig.getDefault(), len);
+    }
+
+    /**
+     * Generates a random code with the code element limits of the given
+     * configuration.
+     * @param config
+     * @param len
+     * @see ReadsTree#generateRandomCode(int)
+     */
+    public static String generateRandomCode(final GenetixConfig config, int len) {
         if (len == 1) return "0";
         if (len == 2) return "10";
-        if (codeElementMax == 9 && codeElementMin == 0) {
-            return ReadsTree.generateRandomCode(len);
+        final byte[] code = codeBuffer(len);
+        generateRandomCode(config, code, 0, len, RandomHelper.currentStream());
+        return toCode(code, 0, len);
+    }
+
+    /**
+     * Generates a random code with the code element limits of the given
+     * configuration into the buffer (as code digits).
+     * @param config
+     * @param code The buffer for the generated code.
+     * @param off The (buffer) offset of the code.
+     * @param len
+     * @param random The random source e.g. {@link RandomHelper#currentStream()}.
+     * @see ReadsTree#generateRandomCode(byte[], int, int, Random)
+     */
+    public static void generateRandomCode(final GenetixConfig config, 
+        final byte[] code, final int off, final int len, final Random random) {
+        final int codeElementMin = config.getCodeElementMin();
+        int codeElementMax = config.getCodeElementMax();
+        if ( len <= 2 || (codeElementMax == 9 && codeElementMin == 0) ) {
+            ReadsTree.generateRandomCode(code, off, len, random);
+            return;
         }
 
-        int[] d = new int[len - 1];
-        d[0] = len - 1;
-        if (codeElementMax > d[0]) codeElementMax = d[0];
-        StringBuffer res = new StringBuffer(len);
-        Random random = RandomHelper.newRandom();
+        int d = len - 1; // the count of nodes still to be attached
+        if (codeElementMax > d) codeElementMax = d;
         int rnd = 1;
 
         if (codeElementMin <= 0) {
             if (codeElementMax > 1) rnd = random.nextInt(codeElementMax) + 1;
-            res.append(rnd);
+            code[off] = (byte) rnd;
             for (int i = 1; i < len - 1; i++) {
-                d[i] = d[i - 1] - rnd;
-                if (d[i] == len - i - 1) {
-                    if (codeElementMax <= d[i]) {
+                d -= rnd;
+                if (d == len - i - 1) {
+                    if (codeElementMax <= d) {
                         rnd = 1 + random.nextInt(codeElementMax);
                     } else {
-                        rnd = 1 + random.nextInt(d[i]);
+                        rnd = 1 + random.nextInt(d);
                     }
                 } else {
-                    if (codeElementMax <= d[i]) {
+                    if (codeElementMax <= d) {
                         rnd = random.nextInt(codeElementMax + 1);
                     } else {
-                        rnd = random.nextInt(d[i] + 1);
+                        rnd = random.nextInt(d + 1);
                     }
                 }
-                res.append(rnd);
+                code[off + i] = (byte) rnd;
             }
         }
         else { // codeElementMin > 0
             if (codeElementMax > 1) rnd = random.nextInt(codeElementMax) + 1;
-            res.append(rnd);
+            code[off] = (byte) rnd;
             for (int i = 1; i < len - 1; i++) {
-                d[i] = d[i - 1] - rnd;
-                if (d[i] == len - i - 1) {
-                    if (codeElementMax <= d[i]) {
+                d -= rnd;
+                if (d == len - i - 1) {
+                    if (codeElementMax <= d) {
                         rnd = codeElementMin + random.nextInt(codeElementMax - codeElementMin + 1);
                     } else {
-                        if (codeElementMin <= d[i]) {
-                            rnd = codeElementMin + random.nextInt(d[i] - codeElementMin + 1);
+                        if (codeElementMin <= d) {
+                            rnd = codeElementMin + random.nextInt(d - codeElementMin + 1);
                         }
                         else rnd = 0;
                     }
                 }
                 else {
-                    if (codeElementMax <= d[i]) {
+                    if (codeElementMax <= d) {
                         if (random.nextInt(2) == 1)
                             rnd = codeElementMin + random.nextInt(codeElementMax - codeElementMin + 1);
                         else rnd = 0;
                     } else {
-                        if (codeElementMin <= d[i]) {
+                        if (codeElementMin <= d) {
                             if (random.nextInt(2) == 1) {
-                                rnd = codeElementMin + random.nextInt(d[i] - codeElementMin + 1);
+                                rnd = codeElementMin + random.nextInt(d - codeElementMin + 1);
                             } 
                             else rnd = 0;
                         }
                         else rnd = 0;
                     }
                 }
-                res.append(rnd);
+                code[off + i] = (byte) rnd;
             }
         }
 
-        return res.append("0").toString();
+        code[off + len - 1] = 0;
     }
 
     /**
@@ -152,60 +184,39 @@ public class LimitedTree extends ReadsTree {
     }
 
     /**
-     * A shorthand to set the limits at once.
-     * 
-     * Code elements are generally numbers from [0,9].
-     * After setting the limits newly generated trees will have code
-     * elements within [min_arity, max_arity].
-     * 
-     * @param min_arity Downer limit for the code elements of this tree.
-     * @param max_arity Upper limit for the code elements of this tree.
-     * @throws IllegalArgumentException
-     * 
-     * @see #setCodeElementMin(int)
-     * @see #setCodeElementMax(int)
+     * A shorthand to set the limits (of the default configuration) at once.
+     * @see GenetixConfig#setCodeElementLimits(int, int)
      */
     public static void setCodeElementLimits(int min_arity, int max_arity) {
-        if (max_arity < min_arity)
-            throw new IllegalArgumentException("max_arity < min_arity");
-        setCodeElementMin(min_arity);
-        setCodeElementMax(max_arity);
+        GenetixConfig.getDefault().setCodeElementLimits(min_arity, max_arity);
     }
 
     /**
-     * Sets the minimum allowed degree of elements in generated codes.
-     * @param min_arity
+     * @see GenetixConfig#setCodeElementMin(int)
      */
     public static void setCodeElementMin(int min_arity) {
-        if (min_arity < 0)
-            throw new IllegalArgumentException("min_arity < 0");
-        codeElementMin = min_arity;
+        GenetixConfig.getDefault().setCodeElementMin(min_arity);
     }
 
     /**
-     * @return The code element minimum.
-     * @see #setCodeElementMin(int)
+     * @see GenetixConfig#getCodeElementMin()
      */
     public static int getCodeElementMin() {
-        return codeElementMin;
+        return GenetixConfig.getDefault().getCodeElementMin();
     }
 
     /**
-     * Sets the maximum allowed degree of elements in generated codes.
-     * @param max_arity
+     * @see GenetixConfig#setCodeElementMax(int)
      */
     public static void setCodeElementMax(int max_arity) {
-        if (max_arity > 9)
-            throw new IllegalArgumentException("max_arity > 9");
-        codeElementMax = max_arity;
+        GenetixConfig.getDefault().setCodeElementMax(max_arity);
     }
 
     /**
-     * @return The code element maximum.
-     * @see #setCodeElementMax(int)
+     * @see GenetixConfig#getCodeElementMax()
      */
     public static int getCodeElementMax() {
-        return codeElementMax;
+        return GenetixConfig.getDefault().getCodeElementMax();
     }
     
     /**
@@ -213,10 +224,21 @@ public class LimitedTree extends ReadsTree {
      * @see org.kares.math.frec.core.ReadsTree#generateMutatedCode(int, int)
      */
     protected String generateMutatedCode(int pos, int mut_len) {
+        return generateMutatedCode(GenetixConfig.getDefault(), pos, mut_len);
+    }
+
+    /**
+     * @see org.kares.math.frec.core.ReadsTree#generateMutatedCode(MutationContext)
+     */
+    protected String generateMutatedCode(final MutationContext context) {
+        return generateMutatedCode(context.getConfig(), context.getIndex(), context.getLength());
+    }
+
+    private String generateMutatedCode(final GenetixConfig config, int pos, int mut_len) {
         final String code = getCode();
         final int pos_len = subcodeLength(pos);
         return code.substring(0, pos) +
-               LimitedTree.generateRandomCode(mut_len) +
+               LimitedTree.generateRandomCode(config, mut_len) +
                code.substring(pos + pos_len, code.length());
     }
 
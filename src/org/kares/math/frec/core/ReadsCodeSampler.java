@@ -0,0 +1,314 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.core;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Samples Read's codes uniformly - every valid code of a given length
+ * (with code elements from a given arity set) is equally likely.
+ * <p>
+ * The sampler is based on counting tables : the count of code suffixes 
+ * of a given length that complete a tree with a given number of open 
+ * (not yet attached) nodes. Codes are thus ranked (in lexicographic order)
+ * and a random rank is unranked into a code.
+ * The counts grow exponentially with the length thus they're kept as
+ * {@link BigInteger}s, the tables are computed (and grown) lazily and
+ * shared by all samplers of the same arity set. Counts that fit are 
+ * mirrored as <code>long</code>s, these are used for sampling (shorter)
+ * codes without any big integer arithmetic.
+ * <p>
+ * NOTE: Instances are thread-safe, the tables are replaced (never modified)
+ * as they grow thus they are read without locking.
+ *
+ * @see LimitedTree#generateRandomCode(GenetixConfig, byte[], int, int, Random)
+ * @author kares
+ */
+public final class ReadsCodeSampler {
+
+    private static final Map samplers = new HashMap();
+
+    /**
+     * @param arities The allowed (non-leaf) code elements - arities from [1,9].
+     * @return A sampler for the given arity set.
+     * @throws IllegalArgumentException if an arity is not valid
+     */
+    public static ReadsCodeSampler forArities(final int[] arities) {
+        int mask = 1; // 0 (leafs) always allowed
+        for (int i=0; i<arities.length; i++) {
+            if ( arities[i] < 1 || arities[i] > 9 ) {
+                throw new IllegalArgumentException("invalid arity: " + arities[i]);
+            }
+            mask |= 1 << arities[i];
+        }
+        return forMask(mask);
+    }
+
+    /**
+     * @param config
+     * @return A sampler for the code elements of the configuration - the 
+     * arities within the code element limits that have allowed functions.
+     */
+    public static ReadsCodeSampler forConfig(final GenetixConfig config) {
+        return config.codeSampler();
+    }
+
+    static ReadsCodeSampler forMask(final int mask) {
+        synchronized (samplers) {
+            final Integer key = Integer.valueOf(mask);
+            ReadsCodeSampler sampler = (ReadsCodeSampler) samplers.get(key);
+            if ( sampler == null ) {
+                sampler = new ReadsCodeSampler(mask);
+                samplers.put(key, sampler);
+            }
+            return sampler;
+        }
+    }
+
+    /**
+     * The counting tables (of a given length).
+     */
+    private static final class Tables {
+
+        /** counts[k][s] - suffixes of length k that complete s open nodes */
+        final BigInteger[][] counts;
+        /** counts as longs (Long.MAX_VALUE if a count does not fit) */
+        final long[][] longCounts;
+
+        Tables(final BigInteger[][] counts, final long[][] longCounts) {
+            this.counts = counts;
+            this.longCounts = longCounts;
+        }
+
+    }
+
+    /** the allowed code elements as a (bit) mask */
+    final int mask;
+    /** allowed code elements (ascending) including 0 */
+    private final int[] elements;
+    /** the current tables (replaced as they grow) */
+    private volatile Tables tables;
+
+    private ReadsCodeSampler(final int mask) {
+        this.mask = mask;
+        int size = 0;
+        for (int d=0; d<=9; d++) if ( (mask & (1 << d)) != 0 ) size++;
+        elements = new int[size];
+        size = 0;
+        for (int d=0; d<=9; d++) if ( (mask & (1 << d)) != 0 ) elements[size++] = d;
+        tables = new Tables(new BigInteger[][] { { BigInteger.ONE } }, new long[][] { { 1 } });
+    }
+
+    /**
+     * @return The allowed code elements (including 0).
+     */
+    public int[] getCodeElements() {
+        return elements.clone();
+    }
+
+    /**
+     * @param len
+     * @return The count of (valid) codes of the given length.
+     */
+    public BigInteger count(final int len) {
+        if ( len < 1 ) return BigInteger.ZERO;
+        return tables(len).counts[len][1];
+    }
+
+    /**
+     * @param len
+     * @return True if there is a (valid) code of the given length.
+     */
+    public boolean isPossible(final int len) {
+        return count(len).signum() > 0;
+    }
+
+    /**
+     * Generates a uniformly random code of the given length into the buffer
+     * (as code digits).
+     * @param code The buffer for the generated code.
+     * @param off The (buffer) offset of the code.
+     * @param len The code length.
+     * @param random
+     * @throws IllegalArgumentException if there's no code of the length
+     */
+    public void generateRandomCode(final byte[] code, final int off, final int len, 
+        final Random random) {
+        final BigInteger count = count(len);
+        if ( count.signum() == 0 ) {
+            throw new IllegalArgumentException("no code of length " + len);
+        }
+        final int bits = count.bitLength();
+        if ( bits < 63 ) {
+            final long longCount = count.longValue();
+            long rank;
+            do { rank = random.nextLong() >>> (64 - bits); } while ( rank >= longCount );
+            unrank(rank, code, off, len);
+            return;
+        }
+        BigInteger rank;
+        do { rank = new BigInteger(bits, random); } while ( rank.compareTo(count) >= 0 );
+        unrank(rank, code, off, len);
+    }
+
+    /**
+     * @param len
+     * @param random
+     * @return A uniformly random code of the given length.
+     * @see #generateRandomCode(byte[], int, int, Random)
+     */
+    public String generateRandomCode(final int len, final Random random) {
+        final byte[] code = ReadsTree.codeBuffer(len);
+        generateRandomCode(code, 0, len, random);
+        return ReadsTree.toCode(code, 0, len);
+    }
+
+    /**
+     * Computes the rank of the code - it's (0 based) index in the 
+     * lexicographically ordered codes of the same length.
+     * @param code The code digits.
+     * @param off
+     * @param len
+     * @return The rank of the code.
+     * @throws IllegalArgumentException if the code is not valid
+     */
+    public BigInteger rank(final byte[] code, final int off, final int len) {
+        final BigInteger[][] counts = tables(len).counts;
+        BigInteger rank = BigInteger.ZERO;
+        int open = 1;
+        for (int i=0; i<len; i++) {
+            final int k = len - i - 1; // the remaining suffix length
+            final int digit = code[off + i];
+            int j = 0;
+            for ( ; j < elements.length && elements[j] < digit; j++ ) {
+                final int next = open - 1 + elements[j];
+                if ( next <= k ) rank = rank.add( counts[k][next] );
+            }
+            if ( j == elements.length || elements[j] != digit ) {
+                throw new IllegalArgumentException("invalid code element: " + digit);
+            }
+            open += digit - 1;
+            if ( open > k || ( open == 0 && k > 0 ) ) {
+                throw new IllegalArgumentException("invalid code at " + i);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * @param code
+     * @return The rank of the given code.
+     * @see #rank(byte[], int, int)
+     */
+    public BigInteger rank(final ReadsTree code) {
+        return rank(code.getCodeDigits(), 0, code.length());
+    }
+
+    /**
+     * Writes the code of the given rank (into the buffer).
+     * @param rank From [0, count(len)).
+     * @param code The buffer for the code.
+     * @param off
+     * @param len
+     * @throws IllegalArgumentException if the rank is out of range
+     * @see #rank(byte[], int, int)
+     */
+    public void unrank(BigInteger rank, final byte[] code, final int off, final int len) {
+        final BigInteger[][] counts = tables(len).counts;
+        if ( rank.signum() < 0 || rank.compareTo(counts[len][1]) >= 0 ) {
+            throw new IllegalArgumentException("rank out of range: " + rank);
+        }
+        int open = 1;
+        for (int i=0; i<len; i++) {
+            final int k = len - i - 1; // the remaining suffix length
+            for (int j=0; j<elements.length; j++) {
+                final int next = open - 1 + elements[j];
+                if ( next > k ) break; // not possible (elements are ascending)
+                final BigInteger count = counts[k][next];
+                if ( rank.compareTo(count) < 0 ) {
+                    code[off + i] = (byte) elements[j];
+                    open = next;
+                    break;
+                }
+                rank = rank.subtract(count);
+            }
+        }
+    }
+
+    private void unrank(long rank, final byte[] code, final int off, final int len) {
+        final long[][] counts = tables(len).longCounts;
+        int open = 1;
+        for (int i=0; i<len; i++) {
+            final int k = len - i - 1;
+            for (int j=0; j<elements.length; j++) {
+                final int next = open - 1 + elements[j];
+                if ( next > k ) break;
+                final long count = counts[k][next];
+                if ( rank < count ) {
+                    code[off + i] = (byte) elements[j];
+                    open = next;
+                    break;
+                }
+                rank -= count;
+            }
+        }
+    }
+
+    /**
+     * @param len
+     * @return The counting tables with (at least) the given length.
+     */
+    private Tables tables(final int len) {
+        final Tables tables = this.tables;
+        if ( len < tables.counts.length ) return tables;
+        return grow(len);
+    }
+
+    private synchronized Tables grow(final int len) {
+        final BigInteger[][] counts = tables.counts;
+        if ( len < counts.length ) return tables; // grown meanwhile
+        final long[][] longCounts = tables.longCounts;
+        final BigInteger[][] table = new BigInteger[len + 1][];
+        System.arraycopy(counts, 0, table, 0, counts.length);
+        final long[][] longTable = new long[len + 1][];
+        System.arraycopy(longCounts, 0, longTable, 0, longCounts.length);
+        for (int k=counts.length; k<=len; k++) {
+            final BigInteger[] row = new BigInteger[k + 1];
+            row[0] = BigInteger.ZERO; // nothing open but code left
+            for (int s=1; s<=k; s++) {
+                BigInteger count = BigInteger.ZERO;
+                for (int j=0; j<elements.length; j++) {
+                    final int next = s - 1 + elements[j];
+                    if ( next > k - 1 ) break;
+                    count = count.add( table[k - 1][next] );
+                }
+                row[s] = count;
+            }
+            table[k] = row;
+            final long[] longRow = new long[k + 1];
+            for (int s=0; s<=k; s++) {
+                longRow[s] = row[s].bitLength() < 63 ? row[s].longValue() : Long.MAX_VALUE;
+            }
+            longTable[k] = longRow;
+        }
+        return tables = new Tables(table, longTable);
+    }
+
+}
@@ -38,8 +38,6 @@ import org.kares.math.frec.util.RandomHelper;
  */
 public class ReadsTree implements java.io.Serializable, Cloneable {
 
-    private static int maxRandomCodeLength = 10;
-
     /** Read's linear code as a string - sequence of 0-9 values. */
     private String code;
 
@@ -53,16 +51,30 @@ public class ReadsTree implements java.io.Serializable, Cloneable {
     public ReadsTree(final CharSequence code) {
         this.code = code.toString();
     }
+
+    /**
+     * Creates a new tree from the given code digits, the array is kept (not
+     * copied) as the {@link #getCodeDigits()} of this tree.
+     * @param codeDigits
+     */
+    ReadsTree(final byte[] codeDigits) {
+        this.code = toCode(codeDigits, 0, codeDigits.length);
+        this.codeDigits = codeDigits;
+    }
     
+    /**
+     * @see GenetixConfig#getMaxRandomCodeLength()
+     */
     public static int getMaxRandomCodeLength() {
-        return maxRandomCodeLength;
+        return GenetixConfig.getDefault().getMaxRandomCodeLength();
     }
 
+    /**
+     * Sets the maximal random code length of the default configuration.
+     * @see GenetixConfig#setMaxRandomCodeLength(int)
+     */
     public static void setMaxRandomCodeLength(int length) {
-        if (length < 2) {
-            throw new IllegalArgumentException("length should be >= 2 got: " + length);
-        }
-        maxRandomCodeLength = length;
+        GenetixConfig.getDefault().setMaxRandomCodeLength(length);
     }
 
     /**
@@ -88,7 +100,17 @@ public class ReadsTree implements java.io.Serializable, Cloneable {
      * @return random code length
      */
     protected static int randomCodeLength() {
-        return 2 + RandomHelper.randomInt(maxRandomCodeLength - 2 + 1);
+        return randomCodeLength(GenetixConfig.getDefault());
+    }
+
+    /**
+     * Return a random int - a valid Read's code length.
+     * @param config
+     * @see GenetixConfig#getMaxRandomCodeLength()
+     * @return random code length
+     */
+    protected static int randomCodeLength(final GenetixConfig config) {
+        return 2 + RandomHelper.randomInt(config.getMaxRandomCodeLength() - 2 + 1);
     }
 
     /**
@@ -100,27 +122,74 @@ public class ReadsTree implements java.io.Serializable, Cloneable {
     public static String generateRandomCode(int len) {
         if (len == 1) return "0";
         if (len == 2) return "10";
-        int[] d = new int[len - 1];
-        d[0] = len - 1;
+        final byte[] code = codeBuffer(len);
+        generateRandomCode(code, 0, len, RandomHelper.currentStream());
+        return toCode(code, 0, len);
+    }
 
-        Random random = RandomHelper.newRandom();
-        StringBuffer res = new StringBuffer(len);
+    /**
+     * Generates a random Read's code of the given length into the buffer
+     * (as code digits - same as {@link #getCodeDigits()}). 
+     * Nothing gets allocated thus a buffer might be reused for generating 
+     * many codes.
+     *
+     * @param code The buffer for the generated code.
+     * @param off The (buffer) offset of the code.
+     * @param len The length of the randomly generated tree code.
+     * @param random The random source e.g. {@link RandomHelper#currentStream()}.
+     */
+    public static void generateRandomCode(final byte[] code, final int off, 
+        final int len, final Random random) {
+        if (len == 1) {
+            code[off] = 0; return;
+        }
+        if (len == 2) {
+            code[off] = 1; code[off + 1] = 0; return;
+        }
+        int d = len - 1; // the count of nodes still to be attached
         
-        int rnd = 1 + random.nextInt(d[0]);
+        int rnd = 1 + random.nextInt(d);
         if (rnd > 9) rnd = 9;
-        res.append(rnd);
+        code[off] = (byte) rnd;
 
         for (int i = 1; i < len - 1; i++) {
-            d[i] = d[i - 1] - rnd;
-            if (d[i] == len - i - 1)
-                rnd = 1 + random.nextInt(d[i]);
+            d -= rnd;
+            if (d == len - i - 1)
+                rnd = 1 + random.nextInt(d);
             else
-                rnd = random.nextInt(d[i] + 1);
+                rnd = random.nextInt(d + 1);
             if (rnd > 9) rnd = 5 + random.nextInt(5);
-            res.append(rnd);
+            code[off + i] = (byte) rnd;
         }
 
-        return res.append("0").toString();
+        code[off + len - 1] = 0;
+    }
+
+    private static final ThreadLocal codeBuffers = new ThreadLocal();
+
+    /**
+     * @param len
+     * @return A (thread local) buffer of at least the given length.
+     */
+    static byte[] codeBuffer(final int len) {
+        byte[] buffer = (byte[]) codeBuffers.get();
+        if (buffer == null || buffer.length < len) {
+            buffer = new byte[Math.max(len, 64)];
+            codeBuffers.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * @param digits
+     * @param off
+     * @param len
+     * @return The code digits as a (Read's code) string.
+     */
+    static String toCode(final byte[] digits, final int off, final int len) {
+        final char[] chars = new char[len];
+        for (int i = 0; i < len; i++) chars[i] = (char) ('0' + digits[off + i]);
+        return new String(chars);
     }
 
     /**
@@ -278,10 +347,17 @@ public class ReadsTree implements java.io.Serializable, Cloneable {
      * @see MutationContext
      */
     public void mutateCode(final MutationContext context) {
-        final int pos = context.getIndex();
-        final int len = context.getLength();
-        //System.out.println("mutateCode pos = "+ pos +" len = " + len);
-        setCode(generateMutatedCode(pos, len));
+        //System.out.println("mutateCode pos = "+ context.getIndex() +" len = " + context.getLength());
+        setCode(generateMutatedCode(context));
+    }
+
+    /**
+     * Generated a mutated code for this tree.
+     * @param context
+     * @return Mutated code based on this tree's code.
+     */
+    protected String generateMutatedCode(final MutationContext context) {
+        return generateMutatedCode(context.getIndex(), context.getLength());
     }
 
     /**
@@ -305,9 +381,8 @@ public class ReadsTree implements java.io.Serializable, Cloneable {
         int mut_min_len = min_len - (len - pos_len); // <= mut_len
         if ( mut_min_len < 1 ) mut_min_len = 1;
         int mut_max_len = max_len - (len - pos_len); // >= mut_len
-        if ( mut_max_len <= 0 ) { //return -1;
-            throw new IllegalStateException("could not decide mutation length");
-        }
+        // the tree exceeds the limit (e.g. crossed arbitrarily) - shrink it :
+        if ( mut_max_len <= 0 ) return 1;
         return mut_min_len + RandomHelper.randomInt(mut_max_len);
     }
 
@@ -402,7 +477,7 @@ public class ReadsTree implements java.io.Serializable, Cloneable {
             // no luck thus collect all valid posibilities :
             ArrayList validContexts = new ArrayList();
             for (int i1=1; i1<len1; i1++) {
-                for (int i2=1; i1<len2; i2++) {
+                for (int i2=1; i2<len2; i2++) {
                     pos1 = i1; pos1_len = this.subcodeLength(pos1);
                     pos2 = i2; pos2_len = that.subcodeLength(pos2);
                     if ( (len1 - pos1_len + pos2_len >= min_len)
@@ -448,14 +523,32 @@ public class ReadsTree implements java.io.Serializable, Cloneable {
 
         int index, length;
 
+        private final GenetixConfig config;
+
         MutationContext(ReadsTree target) {
-            this.target = target;
+            this(target, 0, 0);
         }
 
         public MutationContext(ReadsTree target, int index, int length) {
+            this(target, index, length, null);
+        }
+
+        /**
+         * @param target
+         * @param index
+         * @param length
+         * @param config The configuration the mutated subtree is generated
+         * with (the default one if null).
+         */
+        public MutationContext(ReadsTree target, int index, int length, GenetixConfig config) {
             this.target = target;
             this.index = index;
             this.length = length;
+            this.config = config;
+        }
+
+        public GenetixConfig getConfig() {
+            return config == null ? GenetixConfig.getDefault() : config;
         }
 
         public ReadsTree getTarget() {
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.core;
+
+/**
+ * Training data that keeps arriving while {@link Genetix} computes.
+ * Points are appended (from any thread) and only the most recent ones
+ * form the approximated data "window". The window is either a sliding
+ * window (all points have the same weight) or the points are weighted
+ * with an exponential decay (older points matter less).
+ * <p>
+ * Points that fall out of the window are retained for a while (the
+ * buffer is twice the window size), this allows {@link Genetix} to
+ * update the fitness values incrementally - the errors on evicted points
+ * are subtracted and the errors on new points are added.
+ *
+ * @see Genetix#setApproximatingData(StreamingData)
+ * @author kares
+ */
+public class StreamingData {
+
+    private final int window;
+    private final double decay;
+
+    /** Ring buffers holding the retained points. */
+    private final double[] bufferX, bufferY;
+
+    /** How many points have been appended so far. */
+    private long sequence = 0;
+
+    /**
+     * @param window The (maximal) number of points in the window.
+     * @param decay The weight decay factor per point (age), 1.0 for no decay.
+     */
+    public StreamingData(final int window, final double decay) {
+        if ( window <= 0 ) {
+            throw new IllegalArgumentException("window <= 0 : " + window);
+        }
+        if ( decay <= 0 || decay > 1 ) {
+            throw new IllegalArgumentException("decay not in (0, 1] : " + decay);
+        }
+        this.window = window;
+        this.decay = decay;
+        this.bufferX = new double[2 * window];
+        this.bufferY = new double[2 * window];
+    }
+
+    /**
+     * Data with a sliding window - only the last <code>size</code> points
+     * are approximated.
+     * @param size
+     * @return streaming data
+     */
+    public static StreamingData slidingWindow(final int size) {
+        return new StreamingData(size, 1.0);
+    }
+
+    /**
+     * Data with exponentially decaying point weights, the newest point has
+     * a weight of 1, the one before <code>decay</code>, than
+     * <code>decay^2</code> etc. At most <code>size</code> points are kept.
+     * @param decay
+     * @param size
+     * @return streaming data
+     */
+    public static StreamingData exponentialDecay(final double decay, final int size) {
+        return new StreamingData(size, decay);
+    }
+
+    /**
+     * @return The maximal number of points in the window.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return The decay factor (1.0 if there is no decay).
+     */
+    public double getDecay() {
+        return decay;
+    }
+
+    /**
+     * @return The number of points appended so far.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Appends a new data point.
+     * @param x
+     * @param y
+     */
+    public synchronized void append(final double x, final double y) {
+        final int i = (int) (sequence % bufferX.length);
+        bufferX[i] = x;
+        bufferY[i] = y;
+        sequence++;
+    }
+
+    /**
+     * Appends new data points.
+     * @param x
+     * @param y
+     */
+    public synchronized void append(final double[] x, final double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(
+                    "x.length (" + x.length + ") != " +
+                    "y.length (" + y.length + ")");
+        }
+        for (int i=0; i<x.length; i++) append(x[i], y[i]);
+    }
+
+    /**
+     * @param sequence
+     * @return The sequence of the first point of the window
+     * (when the given number of points has been appended).
+     */
+    long windowStart(final long sequence) {
+        return sequence > window ? sequence - window : 0;
+    }
+
+    /**
+     * @param age The age of a point (0 for the newest point).
+     * @return The weight of a point.
+     */
+    double weight(final long age) {
+        return decay == 1.0 ? 1.0 : Math.pow(decay, age);
+    }
+
+    /**
+     * Copies all the retained data points into a (linear) snapshot.
+     * @param snapshot a previous snapshot to reuse (might be null)
+     * @return the snapshot
+     */
+    synchronized Snapshot snapshot(Snapshot snapshot) {
+        final int capacity = bufferX.length;
+        final int size = (int) Math.min(sequence, capacity);
+        if ( snapshot == null ) snapshot = new Snapshot(capacity);
+        snapshot.base = sequence - size;
+        snapshot.sequence = sequence;
+        for (int i=0; i<size; i++) {
+            final int j = (int) ((snapshot.base + i) % capacity);
+            snapshot.x[i] = bufferX[j];
+            snapshot.y[i] = bufferY[j];
+        }
+        return snapshot;
+    }
+
+    /**
+     * A linear copy of the retained data points.
+     */
+    static class Snapshot {
+
+        final double[] x, y;
+        /** The sequence of the first point (at index 0). */
+        long base;
+        /** The sequence after the last point. */
+        long sequence;
+
+        Snapshot(final int capacity) {
+            x = new double[capacity];
+            y = new double[capacity];
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.core;
+
+/**
+ * Training (approximated) data that is not (necessarily) kept in
+ * memory as arrays - e.g. data memory-mapped from a file.
+ * {@link Genetix} reads such data in blocks of points, the data
+ * is never copied to the heap as a whole.
+ * <p>
+ * NOTE: Implementations are expected to be safe for concurrent reads.
+ *
+ * @see Genetix#setApproximatingData(TrainingData)
+ * @author kares
+ */
+public interface TrainingData {
+
+    /**
+     * @return The number of data points.
+     */
+    public int size() ;
+
+    /**
+     * @return True if the data points have weights.
+     */
+    public boolean isWeighted() ;
+
+    /**
+     * Reads a block of data points.
+     * @param from The index of the first point to read.
+     * @param x The x values target.
+     * @param y The f(x) values target.
+     * @param w The weights target (ignored if not weighted).
+     * @param off The (target) array offset.
+     * @param len How many points to read.
+     */
+    public void read(int from, double[] x, double[] y, double[] w, int off, int len) ;
+
+    /**
+     * Reads the selected data points.
+     * @param points The indexes of the points.
+     * @param from The position in points to start at.
+     * @param x The x values target.
+     * @param y The f(x) values target.
+     * @param w The weights target (ignored if not weighted).
+     * @param off The (target) array offset.
+     * @param len How many points to read.
+     */
+    public void read(int[] points, int from, double[] x, double[] y, double[] w, int off, int len) ;
+
+}
@@ -22,19 +22,29 @@ import java.awt.Insets;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.Executor;
 import javax.swing.*;
 
 import org.kares.math.frec.core.*;
 
 /**
  * A progress indicator panel to be shown while computing.
+ * The progress is updated on every generation (the panel listens
+ * to the computation).
  * 
  * @author kares
  */
 public class GenetixProgress extends JPanel {
 	
-    private final static int CHECK_TIME = 500;
-    
+    /** delivers notifications on the event dispatch thread */
+    private static final Executor swingExecutor = new Executor() {
+
+        public void execute(final Runnable task) {
+            SwingUtilities.invokeLater(task);
+        }
+
+    };
+
     private final int maxProgress;
     private final JProgressBar progressBar;
     private final JTextArea outputArea;
@@ -92,10 +102,10 @@ public class GenetixProgress extends JPanel {
 
     /**
      * Update the progress.
-     * @param genetix The computation actually happening.
+     * @param snapshot The last computed generation.
      */
-    private void updateProgress(final Genetix genetix) {
-        int counter = genetix.getGenerationCounter();
+    private void updateProgress(final GenerationSnapshot snapshot) {
+        int counter = snapshot.getGeneration();
         progressBar.setValue(counter);
         if (progressBar.isIndeterminate()) {
             progressBar.setIndeterminate(false);
@@ -104,7 +114,7 @@ public class GenetixProgress extends JPanel {
         
         outputArea.append("Generation: " + counter + " of " + maxProgress + "\n");
         //outputArea.append("Functions created: " + genetix.getFunctionsCreated() + "\n");
-        outputArea.append("Best fitness: " + genetix.getBestFitness() + "\n");
+        outputArea.append("Best fitness: " + snapshot.getBestFitness() + "\n");
 
         counter = outputArea.getDocument().getLength();
         outputArea.setCaretPosition(counter);
@@ -112,21 +122,19 @@ public class GenetixProgress extends JPanel {
 
     /**
      * Finish the progress.
-     * @param genetix The finished task.
+     * @param snapshot The last generation of the finished task.
      */
-    public void finishProgress(final Genetix genetix) {
-        updateProgress(genetix);
+    public void finishProgress(final GenerationSnapshot snapshot) {
+        updateProgress(snapshot);
         Toolkit.getDefaultToolkit().beep();
         //progressBar.setValue(progressBar.getMinimum());
         progressBar.setString(""); // hide % string
     }
 
     private void cancel() {
-        if (timer != null) timer.stop();
         if (worker != null) worker.interrupt();
     }
 
-    private Timer timer;
     private SwingWorker worker;
 
     /**
@@ -134,13 +142,15 @@ public class GenetixProgress extends JPanel {
      * @param genetix The task to monitor for progress.
      */
     public void start(final Genetix genetix) {
-        timer = new Timer(CHECK_TIME, new ActionListener() {
-        	
-            public void actionPerformed(ActionEvent e) {
-                updateProgress(genetix);
+        final GenerationListener listener = new GenerationListener() {
+
+            public void onGeneration(GenerationSnapshot snapshot) {
+                if ( snapshot.isFinished() ) finishProgress(snapshot);
+                else updateProgress(snapshot);
             }
-            
-        });
+
+        };
+        genetix.addGenerationListener(listener, swingExecutor);
         worker = new SwingWorker() {
         	
             public Object work() {
@@ -154,12 +164,10 @@ public class GenetixProgress extends JPanel {
             }
 
             public void finished() {
-                timer.stop();
-                finishProgress(genetix);
+                genetix.removeGenerationListener(listener);
             }
 
         };
-        timer.start();
         worker.start();
     }
     
@@ -34,8 +34,11 @@ import java.util.Map;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 
+import org.kares.math.frec.core.FitnessMetric;
+import org.kares.math.frec.core.FitnessMetrics;
 import org.kares.math.frec.core.GPModelGenetix;
 import org.kares.math.frec.core.Genetix;
+import org.kares.math.frec.core.GenetixConfig;
 
 /**
  * A settings panel for configuring parameters of the computation.
@@ -47,16 +50,20 @@ public class GenetixSettings extends JPanel {
     private JLabel
         genSizeLabel, genMaxLabel, mutationProbabilityLabel, crossingProbabilityLabel,
         minFunctionLengthLabel, maxFunctionLengthLabel,
-        reproductionProbabilityLabel, selectionProbabilityLabel, dataSizeLabel;
+        reproductionProbabilityLabel, selectionProbabilityLabel, dataSizeLabel,
+        fitnessTargetLabel, stallLimitLabel, minImprovementLabel, timeLimitLabel;
     
     private JTextField
         genSize, genMax, mutationProbability, crossingProbability,
         minFunctionLength, maxFunctionLength,
-        reproductionProbability, selectionProbability, dataSize;
+        reproductionProbability, selectionProbability, dataSize,
+        fitnessTarget, stallLimit, minImprovement, timeLimit;
     
-    private JCheckBox arbitraryMutations, arbitraryCrossings;
+    private JCheckBox arbitraryMutations, arbitraryCrossings, adaptiveProbabilities;
     private JComboBox modelNameCombo;
     private String selectedModelName;
+    private JComboBox fitnessMetricCombo;
+    private JComboBox codeSamplingCombo;
     
     private ActionListener readyListener = null;
     private ActionListener cancelListener = null;
@@ -75,9 +82,14 @@ public class GenetixSettings extends JPanel {
         crossingProbabilityLabel = new JLabel(" Crossing  probab.  ");
         reproductionProbabilityLabel = new JLabel(" Reproduct probab.");
         selectionProbabilityLabel = new JLabel(" Selection  probab. ");
+        fitnessTargetLabel = new JLabel(" Target fitness       ");
+        stallLimitLabel = new JLabel(" Stall generations  ");
+        minImprovementLabel = new JLabel(" Min improvement   ");
+        timeLimitLabel = new JLabel(" Time limit [s]        ");
 
         arbitraryMutations   = new JCheckBox(" Use arbitrary mutations ");
         arbitraryCrossings = new JCheckBox(" Use arbitrary crossings  ");
+        adaptiveProbabilities = new JCheckBox(" Adapt the probabilities  ");
 
         EmptyBorder border = new EmptyBorder(5,0,5,2);
 
@@ -90,6 +102,10 @@ public class GenetixSettings extends JPanel {
         crossingProbabilityLabel.setBorder(border);
         reproductionProbabilityLabel.setBorder(border);
         selectionProbabilityLabel.setBorder(border);
+        fitnessTargetLabel.setBorder(border);
+        stallLimitLabel.setBorder(border);
+        minImprovementLabel.setBorder(border);
+        timeLimitLabel.setBorder(border);
 
         dataSize = new JTextField("", 8);
         genSize = new JTextField("", 8);
@@ -100,6 +116,14 @@ public class GenetixSettings extends JPanel {
         crossingProbability = new JTextField("", 8);
         reproductionProbability = new JTextField("", 8);
         selectionProbability = new JTextField("", 8);
+        fitnessTarget = new JTextField("", 8);
+        stallLimit = new JTextField("", 8);
+        minImprovement = new JTextField("", 8);
+        timeLimit = new JTextField("", 8);
+        fitnessTarget.setToolTipText("stop once the best fitness is <= target (optional)");
+        stallLimit.setToolTipText("stop if not improved for this many generations (optional)");
+        minImprovement.setToolTipText("relative improvement that resets the stall count (optional)");
+        timeLimit.setToolTipText("stop after this many seconds (optional)");
 
         final JButton okay = new JButton("   OK   ");
         okay.addActionListener(new ActionListener() {
@@ -186,6 +210,31 @@ public class GenetixSettings extends JPanel {
         gridLayout.setConstraints(reproductionProbability, gridSetup);
         panel.add(reproductionProbability);
 
+        gridSetup.gridwidth = GridBagConstraints.RELATIVE;
+        gridLayout.setConstraints(fitnessTargetLabel, gridSetup);
+        panel.add(fitnessTargetLabel);
+     	gridSetup.gridwidth = GridBagConstraints.REMAINDER; //end row
+        gridLayout.setConstraints(fitnessTarget, gridSetup);
+        panel.add(fitnessTarget);
+        gridSetup.gridwidth = GridBagConstraints.RELATIVE;
+        gridLayout.setConstraints(stallLimitLabel, gridSetup);
+        panel.add(stallLimitLabel);
+     	gridSetup.gridwidth = GridBagConstraints.REMAINDER; //end row
+        gridLayout.setConstraints(stallLimit, gridSetup);
+        panel.add(stallLimit);
+        gridSetup.gridwidth = GridBagConstraints.RELATIVE;
+        gridLayout.setConstraints(minImprovementLabel, gridSetup);
+        panel.add(minImprovementLabel);
+     	gridSetup.gridwidth = GridBagConstraints.REMAINDER; //end row
+        gridLayout.setConstraints(minImprovement, gridSetup);
+        panel.add(minImprovement);
+        gridSetup.gridwidth = GridBagConstraints.RELATIVE;
+        gridLayout.setConstraints(timeLimitLabel, gridSetup);
+        panel.add(timeLimitLabel);
+     	gridSetup.gridwidth = GridBagConstraints.REMAINDER; //end row
+        gridLayout.setConstraints(timeLimit, gridSetup);
+        panel.add(timeLimit);
+
         Panel p1 = new Panel();
         p1.add(new JLabel());
      	gridSetup.gridwidth = GridBagConstraints.REMAINDER; //end row
@@ -204,6 +253,12 @@ public class GenetixSettings extends JPanel {
         gridLayout.setConstraints(p3, gridSetup);
         panel.add(p3);
 
+        Panel p9 = new Panel();
+        p9.add(adaptiveProbabilities, BorderLayout.CENTER);
+     	gridSetup.gridwidth = GridBagConstraints.REMAINDER; //end row
+        gridLayout.setConstraints(p9, gridSetup);
+        panel.add(p9);
+
         modelNameCombo = new JComboBox(getGenetixClassNames());
         modelNameCombo.setBackground(Color.WHITE);
 
@@ -214,6 +269,26 @@ public class GenetixSettings extends JPanel {
         gridLayout.setConstraints(p4, gridSetup);
         panel.add(p4);
 
+        fitnessMetricCombo = new JComboBox(getFitnessMetricNames());
+        fitnessMetricCombo.setBackground(Color.WHITE);
+
+        Panel p8 = new Panel(new FlowLayout());
+        p8.add(new JLabel(" Fitness :    "));
+        p8.add(fitnessMetricCombo);
+     	gridSetup.gridwidth = GridBagConstraints.REMAINDER; //end row
+        gridLayout.setConstraints(p8, gridSetup);
+        panel.add(p8);
+
+        codeSamplingCombo = new JComboBox(CODE_SAMPLINGS);
+        codeSamplingCombo.setBackground(Color.WHITE);
+
+        Panel p10 = new Panel(new FlowLayout());
+        p10.add(new JLabel(" Trees :      "));
+        p10.add(codeSamplingCombo);
+     	gridSetup.gridwidth = GridBagConstraints.REMAINDER; //end row
+        gridLayout.setConstraints(p10, gridSetup);
+        panel.add(p10);
+
         selectedModelName = (String) modelNameCombo.getSelectedItem();
         modelNameCombo.addItemListener(new ItemListener() {
 
@@ -412,9 +487,33 @@ public class GenetixSettings extends JPanel {
             }
         }
 
+        // stop criteria are optional (empty means none) :
+        if ( ! validateOptional(fitnessTarget, false) ) valid = false;
+        if ( ! validateOptional(stallLimit, true) ) valid = false;
+        if ( ! validateOptional(minImprovement, false) ) valid = false;
+        if ( ! validateOptional(timeLimit, false) ) valid = false;
+
         return valid;
     }
 
+    private static boolean validateOptional(final JTextField field, final boolean integer) {
+        final String text = field.getText();
+        if ( text == null || text.trim().length() == 0 ) return true;
+        try {
+            final double value = integer ? Integer.parseInt(text.trim()) : Double.parseDouble(text);
+            if ( value >= 0 ) return true;
+        }
+        catch (NumberFormatException e) { /* invalid */ }
+        field.setBackground(Color.RED);
+        return false;
+    }
+
+    private static String optionalText(final JTextField field) {
+        final String text = field.getText();
+        if ( text == null || text.trim().length() == 0 ) return null;
+        return text.trim();
+    }
+
     /**
      * @return The data size settings value.
      */
@@ -552,6 +651,70 @@ public class GenetixSettings extends JPanel {
         }
     }
 
+    /**
+     * @return The target fitness (a negative value if not set).
+     */
+    public double getFitnessTarget() {
+        final String text = optionalText(fitnessTarget);
+        return text == null ? -1 : Double.parseDouble(text);
+    }
+
+    /**
+     * @param target The target fitness, a negative value means none.
+     */
+    public void setFitnessTarget(double target) {
+        this.fitnessTarget.setText(target < 0 ? "" : Double.toString(target));
+    }
+
+    /**
+     * @return The number of generations without improvement to stop
+     * after (0 if not set).
+     */
+    public int getStallLimit() {
+        final String text = optionalText(stallLimit);
+        return text == null ? 0 : Integer.parseInt(text);
+    }
+
+    /**
+     * @param generations 0 means none
+     */
+    public void setStallLimit(int generations) {
+        if (generations < 0) throw new IllegalArgumentException("< 0");
+        this.stallLimit.setText(generations == 0 ? "" : Integer.toString(generations));
+    }
+
+    /**
+     * @return The minimal relative improvement (0 if not set).
+     */
+    public double getMinImprovement() {
+        final String text = optionalText(minImprovement);
+        return text == null ? 0 : Double.parseDouble(text);
+    }
+
+    /**
+     * @param improvement 0 means any improvement
+     */
+    public void setMinImprovement(double improvement) {
+        if (improvement < 0) throw new IllegalArgumentException("< 0");
+        this.minImprovement.setText(improvement == 0 ? "" : Double.toString(improvement));
+    }
+
+    /**
+     * @return The time limit in milliseconds (0 if not set).
+     */
+    public long getTimeLimit() {
+        final String text = optionalText(timeLimit);
+        return text == null ? 0 : (long) (Double.parseDouble(text) * 1000);
+    }
+
+    /**
+     * @param millis The time limit in milliseconds, 0 means none.
+     */
+    public void setTimeLimit(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("< 0");
+        this.timeLimit.setText(millis == 0 ? "" : Double.toString(millis / 1000.0));
+    }
+
     /**
      * @return True if arbitrary mutations were selected.
      */
@@ -580,6 +743,20 @@ public class GenetixSettings extends JPanel {
         arbitraryCrossings.setSelected(flag);
     }
 
+    /**
+     * @return True if the probabilities should adapt while computing.
+     */
+    public boolean isAdaptiveProbabilities() {
+        return adaptiveProbabilities.isSelected();
+    }
+
+    /**
+     * @param flag
+     */
+    public void setAdaptiveProbabilities(boolean flag) {
+        adaptiveProbabilities.setSelected(flag);
+    }
+
     /**
      * @return The minimum function length limit.
      */
@@ -640,6 +817,47 @@ public class GenetixSettings extends JPanel {
         return (String[]) names.toArray(new String[names.size()]);
     }
 
+    /**
+     * @return The selected fitness metric.
+     */
+    public FitnessMetric getSelectedFitnessMetric() {
+        return (FitnessMetric) fitnessMetrics.get(fitnessMetricCombo.getSelectedItem());
+    }
+
+    /**
+     * @param metric
+     */
+    public void setSelectedFitnessMetric(FitnessMetric metric) {
+        fitnessMetricCombo.setSelectedItem(metric.getName());
+    }
+
+    /** indexed by the <code>GenetixConfig.SAMPLING_</code> constants */
+    private static final String[] CODE_SAMPLINGS = new String[] {
+        "Read's codes", "Uniform", "Uniform (ramped)"
+    };
+
+    /**
+     * @return How random trees are generated.
+     * @see GenetixConfig#getCodeSampling()
+     */
+    public int getCodeSampling() {
+        return codeSamplingCombo.getSelectedIndex();
+    }
+
+    /**
+     * @param sampling
+     */
+    public void setCodeSampling(int sampling) {
+        codeSamplingCombo.setSelectedIndex(sampling);
+    }
+
+    private static Map fitnessMetrics = FitnessMetrics.getMetrics();
+
+    private String[] getFitnessMetricNames() {
+        Collection names = fitnessMetrics.keySet();
+        return (String[]) names.toArray(new String[names.size()]);
+    }
+
     /**
      * Set a listener to invoke when the UI is ready (confirmed). 
      * @param cancelListener
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.kares.math.frec.core.TrainingData;
+
+/**
+ * Class <code>DataFile</code> is a binary (columnar) training data file.
+ * The file is memory-mapped, the data is never read onto the heap as a
+ * whole, thus data sets larger than the heap might be used and opening
+ * a file is "instant" (no parsing).
+ * <p>
+ * File layout (all values little-endian) :
+ * <pre>
+ *  0 : int    magic "FRDS"
+ *  4 : int    version (1)
+ *  8 : int    flags (1 = has weights)
+ * 12 : int    header size (64)
+ * 16 : long   number of points (n)
+ * 24 : long   CRC32 checksum of the columns
+ * 32 : ...    reserved (zeros)
+ * 64 : double[n] x column
+ *    : double[n] y column
+ *    : double[n] weights column (optional)
+ * </pre>
+ */
+public class DataFile implements TrainingData {
+
+    public static final int MAGIC = 0x46524453; // "FRDS"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+
+    public static final String defaultFileExtension = ".frds";
+
+    private static final int FLAG_WEIGHTS = 1;
+
+    /** Points per mapped buffer (a buffer is limited to 2GB). */
+    private static final int CHUNK_SHIFT = 27;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int size;
+    private final long checksum;
+    private final DoubleBuffer[] x, y, w;
+    /** The mapped chunks (all columns) in file order. */
+    private final ByteBuffer[] mapped;
+
+    private DataFile(int size, long checksum, ByteBuffer[] mapped, boolean weighted) {
+        this.size = size;
+        this.checksum = checksum;
+        this.mapped = mapped;
+        final int chunks = mapped.length / (weighted ? 3 : 2);
+        this.x = doubles(mapped, 0, chunks);
+        this.y = doubles(mapped, chunks, chunks);
+        this.w = weighted ? doubles(mapped, 2 * chunks, chunks) : null;
+    }
+
+    private static DoubleBuffer[] doubles(final ByteBuffer[] mapped, final int off, final int len) {
+        final DoubleBuffer[] buffers = new DoubleBuffer[len];
+        for (int i=0; i<len; i++) buffers[i] = mapped[off + i].asDoubleBuffer();
+        return buffers;
+    }
+
+    /**
+     * Opens (maps) a data file.
+     * NOTE: The checksum is not verified (use {@link #verify()}).
+     * @param file
+     * @return the data file
+     */
+    public static DataFile open(final File file) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            while ( header.hasRemaining() ) {
+                if ( channel.read(header) < 0 ) {
+                    throw new IllegalArgumentException("not a data file (truncated header): " + file);
+                }
+            }
+            header.flip();
+            if ( header.getInt(0) != MAGIC ) {
+                throw new IllegalArgumentException("not a data file (bad magic): " + file);
+            }
+            if ( header.getInt(4) != VERSION ) {
+                throw new IllegalArgumentException("unsupported data file version: " + header.getInt(4));
+            }
+            final boolean weighted = (header.getInt(8) & FLAG_WEIGHTS) != 0;
+            final long offset = header.getInt(12);
+            final long count = header.getLong(16);
+            if ( count < 0 || count > Integer.MAX_VALUE ) {
+                throw new IllegalArgumentException("invalid data size: " + count);
+            }
+            final int size = (int) count;
+            final long columns = weighted ? 3 : 2;
+            if ( channel.size() < offset + columns * 8 * count ) {
+                throw new IllegalArgumentException("data file truncated: " + file);
+            }
+            final int chunks = (size + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+            final ByteBuffer[] mapped = new ByteBuffer[(int) columns * chunks];
+            for (int c=0; c<columns; c++) {
+                map(channel, offset + c * 8L * size, size, mapped, c * chunks);
+            }
+            return new DataFile(size, header.getLong(24), mapped, weighted);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            close(channel); // the mappings remain valid
+        }
+    }
+
+    private static void map(final FileChannel channel, final long offset, final int size,
+        final ByteBuffer[] mapped, final int index) throws IOException {
+        final int chunks = (size + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        for (int i=0; i<chunks; i++) {
+            final long beg = (long) i << CHUNK_SHIFT;
+            final long len = Math.min(CHUNK_SIZE, size - beg);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset + 8 * beg, 8 * len);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            mapped[index + i] = buffer;
+        }
+    }
+
+    /**
+     * Writes a data file.
+     * @param file
+     * @param x The x values.
+     * @param y The f(x) values.
+     * @param w The weights (might be null).
+     */
+    public static void write(final File file, final double[] x, final double[] y, final double[] w) {
+        if ( x.length != y.length || ( w != null && w.length != x.length ) ) {
+            throw new IllegalArgumentException("column lengths differ");
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_SIZE);
+            final CRC32 crc = new CRC32();
+            writeColumn(channel, buffer, crc, x);
+            writeColumn(channel, buffer, crc, y);
+            if ( w != null ) writeColumn(channel, buffer, crc, w);
+
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(VERSION);
+            buffer.putInt(w != null ? FLAG_WEIGHTS : 0).putInt(HEADER_SIZE);
+            buffer.putLong(x.length).putLong(crc.getValue());
+            while ( buffer.position() < HEADER_SIZE ) buffer.put((byte) 0);
+            buffer.flip();
+            channel.position(0);
+            while ( buffer.hasRemaining() ) channel.write(buffer);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            close(channel);
+        }
+    }
+
+    private static void writeColumn(final FileChannel channel, final ByteBuffer buffer,
+        final CRC32 crc, final double[] values) throws IOException {
+        buffer.clear();
+        for (int i=0; i<values.length; i++) {
+            if ( buffer.remaining() < 8 ) flush(channel, buffer, crc);
+            buffer.putDouble(values[i]);
+        }
+        flush(channel, buffer, crc);
+    }
+
+    private static void flush(final FileChannel channel, final ByteBuffer buffer,
+        final CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while ( buffer.hasRemaining() ) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static void close(final FileChannel channel) {
+        if ( channel == null ) return;
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Verifies the checksum of the (mapped) data.
+     * NOTE: This reads the whole file !
+     * @return True if the data matches the checksum.
+     */
+    public boolean verify() {
+        final CRC32 crc = new CRC32();
+        for (int i=0; i<mapped.length; i++) crc.update(mapped[i].duplicate());
+        return crc.getValue() == checksum;
+    }
+
+    /**
+     * @return The stored checksum.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @see TrainingData#size()
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @see TrainingData#isWeighted()
+     */
+    public boolean isWeighted() {
+        return w != null;
+    }
+
+    /**
+     * @see TrainingData#read(int, double[], double[], double[], int, int)
+     */
+    public void read(int from, final double[] x, final double[] y, final double[] w, int off, int len) {
+        while ( len > 0 ) {
+            final int chunk = from >>> CHUNK_SHIFT;
+            final int pos = from & CHUNK_MASK;
+            final int n = Math.min(len, CHUNK_SIZE - pos);
+            this.x[chunk].get(pos, x, off, n);
+            this.y[chunk].get(pos, y, off, n);
+            if ( this.w != null ) this.w[chunk].get(pos, w, off, n);
+            from += n; off += n; len -= n;
+        }
+    }
+
+    /**
+     * @see TrainingData#read(int[], int, double[], double[], double[], int, int)
+     */
+    public void read(final int[] points, final int from,
+        final double[] x, final double[] y, final double[] w, final int off, final int len) {
+        final DoubleBuffer[] _x = this.x, _y = this.y, _w = this.w;
+        for (int i=0; i<len; i++) {
+            final int p = points[from + i];
+            final int chunk = p >>> CHUNK_SHIFT;
+            final int pos = p & CHUNK_MASK;
+            x[off + i] = _x[chunk].get(pos);
+            y[off + i] = _y[chunk].get(pos);
+            if ( _w != null ) w[off + i] = _w[chunk].get(pos);
+        }
+    }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.util;
+
+/**
+ * Class <code>DataReducer</code> compresses (dense) training data into
+ * fewer weighted points before the computation, the fitness computation
+ * time is proportional to the number of data points.
+ * <p>
+ * The reduction works in two steps :
+ * <ul>
+ * <li> points with the same x (closer than the x resolution) are binned
+ *      into a single point (the weighted mean) with the summed weight
+ * <li> the data (sorted by x) is simplified as a polyline using the
+ *      Douglas-Peucker algorithm - points that are (vertically) closer than
+ *      the tolerance to the line between the kept points are removed,
+ *      a removed point's weight is split between the two neighbouring kept
+ *      points (linearly, based on the x distance)
+ * </ul>
+ * The total weight (of all points) is preserved, the weighted points should
+ * be set using {@link org.kares.math.frec.core.Genetix#setApproximatingData(double[], double[], double[])}
+ * (all fitness metrics take the weights into account).
+ *
+ * @author kares
+ */
+public class DataReducer {
+
+    private double tolerance;
+    private double resolution = 0;
+
+    /**
+     * @param tolerance The maximal (vertical) distance of a removed point
+     * from the simplified data.
+     */
+    public DataReducer(final double tolerance) {
+        setTolerance(tolerance);
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * @param tolerance The maximal (vertical) distance of a removed point
+     * from the simplified data (0 keeps all points that are not collinear).
+     */
+    public void setTolerance(double tolerance) {
+        if ( tolerance < 0 ) {
+            throw new IllegalArgumentException("tolerance < 0 : " + tolerance);
+        }
+        this.tolerance = tolerance;
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @param resolution The x resolution - points with x values that differ
+     * by no more than the resolution are binned together (0 by default, only
+     * points with the same x value are binned).
+     */
+    public void setResolution(double resolution) {
+        if ( resolution < 0 ) {
+            throw new IllegalArgumentException("resolution < 0 : " + resolution);
+        }
+        this.resolution = resolution;
+    }
+
+    /**
+     * @see #reduce(double[], double[], double[])
+     */
+    public Reduced reduce(final double[] x, final double[] y) {
+        return reduce(x, y, null);
+    }
+
+    /**
+     * @see #reduce(double[], double[], double[])
+     */
+    public Reduced reduce(final float[] x, final float[] y) {
+        final double[] _x = new double[x.length];
+        final double[] _y = new double[y.length];
+        for (int i=0; i<x.length; i++) _x[i] = x[i];
+        for (int i=0; i<y.length; i++) _y[i] = y[i];
+        return reduce(_x, _y, null);
+    }
+
+    /**
+     * Reduces the data.
+     * @param x The x values.
+     * @param y The f(x) values.
+     * @param w The weights (might be null).
+     * @return The reduced (weighted) data sorted by x.
+     * @throws IllegalArgumentException if the lengths differ or an x value
+     * is not finite (NaN or infinite)
+     */
+    public Reduced reduce(final double[] x, final double[] y, final double[] w) {
+        if ( x.length != y.length || ( w != null && w.length != x.length ) ) {
+            throw new IllegalArgumentException("data lengths differ");
+        }
+        final int len = x.length;
+        for (int i=0; i<len; i++) { // NaN can not be sorted (nor binned)
+            if ( Double.isNaN(x[i]) || Double.isInfinite(x[i]) ) {
+                throw new IllegalArgumentException("invalid x: " + x[i]);
+            }
+        }
+        final int[] order = sortedOrder(x);
+
+        // bin points with (nearly) equal x :
+        final double[] bx = new double[len], by = new double[len], bw = new double[len];
+        int size = 0;
+        for (int i=0; i<len; ) {
+            final double x0 = x[order[i]];
+            double sumW = 0, sumWX = 0, sumWY = 0; int count = 0;
+            double sumX = 0, sumY = 0;
+            while ( i < len && x[order[i]] - x0 <= resolution ) {
+                final int j = order[i++];
+                final double wj = w == null ? 1 : w[j];
+                sumW += wj; sumWX += wj * x[j]; sumWY += wj * y[j];
+                sumX += x[j]; sumY += y[j]; count++;
+            }
+            bx[size] = sumW > 0 ? sumWX / sumW : sumX / count;
+            by[size] = sumW > 0 ? sumWY / sumW : sumY / count;
+            bw[size] = sumW;
+            size++;
+        }
+
+        // Douglas-Peucker (iterative, with an explicit stack) :
+        final boolean[] keep = new boolean[size];
+        double maxError = 0;
+        if ( size > 0 ) {
+            keep[0] = keep[size - 1] = true;
+            final int[] stack = new int[2 * size];
+            int top = 0;
+            stack[top++] = 0; stack[top++] = size - 1;
+            while ( top > 0 ) {
+                final int end = stack[--top], beg = stack[--top];
+                if ( end - beg < 2 ) continue;
+                int farthest = -1; double distance = -1;
+                for (int i=beg + 1; i<end; i++) {
+                    final double d = Math.abs(by[i] - interpolate(bx, by, beg, end, bx[i]));
+                    if ( d > distance ) { distance = d; farthest = i; }
+                }
+                if ( distance > tolerance ) {
+                    keep[farthest] = true;
+                    stack[top++] = beg; stack[top++] = farthest;
+                    stack[top++] = farthest; stack[top++] = end;
+                }
+                else if ( distance > maxError ) maxError = distance;
+            }
+        }
+
+        // collect the kept points, split the removed points weights :
+        int kept = 0;
+        for (int i=0; i<size; i++) if ( keep[i] ) kept++;
+        final double[] rx = new double[kept], ry = new double[kept], rw = new double[kept];
+        int k = -1; int prev = -1;
+        for (int i=0; i<size; i++) {
+            if ( ! keep[i] ) continue;
+            rx[++k] = bx[i]; ry[k] = by[i]; rw[k] += bw[i];
+            if ( prev >= 0 ) {
+                final double span = bx[i] - bx[prev];
+                for (int j=prev + 1; j<i; j++) {
+                    final double t = span == 0 ? 0.5 : (bx[j] - bx[prev]) / span;
+                    rw[k - 1] += (1 - t) * bw[j];
+                    rw[k] += t * bw[j];
+                }
+            }
+            prev = i;
+        }
+        return new Reduced(rx, ry, rw, len, maxError);
+    }
+
+    private static double interpolate(final double[] x, final double[] y,
+        final int beg, final int end, final double at) {
+        final double span = x[end] - x[beg];
+        if ( span == 0 ) return y[beg];
+        return y[beg] + (y[end] - y[beg]) * (at - x[beg]) / span;
+    }
+
+    /**
+     * @return The indexes of the values in ascending order.
+     */
+    private static int[] sortedOrder(final double[] x) {
+        final int len = x.length;
+        final int[] order = new int[len];
+        boolean sorted = true;
+        for (int i=0; i<len; i++) {
+            order[i] = i;
+            if ( i > 0 && x[i - 1] > x[i] ) sorted = false;
+        }
+        if ( ! sorted ) mergeSort(x, order, new int[len], 0, len);
+        return order;
+    }
+
+    private static void mergeSort(final double[] x, final int[] order, final int[] tmp,
+        final int beg, final int end) {
+        if ( end - beg < 2 ) return;
+        final int mid = (beg + end) >>> 1;
+        mergeSort(x, order, tmp, beg, mid);
+        mergeSort(x, order, tmp, mid, end);
+        int i = beg, j = mid, k = beg;
+        while ( i < mid && j < end ) {
+            tmp[k++] = x[order[j]] < x[order[i]] ? order[j++] : order[i++];
+        }
+        while ( i < mid ) tmp[k++] = order[i++];
+        while ( j < end ) tmp[k++] = order[j++];
+        System.arraycopy(tmp, beg, order, beg, end - beg);
+    }
+
+    /**
+     * The reduced (weighted) data.
+     */
+    public static class Reduced {
+
+        private final double[] x, y, w;
+        private final int originalSize;
+        private final double maxError;
+
+        Reduced(double[] x, double[] y, double[] w, int originalSize, double maxError) {
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.originalSize = originalSize;
+            this.maxError = maxError;
+        }
+
+        /**
+         * @return The x values (sorted).
+         */
+        public double[] getX() {
+            return x;
+        }
+
+        /**
+         * @return The f(x) values.
+         */
+        public double[] getY() {
+            return y;
+        }
+
+        /**
+         * @return The point weights.
+         */
+        public double[] getWeights() {
+            return w;
+        }
+
+        /**
+         * @return The number of (reduced) points.
+         */
+        public int size() {
+            return x.length;
+        }
+
+        /**
+         * @return The number of points before the reduction.
+         */
+        public int getOriginalSize() {
+            return originalSize;
+        }
+
+        /**
+         * @return The maximal (vertical) distance of a removed (binned)
+         * point from the simplified data.
+         */
+        public double getMaxError() {
+            return maxError;
+        }
+
+        public String toString() {
+            return size() + " of " + originalSize + " points (max error " + maxError + ")";
+        }
+
+    }
+
+}
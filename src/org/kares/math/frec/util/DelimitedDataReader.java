@@ -0,0 +1,621 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class <code>DelimitedDataReader</code> loads (large) delimited text files
+ * (CSV, TSV, whitespace separated columns) into the primitive arrays used
+ * as the approximated data.
+ * <p>
+ * The file is memory-mapped and split into chunks (at line boundaries),
+ * the chunks are parsed in parallel. Numbers are parsed directly from the
+ * bytes, no <code>String</code>s are created (unless a number can not be
+ * converted exactly by the fast path - e.g. it has more than 15 significant
+ * digits - and strict rounding is on).
+ * <p>
+ * Empty lines and lines starting with '#' are ignored. A first line that
+ * does not parse is considered to be a header. Other lines that do not
+ * parse (missing columns, not a number) are skipped and reported as
+ * malformed, see {@link Data#getMalformedCount()}.
+ */
+public class DelimitedDataReader {
+
+    /** Columns are separated by (a run of) spaces or tabs. */
+    public static final char WHITESPACE = ' ';
+    /** The delimiter is detected from the first line. */
+    public static final char AUTO = 0;
+
+    /** How many malformed line numbers are kept (for reporting). */
+    public static final int MAX_REPORTED_LINES = 100;
+
+    private static final int MAX_CHUNK_SIZE = 1 << 28;
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    /** Significant digits that always fit the (long) mantissa. */
+    private static final int MAX_DIGITS = 18;
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22
+    };
+
+    private char delimiter = AUTO;
+    private int columnX = 0, columnY = 1, columnW = -1;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean strictRounding = true;
+
+    public DelimitedDataReader() {
+        // default: auto-detected delimiter, x and y in the first two columns
+    }
+
+    public DelimitedDataReader(final char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * @param delimiter The column delimiter, {@link #WHITESPACE} or
+     * {@link #AUTO} (the default).
+     */
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Sets the (0 based) columns to read.
+     * @param x The x values column.
+     * @param y The f(x) values column.
+     * @param w The weights column, -1 if there are no weights.
+     */
+    public void setColumns(int x, int y, int w) {
+        if ( x < 0 || y < 0 || w < -1 ) {
+            throw new IllegalArgumentException("invalid column index");
+        }
+        this.columnX = x;
+        this.columnY = y;
+        this.columnW = w;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads The number of parsing threads.
+     */
+    public void setThreads(int threads) {
+        if ( threads <= 0 ) {
+            throw new IllegalArgumentException("threads <= 0 : " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public boolean isStrictRounding() {
+        return strictRounding;
+    }
+
+    /**
+     * If strict rounding is off all numbers are converted by the fast path
+     * which might be off by an ulp for numbers with more than 15 significant
+     * digits (e.g. doubles printed with full precision). Strict rounding is
+     * on by default, such numbers are than converted using
+     * {@link Double#parseDouble(String)}.
+     * @param strictRounding
+     */
+    public void setStrictRounding(boolean strictRounding) {
+        this.strictRounding = strictRounding;
+    }
+
+    /**
+     * Reads a delimited data file.
+     * @param file
+     * @return the data
+     */
+    public Data read(final File file) {
+        FileChannel channel = null;
+        ExecutorService executor = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            final long size = channel.size();
+            final long[] bounds = chunkBounds(channel, size);
+            final int chunks = bounds.length - 1;
+
+            char delimiter = this.delimiter;
+            if ( delimiter == AUTO ) {
+                delimiter = detectDelimiter(channel, size);
+            }
+
+            final Chunk[] parsers = new Chunk[chunks];
+            for (int i=0; i<chunks; i++) {
+                final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        bounds[i], bounds[i + 1] - bounds[i]);
+                parsers[i] = new Chunk(buffer, delimiter, i == 0);
+            }
+
+            if ( chunks == 1 || threads == 1 ) {
+                for (int i=0; i<chunks; i++) parsers[i].call();
+            }
+            else {
+                executor = Executors.newFixedThreadPool(Math.min(threads, chunks));
+                final Future[] futures = new Future[chunks];
+                for (int i=0; i<chunks; i++) futures[i] = executor.submit(parsers[i]);
+                for (int i=0; i<chunks; i++) futures[i].get();
+            }
+            return merge(parsers);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            if ( executor != null ) executor.shutdownNow();
+            if ( channel != null ) {
+                try { channel.close(); } catch (IOException e) { /* ignore */ }
+            }
+        }
+    }
+
+    /**
+     * Reads a delimited data file and writes it as a binary data file.
+     * @param file The delimited (text) file.
+     * @param dataFile The binary file to write.
+     * @return the data read
+     * @see DataFile
+     */
+    public Data convert(final File file, final File dataFile) {
+        final Data data = read(file);
+        DataFile.write(dataFile, data.getX(), data.getY(), data.getWeights());
+        return data;
+    }
+
+    /**
+     * Splits the file into chunks, each chunk (except the last) ends with a
+     * new line.
+     */
+    private long[] chunkBounds(final FileChannel channel, final long size) throws IOException {
+        long chunkSize = size / (threads * 4L) + 1;
+        if ( chunkSize < MIN_CHUNK_SIZE ) chunkSize = MIN_CHUNK_SIZE;
+        if ( chunkSize > MAX_CHUNK_SIZE ) chunkSize = MAX_CHUNK_SIZE;
+
+        final long[] bounds = new long[(int) (size / chunkSize) + 2];
+        int count = 0;
+        bounds[count++] = 0;
+        final ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long pos = chunkSize;
+        while ( pos < size ) {
+            final long eol = nextLine(channel, buffer, pos);
+            if ( eol >= size ) break;
+            bounds[count++] = eol;
+            pos = eol + chunkSize;
+        }
+        bounds[count++] = size;
+
+        final long[] result = new long[count];
+        System.arraycopy(bounds, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * @return The position after the first new line at or after pos.
+     */
+    private static long nextLine(final FileChannel channel, final ByteBuffer buffer, long pos)
+        throws IOException {
+        while ( true ) {
+            buffer.clear();
+            final int read = channel.read(buffer, pos);
+            if ( read <= 0 ) return Long.MAX_VALUE;
+            for (int i=0; i<read; i++) {
+                if ( buffer.get(i) == '\n' ) return pos + i + 1;
+            }
+            pos += read;
+        }
+    }
+
+    /**
+     * Detects the delimiter from the first (data) line.
+     */
+    private static char detectDelimiter(final FileChannel channel, final long size)
+        throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, 64 * 1024));
+        channel.read(buffer, 0);
+        final int limit = buffer.position();
+        int pos = 0;
+        while ( pos < limit ) {
+            int end = pos;
+            while ( end < limit && buffer.get(end) != '\n' ) end++;
+            boolean tab = false, space = false, data = false;
+            for (int i=pos; i<end; i++) {
+                final byte b = buffer.get(i);
+                if ( b == '#' && ! data ) break; // comment line
+                if ( b == ',' || b == ';' ) return (char) b;
+                if ( b == '\t' ) tab = true;
+                else if ( b == ' ' ) space |= data;
+                else if ( b != '\r' ) data = true;
+            }
+            if ( data ) return tab && ! space ? '\t' : WHITESPACE;
+            pos = end + 1;
+        }
+        return WHITESPACE;
+    }
+
+    private Data merge(final Chunk[] chunks) {
+        int size = 0, malformed = 0, lines = 0;
+        for (int i=0; i<chunks.length; i++) {
+            size += chunks[i].count;
+            malformed += chunks[i].malformed;
+        }
+        final double[] x = new double[size];
+        final double[] y = new double[size];
+        final double[] w = columnW >= 0 ? new double[size] : null;
+        final int[] malformedLines = new int[Math.min(malformed, MAX_REPORTED_LINES)];
+        int off = 0, reported = 0;
+        boolean header = false;
+        for (int i=0; i<chunks.length; i++) {
+            final Chunk chunk = chunks[i];
+            System.arraycopy(chunk.x, 0, x, off, chunk.count);
+            System.arraycopy(chunk.y, 0, y, off, chunk.count);
+            if ( w != null ) System.arraycopy(chunk.w, 0, w, off, chunk.count);
+            off += chunk.count;
+            for (int j=0; j<chunk.reported && reported<malformedLines.length; j++) {
+                malformedLines[reported++] = lines + chunk.malformedLines[j];
+            }
+            if ( chunk.header ) header = true;
+            lines += chunk.lines;
+        }
+        return new Data(x, y, w, lines, header, malformed, malformedLines);
+    }
+
+    /**
+     * Parses a chunk of the file.
+     */
+    private class Chunk implements Callable {
+
+        private final ByteBuffer buffer;
+        private final char delimiter;
+        private final boolean first;
+
+        double[] x, y, w;
+        int count = 0;
+        int lines = 0;
+        boolean header = false;
+        int malformed = 0;
+        final int[] malformedLines = new int[MAX_REPORTED_LINES];
+        int reported = 0;
+
+        /** Set by parse() if the field is not a number. */
+        private boolean invalid;
+
+        Chunk(final ByteBuffer buffer, final char delimiter, final boolean first) {
+            this.buffer = buffer;
+            this.delimiter = delimiter;
+            this.first = first;
+            // estimate ~ 16 bytes per line
+            final int capacity = Math.max(16, buffer.limit() / 16);
+            this.x = new double[capacity];
+            this.y = new double[capacity];
+            if ( columnW >= 0 ) this.w = new double[capacity];
+        }
+
+        public Object call() {
+            final ByteBuffer buffer = this.buffer;
+            final int limit = buffer.limit();
+            boolean data = false; // a (non empty) line has been seen
+            int pos = 0;
+            while ( pos < limit ) {
+                int end = pos;
+                while ( end < limit && buffer.get(end) != '\n' ) end++;
+                final int next = end + 1;
+                if ( end > pos && buffer.get(end - 1) == '\r' ) end--;
+                lines++;
+
+                if ( end > pos && buffer.get(pos) != '#' && ! blank(pos, end) ) {
+                    if ( ! parseLine(pos, end) ) {
+                        if ( first && ! data ) header = true;
+                        else {
+                            if ( reported < malformedLines.length ) {
+                                malformedLines[reported++] = lines;
+                            }
+                            malformed++;
+                        }
+                    }
+                    data = true;
+                }
+                pos = next;
+            }
+            return null;
+        }
+
+        private boolean blank(int pos, final int end) {
+            for ( ; pos < end; pos++ ) {
+                final byte b = buffer.get(pos);
+                if ( b != ' ' && b != '\t' ) return false;
+            }
+            return true;
+        }
+
+        private boolean parseLine(int pos, final int end) {
+            final ByteBuffer buffer = this.buffer;
+            final boolean whitespace = delimiter == WHITESPACE;
+            final int last = Math.max(columnX, Math.max(columnY, columnW));
+            double vx = 0, vy = 0, vw = 1;
+            if ( whitespace ) pos = skipWhitespace(pos, end);
+            for (int column=0; column<=last; column++) {
+                if ( pos > end || ( pos == end && whitespace ) ) return false;
+                int fieldEnd = pos;
+                if ( whitespace ) {
+                    while ( fieldEnd < end ) {
+                        final byte b = buffer.get(fieldEnd);
+                        if ( b == ' ' || b == '\t' ) break;
+                        fieldEnd++;
+                    }
+                }
+                else {
+                    while ( fieldEnd < end && buffer.get(fieldEnd) != delimiter ) fieldEnd++;
+                }
+                if ( column == columnX || column == columnY || column == columnW ) {
+                    final double value = parse(pos, fieldEnd);
+                    if ( invalid ) return false;
+                    if ( column == columnX ) vx = value;
+                    if ( column == columnY ) vy = value;
+                    if ( column == columnW ) vw = value;
+                }
+                pos = whitespace ? skipWhitespace(fieldEnd, end) : fieldEnd + 1;
+            }
+            if ( count == x.length ) grow();
+            x[count] = vx; y[count] = vy;
+            if ( w != null ) w[count] = vw;
+            count++;
+            return true;
+        }
+
+        private int skipWhitespace(int pos, final int end) {
+            while ( pos < end ) {
+                final byte b = buffer.get(pos);
+                if ( b != ' ' && b != '\t' ) break;
+                pos++;
+            }
+            return pos;
+        }
+
+        private void grow() {
+            final int capacity = x.length + ( x.length >> 1 ) + 16;
+            x = copyOf(x, capacity);
+            y = copyOf(y, capacity);
+            if ( w != null ) w = copyOf(w, capacity);
+        }
+
+        /**
+         * Parses a number (the field is trimmed, quotes are removed).
+         */
+        private double parse(int beg, int end) {
+            final ByteBuffer buffer = this.buffer;
+            invalid = false;
+            while ( beg < end && buffer.get(beg) == ' ' ) beg++;
+            while ( end > beg && buffer.get(end - 1) == ' ' ) end--;
+            if ( end - beg >= 2 && buffer.get(beg) == '"' && buffer.get(end - 1) == '"' ) {
+                beg++; end--;
+            }
+            if ( beg == end ) { invalid = true; return 0; }
+
+            int i = beg;
+            boolean negative = false;
+            byte b = buffer.get(i);
+            if ( b == '-' || b == '+' ) {
+                negative = b == '-';
+                if ( ++i == end ) { invalid = true; return 0; }
+            }
+            long mantissa = 0;
+            int digits = 0, exponent = 0;
+            boolean any = false, truncated = false;
+            for ( ; i < end; i++ ) {
+                final int d = buffer.get(i) - '0';
+                if ( d < 0 || d > 9 ) break;
+                any = true;
+                if ( digits < MAX_DIGITS ) {
+                    mantissa = mantissa * 10 + d;
+                    if ( mantissa != 0 ) digits++;
+                }
+                else {
+                    exponent++;
+                    if ( d != 0 ) truncated = true;
+                }
+            }
+            if ( i < end && buffer.get(i) == '.' ) {
+                for ( i++; i < end; i++ ) {
+                    final int d = buffer.get(i) - '0';
+                    if ( d < 0 || d > 9 ) break;
+                    any = true;
+                    if ( digits < MAX_DIGITS ) {
+                        mantissa = mantissa * 10 + d;
+                        if ( mantissa != 0 ) digits++;
+                        exponent--;
+                    }
+                    else if ( d != 0 ) truncated = true;
+                }
+            }
+            if ( any && i < end && ( buffer.get(i) == 'e' || buffer.get(i) == 'E' ) ) {
+                i++;
+                boolean negativeExp = false;
+                if ( i < end && ( buffer.get(i) == '-' || buffer.get(i) == '+' ) ) {
+                    negativeExp = buffer.get(i) == '-';
+                    i++;
+                }
+                int exp = 0;
+                boolean expDigits = false;
+                for ( ; i < end; i++ ) {
+                    final int d = buffer.get(i) - '0';
+                    if ( d < 0 || d > 9 ) break;
+                    expDigits = true;
+                    if ( exp < 100000 ) exp = exp * 10 + d;
+                }
+                if ( ! expDigits ) { invalid = true; return 0; }
+                exponent += negativeExp ? -exp : exp;
+            }
+            if ( ! any || i != end || truncated ) {
+                return parseSlow(beg, end); // NaN, Infinity, garbage or too long
+            }
+            if ( mantissa == 0 ) return negative ? -0.0 : 0.0;
+
+            if ( exponent >= -22 && exponent <= 22 &&
+                 ( ! strictRounding || mantissa < (1L << 53) ) ) {
+                // both the mantissa and the power of 10 are exact doubles
+                // thus the result is correctly rounded
+                final double value = exponent < 0 ?
+                        mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+                return negative ? -value : value;
+            }
+            return parseSlow(beg, end);
+        }
+
+        private double parseSlow(final int beg, final int end) {
+            final char[] chars = new char[end - beg];
+            for (int i=0; i<chars.length; i++) chars[i] = (char) buffer.get(beg + i);
+            try {
+                return Double.parseDouble(new String(chars));
+            }
+            catch (NumberFormatException e) {
+                invalid = true;
+                return 0;
+            }
+        }
+
+    }
+
+    private static double[] copyOf(final double[] array, final int length) {
+        final double[] copy = new double[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    /**
+     * The data read from a delimited file.
+     */
+    public static class Data {
+
+        private final double[] x, y, w;
+        private final int lines;
+        private final boolean header;
+        private final int malformed;
+        private final int[] malformedLines;
+
+        Data(double[] x, double[] y, double[] w, int lines, boolean header,
+            int malformed, int[] malformedLines) {
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.lines = lines;
+            this.header = header;
+            this.malformed = malformed;
+            this.malformedLines = malformedLines;
+        }
+
+        /**
+         * @return The x values.
+         */
+        public double[] getX() {
+            return x;
+        }
+
+        /**
+         * @return The f(x) values.
+         */
+        public double[] getY() {
+            return y;
+        }
+
+        /**
+         * @return The weights (null if no weight column was read).
+         */
+        public double[] getWeights() {
+            return w;
+        }
+
+        /**
+         * @return The number of data points read.
+         */
+        public int size() {
+            return x.length;
+        }
+
+        /**
+         * @return The number of lines in the file.
+         */
+        public int getLineCount() {
+            return lines;
+        }
+
+        /**
+         * @return True if the first line has been skipped as a header.
+         */
+        public boolean hasHeader() {
+            return header;
+        }
+
+        /**
+         * @return The number of malformed (skipped) lines.
+         */
+        public int getMalformedCount() {
+            return malformed;
+        }
+
+        /**
+         * @return The (1 based) numbers of the first (at most
+         * {@link DelimitedDataReader#MAX_REPORTED_LINES}) malformed lines.
+         */
+        public int[] getMalformedLines() {
+            return malformedLines.clone();
+        }
+
+        public String toString() {
+            final StringBuffer str = new StringBuffer();
+            str.append(size()).append(" points (").append(lines).append(" lines");
+            if ( header ) str.append(", header");
+            if ( malformed > 0 ) {
+                str.append(", ").append(malformed).append(" malformed at ");
+                for (int i=0; i<malformedLines.length; i++) {
+                    if ( i > 0 ) str.append(',');
+                    str.append(malformedLines[i]);
+                }
+                if ( malformed > malformedLines.length ) str.append(",...");
+            }
+            return str.append(')').toString();
+        }
+
+    }
+
+}
@@ -16,7 +16,13 @@
 
 package org.kares.math.frec.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
@@ -27,6 +33,8 @@ import org.kares.math.frec.core.FunctionTree;
      * results computed by the kernel module. This class can save
      * a whole generation at once. String-UTF is used for reading and writing
      * to a (text) file.
+     * The reads and writes are buffered (a file should be either read or
+     * written), written functions get to the file on {@link #flush()}.
      */
 
 public class GenFile {
@@ -35,6 +43,8 @@ public class GenFile {
     private int elemCounter = 0; // lines
 
     private final RandomAccessFile file;
+    private DataInputStream in;
+    private DataOutputStream out;
 
     public static final String defaultFileName = "function.gen";
 
@@ -72,7 +82,11 @@ public class GenFile {
     public FunctionTree read() {
         FunctionTree data;
         try {
-            String dataFormatted = file.readUTF();
+            if ( in == null ) {
+                in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(file.getFD()), 64 * 1024));
+            }
+            String dataFormatted = in.readUTF();
             return FunctionTree.parse(dataFormatted);
         }
         catch(IOException e) { 
@@ -90,7 +104,11 @@ public class GenFile {
     
     private void doWrite(final String data) {
         try {
-            file.writeUTF(data);
+            if ( out == null ) {
+                out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(file.getFD()), 64 * 1024));
+            }
+            out.writeUTF(data);
             elemCounter++;
         }
         catch (IOException e) { 
@@ -108,8 +126,22 @@ public class GenFile {
         }
     }
 
+    /**
+     * Writes the buffered functions to the file.
+     */
+    public void flush() {
+        if ( out == null ) return;
+        try {
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public void close() {
         try {
+            if ( out != null ) out.flush();
             file.close();
         }
         catch (IOException e) {
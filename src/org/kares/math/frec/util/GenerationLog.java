@@ -0,0 +1,198 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Class <code>GenerationLog</code> is an append-only binary log of
+ * (generation) checkpoints. Records are opaque byte arrays, the file
+ * layout is :
+ * <pre>
+ *   header : "FRCK" [int version]
+ *   record : [int length] [length bytes] [long CRC32 of the bytes]
+ * </pre>
+ * Every record is written at once and forced to the disk, a record that
+ * has not been (completely) written e.g. when the process got killed is
+ * detected by it's length or checksum - when opened for appending such
+ * a torn tail gets truncated, when reading the last valid record wins.
+ */
+public class GenerationLog {
+
+    private static final int MAGIC = 0x4652434b; // "FRCK"
+    private static final int VERSION = 4; // 2 - computations have their own random stream, 3 - code sampling, 4 - adaptation state
+    private static final int HEADER_SIZE = 8;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private long records = 0;
+    private boolean sync = true;
+
+    /**
+     * Opens (or creates) the log for appending.
+     * @param file
+     */
+    public GenerationLog(final File file) {
+        try {
+            this.file = new RandomAccessFile(file, "rw");
+            this.channel = this.file.getChannel();
+            if ( channel.size() < HEADER_SIZE ) { // new (or torn header)
+                channel.truncate(0);
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(header, 0);
+            }
+            else {
+                final long[] scan = scan(channel, null);
+                records = scan[0];
+                if ( scan[1] < channel.size() ) channel.truncate(scan[1]); // torn tail
+            }
+            channel.position( channel.size() );
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return The number of (valid) records in the log.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * @param sync Whether records are forced to the disk when appended
+     * (true by default).
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * Appends a record.
+     * @param data
+     */
+    public void append(final byte[] data) {
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        final ByteBuffer record = ByteBuffer.allocate(4 + data.length + 8);
+        record.putInt(data.length).put(data).putLong(crc.getValue()).flip();
+        try {
+            writeFully(record, channel.position());
+            if ( sync ) channel.force(false);
+            records++;
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeFully(final ByteBuffer buffer, long position) throws IOException {
+        while ( buffer.hasRemaining() ) {
+            position += channel.write(buffer, position);
+        }
+        channel.position(position);
+    }
+
+    public void close() {
+        try {
+            channel.close();
+            file.close();
+        }
+        catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Reads the last (valid) record of the log.
+     * @param file
+     * @return The record data or null if there are no records.
+     */
+    public static byte[] readLast(final File file) {
+        try {
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                final byte[][] last = new byte[1][];
+                scan(raf.getChannel(), last);
+                return last[0];
+            }
+            finally {
+                raf.close();
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Scans the log, stops at the first invalid (torn) record.
+     * @return The number of valid records and the end position of the last.
+     */
+    private static long[] scan(final FileChannel channel, final byte[][] last)
+        throws IOException {
+        final long size = channel.size();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        if ( header.getInt(0) != MAGIC ) throw new IOException("not a generation log");
+        if ( header.getInt(4) != VERSION ) {
+            throw new IOException("unsupported version: " + header.getInt(4));
+        }
+        final ByteBuffer length = ByteBuffer.allocate(4);
+        final ByteBuffer checksum = ByteBuffer.allocate(8);
+        final CRC32 crc = new CRC32();
+        long position = HEADER_SIZE; long count = 0;
+        ByteBuffer data = null;
+        while ( position + 4 + 8 <= size ) {
+            length.clear();
+            readFully(channel, length, position);
+            final int len = length.getInt(0);
+            if ( len < 0 || position + 4 + len + 8 > size ) break;
+            if ( data == null || data.capacity() < len ) data = ByteBuffer.allocate(len);
+            data.clear(); data.limit(len);
+            readFully(channel, data, position + 4);
+            checksum.clear();
+            readFully(channel, checksum, position + 4 + len);
+            crc.reset();
+            crc.update(data.array(), 0, len);
+            if ( crc.getValue() != checksum.getLong(0) ) break;
+            if ( last != null ) {
+                last[0] = new byte[len];
+                System.arraycopy(data.array(), 0, last[0], 0, len);
+            }
+            position += 4 + len + 8; count++;
+        }
+        return new long[] { count, position };
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer,
+        long position) throws IOException {
+        while ( buffer.hasRemaining() ) {
+            final int read = channel.read(buffer, position);
+            if ( read < 0 ) throw new IOException("unexpected end of file");
+            position += read;
+        }
+    }
+
+}
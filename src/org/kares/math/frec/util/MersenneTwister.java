@@ -149,7 +149,21 @@ import java.util.*;
 // Twister is fairly easy code to understand: if you're trying to get a handle
 // on the code, I strongly suggest looking at MersenneTwister.java first.
 // -- Sean
-final class MersenneTwister extends Random implements Serializable, Cloneable {
+final class MersenneTwister extends RandomStream implements Serializable, Cloneable {
+
+    static final String NAME = "mt19937";
+
+    static final Factory FACTORY = new Factory() {
+
+        public String getName() {
+            return NAME;
+        }
+
+        public RandomStream newStream(final long seed) {
+            return new MersenneTwister(seed);
+        }
+
+    };
 
     // Period parameters
     private static final int N = 624;
@@ -200,6 +214,18 @@ final class MersenneTwister extends Random implements Serializable, Cloneable {
         return true;
     }
 
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * The Mersenne Twister is not (cheaply) jumpable, the new stream is
+     * seeded from this one.
+     */
+    public RandomStream split() {
+        return new MersenneTwister(new int[] { nextInt(), nextInt(), nextInt(), nextInt() });
+    }
+
     /** Reads the entire state of the MersenneTwister RNG from the stream */
     public void readState(DataInputStream stream) throws IOException {
         int len = mt.length;
@@ -16,6 +16,11 @@
 
 package org.kares.math.frec.util;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 /**
@@ -23,15 +28,156 @@ import java.util.Random;
  * The Mersenne Twister generator's java implementation is used optimized for
  * enhanced performance. This generator is fast and provides very good results
  * in generating random data.
+ * <p>
+ * A {@link RandomStream} might be bound to the current thread, all the
+ * (static) methods then use the bound stream instead of the shared 
+ * generator. Thus concurrent computations each with it's own (seeded)
+ * stream are independent and reproducible.
+ *
+ * @see #bind(RandomStream)
+ * @see #getGenerators()
  */
 public abstract class RandomHelper {
 
     /**
-     * Constructor using the default seed.
+     * The name of the default generator (for new streams).
+     */
+    public static final String DEFAULT_GENERATOR = Xoroshiro128.NAME;
+
+    private static final Map generators = new LinkedHashMap();
+    static {
+        generators.put(Xoroshiro128.NAME, Xoroshiro128.FACTORY);
+        generators.put(MersenneTwister.NAME, MersenneTwister.FACTORY);
+    }
+
+    private static final ThreadLocal bound = new ThreadLocal();
+    private static final ThreadLocal local = new ThreadLocal();
+    private static volatile int sharedEpoch;
+
+    /**
+     * @return The available generators (names mapped to 
+     * {@link RandomStream.Factory} instances).
+     */
+    public static Map getGenerators() {
+        synchronized (generators) {
+            return new LinkedHashMap(generators);
+        }
+    }
+
+    /**
+     * Registers a (custom) generator.
+     * @param factory
+     */
+    public static void registerGenerator(final RandomStream.Factory factory) {
+        synchronized (generators) {
+            generators.put(factory.getName(), factory);
+        }
+    }
+
+    /**
+     * @param seed
+     * @return A new stream of the default generator.
+     */
+    public static RandomStream newStream(final long seed) {
+        return newStream(DEFAULT_GENERATOR, seed);
+    }
+
+    /**
+     * @param generator The generator name.
+     * @param seed
+     * @return A new stream of the given generator.
+     * @throws IllegalArgumentException if there's no such generator
+     */
+    public static RandomStream newStream(final String generator, final long seed) {
+        final RandomStream.Factory factory;
+        synchronized (generators) {
+            factory = (RandomStream.Factory) generators.get(generator);
+        }
+        if ( factory == null ) {
+            throw new IllegalArgumentException("unknown generator: " + generator);
+        }
+        return factory.newStream(seed);
+    }
+
+    /**
+     * Binds a stream to the current thread, all random numbers generated
+     * (on this thread) are taken from the stream.
+     * @param stream The stream to bind, null to use the shared generator.
+     * @return The previously bound stream (or null).
+     */
+    public static RandomStream bind(final RandomStream stream) {
+        final RandomStream previous = (RandomStream) bound.get();
+        bound.set(stream);
+        return previous;
+    }
+
+    /**
+     * @return The stream bound to the current thread (or null).
+     * @see #bind(RandomStream)
+     */
+    public static RandomStream getBoundStream() {
+        return (RandomStream) bound.get();
+    }
+
+    /**
+     * Returns the stream to be used on the current thread - the bound stream
+     * or (if there's none bound) a thread local stream seeded from the shared
+     * generator. Unlike the static methods the returned stream is used 
+     * without any locking, thus it's meant for generating many numbers at
+     * once e.g. when filling buffers with random data.
+     * NOTE: The thread local stream is re-seeded when the shared generator
+     * is {@link #setSeed(long)} (or it's state is restored) !
+     * @return The current thread's stream.
+     */
+    public static RandomStream currentStream() {
+        final RandomStream stream = (RandomStream) bound.get();
+        if ( stream != null ) return stream;
+        LocalStream localStream = (LocalStream) local.get();
+        final int epoch = sharedEpoch;
+        if ( localStream == null || localStream.epoch != epoch ) {
+            final long seed;
+            synchronized (RandomHelper.class) {
+                seed = shared.nextLong();
+            }
+            localStream = new LocalStream(newStream(seed), epoch);
+            local.set(localStream);
+        }
+        return localStream.stream;
+    }
+
+    private static final class LocalStream {
+
+        final RandomStream stream;
+        final int epoch;
+
+        LocalStream(final RandomStream stream, final int epoch) {
+            this.stream = stream;
+            this.epoch = epoch;
+        }
+
+    }
+
+    /**
+     * @return A (random) seed, e.g. for a new stream.
+     */
+    public static long randomSeed() {
+        final RandomStream stream = (RandomStream) bound.get();
+        if ( stream != null ) return stream.nextLong();
+        synchronized (RandomHelper.class) {
+            return shared.nextLong();
+        }
+    }
+
+    /**
+     * Constructor using the default seed (taken from the current stream).
      * @return random
      */
-    public static synchronized Random newRandom() {
-        return new MersenneTwister(shared.nextLong());
+    public static Random newRandom() {
+        final RandomStream stream = (RandomStream) bound.get();
+        if ( stream != null ) return newStream(stream.getName(), stream.nextLong());
+        synchronized (RandomHelper.class) {
+            return new MersenneTwister(shared.nextLong());
+        }
     }
 
     /**
@@ -71,12 +217,52 @@ public abstract class RandomHelper {
         shared = new MersenneTwister(s);
     }
 
+    /**
+     * Re-seeds the shared generator, e.g. to repeat a computation with
+     * the same random sequence.
+     * NOTE: The generator is shared by all the computations (in the JVM) 
+     * that do not have their own stream bound !
+     * @param seed
+     */
+    public static synchronized void setSeed(final long seed) {
+        shared.setSeed(seed);
+        sharedEpoch++;
+    }
+
+    /**
+     * Writes the (entire) state of the shared generator, e.g. to be able
+     * to continue a computation with the same random sequence.
+     * @param out
+     * @throws IOException
+     * @see #readState(DataInputStream)
+     */
+    public static synchronized void writeState(final DataOutputStream out) 
+        throws IOException {
+        shared.writeState(out);
+    }
+
+    /**
+     * Restores the state of the shared generator.
+     * @param in
+     * @throws IOException
+     * @see #writeState(DataOutputStream)
+     */
+    public static synchronized void readState(final DataInputStream in) 
+        throws IOException {
+        shared.readState(in);
+        sharedEpoch++;
+    }
+
     /**
      * Generates a pseudo-random boolean.
      * @return random boolean
      */
-    public static synchronized boolean randomBoolean() {
-        return shared.nextBoolean();
+    public static boolean randomBoolean() {
+        final RandomStream stream = (RandomStream) bound.get();
+        if ( stream != null ) return stream.nextBoolean();
+        synchronized (RandomHelper.class) {
+            return shared.nextBoolean();
+        }
     }
 
     /**
@@ -86,8 +272,12 @@ public abstract class RandomHelper {
      * @param probab
      * @return random boolean
      */
-    public static synchronized boolean randomBoolean(final float probab) {
-        return shared.nextBoolean(probab);
+    public static boolean randomBoolean(final float probab) {
+        final RandomStream stream = (RandomStream) bound.get();
+        if ( stream != null ) return stream.nextBoolean(probab);
+        synchronized (RandomHelper.class) {
+            return shared.nextBoolean(probab);
+        }
     }
 
     /**
@@ -95,16 +285,24 @@ public abstract class RandomHelper {
      * results.
      * @return random double
      */
-    public static synchronized double randomDouble() {
-        return shared.nextDouble();
+    public static double randomDouble() {
+        final RandomStream stream = (RandomStream) bound.get();
+        if ( stream != null ) return stream.nextDouble();
+        synchronized (RandomHelper.class) {
+            return shared.nextDouble();
+        }
     }
 
     /**
      * Generates a pseudo-random float.
      * @return random float
      */
-    public static synchronized float randomFloat() {
-        return shared.nextFloat();
+    public static float randomFloat() {
+        final RandomStream stream = (RandomStream) bound.get();
+        if ( stream != null ) return stream.nextFloat();
+        synchronized (RandomHelper.class) {
+            return shared.nextFloat();
+        }
     }
 
     /**
@@ -112,8 +310,12 @@ public abstract class RandomHelper {
      * @param max
      * @return random integer
      */
-    public static synchronized int randomInt(int max) {
-        return shared.nextInt(max);
+    public static int randomInt(int max) {
+        final RandomStream stream = (RandomStream) bound.get();
+        if ( stream != null ) return stream.nextInt(max);
+        synchronized (RandomHelper.class) {
+            return shared.nextInt(max);
+        }
     }
 
     /**
@@ -122,12 +324,20 @@ public abstract class RandomHelper {
      * @param max
      * @return random integer
      */
-    public static synchronized int ascRandomInt(int max) {
+    public static int ascRandomInt(int max) {
+        final RandomStream stream = (RandomStream) bound.get();
+        if ( stream != null ) return ascRandomInt(stream, max);
+        synchronized (RandomHelper.class) {
+            return ascRandomInt(shared, max);
+        }
+    }
+
+    private static int ascRandomInt(final RandomStream random, final int max) {
         float prob = 1 / (float) max;
         while (true) {
-            int rnd = randomInt(max);
+            int rnd = random.nextInt(max);
             float rnd_prob = (float) (max - rnd) * prob;
-            if (randomBoolean(rnd_prob)) return rnd;
+            if (random.nextBoolean(rnd_prob)) return rnd;
         }
     }
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * A (seedable) pseudo-random number stream - the random generator SPI.
+ * Streams are not thread-safe, a stream is meant to be used by a single
+ * computation (thread), independent streams are obtained by 
+ * {@link #split()}ing a stream.
+ * <p>
+ * Generators are registered by name with {@link RandomHelper} using a 
+ * {@link Factory}, the name and the state of a stream are enough to
+ * restore it (e.g. from a checkpoint).
+ *
+ * @see RandomHelper#getGenerators()
+ * @author kares
+ */
+public abstract class RandomStream extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates (seeded) streams of a random generator.
+     */
+    public interface Factory {
+
+        /**
+         * @return The (unique) name of the generator.
+         */
+        String getName() ;
+
+        /**
+         * @param seed
+         * @return A new stream (the same seed produces the same stream).
+         */
+        RandomStream newStream(long seed) ;
+
+    }
+
+    protected RandomStream() {
+        super();
+    }
+
+    protected RandomStream(final long seed) {
+        super(seed);
+    }
+
+    /**
+     * @return The name of the generator (as registered).
+     * @see Factory#getName()
+     */
+    public abstract String getName() ;
+
+    /**
+     * Splits off a new stream, the new stream is independent of this one
+     * and deterministic (depends only on the state of this stream).
+     * Jumpable generators return a stream starting at the current state
+     * and jump this stream ahead (thus streams never overlap).
+     * @return The new stream.
+     */
+    public abstract RandomStream split() ;
+
+    /**
+     * Writes the (entire) state of this stream.
+     * @param out
+     * @throws IOException
+     */
+    public abstract void writeState(DataOutputStream out) throws IOException ;
+
+    /**
+     * Restores the (previously written) state of this stream.
+     * @param in
+     * @throws IOException
+     */
+    public abstract void readState(DataInputStream in) throws IOException ;
+
+    /**
+     * Generates a coin flip with the given probability of returning true.
+     * @param probability
+     * @return random boolean
+     */
+    public boolean nextBoolean(final float probability) {
+        if ( probability < 0.0f || probability > 1.0f ) {
+            throw new IllegalArgumentException("probability must be between 0.0 and 1.0 inclusive.");
+        }
+        if ( probability == 0.0f ) return false;
+        if ( probability == 1.0f ) return true;
+        return nextFloat() < probability;
+    }
+
+}
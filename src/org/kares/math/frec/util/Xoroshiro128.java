@@ -0,0 +1,151 @@
+/*
+ * Copyright 2004 Karol Bucek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kares.math.frec.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The xoroshiro128++ generator (by David Blackman and Sebastiano Vigna) -
+ * a small (128 bit) state, fast and jumpable generator with a period of 
+ * 2<sup>128</sup> - 1. A jump advances the stream by 2<sup>64</sup> steps,
+ * thus up to 2<sup>64</sup> non-overlapping streams might be split off a
+ * single stream.
+ * <p>
+ * The seed is expanded into the state using SplitMix64.
+ *
+ * @author kares
+ */
+final class Xoroshiro128 extends RandomStream {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String NAME = "xoroshiro128++";
+
+    static final Factory FACTORY = new Factory() {
+
+        public String getName() {
+            return NAME;
+        }
+
+        public RandomStream newStream(final long seed) {
+            return new Xoroshiro128(seed);
+        }
+
+    };
+
+    /** The jump polynomial (2<sup>64</sup> steps). */
+    private static final long[] JUMP = { 0x2bd7a6a6e99c2ddcL, 0x0992ccaf6a6fca05L };
+
+    private long s0, s1;
+
+    Xoroshiro128(final long seed) {
+        super(seed); // setSeed(seed)
+    }
+
+    private Xoroshiro128(final long s0, final long s1) {
+        super(0);
+        this.s0 = s0; this.s1 = s1;
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public void setSeed(final long seed) {
+        super.setSeed(seed); // resets the (cached) gaussian
+        long x = seed;
+        s0 = mix(x += 0x9e3779b97f4a7c15L);
+        s1 = mix(x += 0x9e3779b97f4a7c15L);
+        if ( (s0 | s1) == 0 ) s1 = 1; // all-zero state is not allowed
+    }
+
+    /** SplitMix64 output function. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public long nextLong() {
+        final long s0 = this.s0;
+        long s1 = this.s1;
+        final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+        s1 ^= s0;
+        this.s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+        this.s1 = Long.rotateLeft(s1, 28);
+        return result;
+    }
+
+    protected int next(final int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    public float nextFloat() {
+        return (nextLong() >>> 40) * (1.0f / (1 << 24));
+    }
+
+    public double nextDouble() {
+        return (nextLong() >>> 11) * (1.0 / (1L << 53));
+    }
+
+    /**
+     * Advances this stream by 2<sup>64</sup> steps.
+     */
+    public void jump() {
+        long j0 = 0, j1 = 0;
+        for (int i=0; i<JUMP.length; i++) {
+            for (int b=0; b<64; b++) {
+                if ( (JUMP[i] & (1L << b)) != 0 ) {
+                    j0 ^= s0; j1 ^= s1;
+                }
+                nextLong();
+            }
+        }
+        s0 = j0; s1 = j1;
+    }
+
+    /**
+     * @return A stream starting at the current state (this stream jumps).
+     * @see #jump()
+     */
+    public RandomStream split() {
+        final Xoroshiro128 stream = new Xoroshiro128(s0, s1);
+        jump();
+        return stream;
+    }
+
+    public void writeState(final DataOutputStream out) throws IOException {
+        out.writeLong(s0);
+        out.writeLong(s1);
+    }
+
+    public void readState(final DataInputStream in) throws IOException {
+        s0 = in.readLong();
+        s1 = in.readLong();
+    }
+
+}